@@ -1,11 +1,26 @@
 package scyuan.spring.boot.autoconfigure;
 
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCacheRegistry;
+import scyuan.spring.boot.autoconfigure.executor.GrpcServiceExecutors;
+import scyuan.spring.boot.autoconfigure.limit.ConcurrencyLimitRegistry;
+import scyuan.spring.boot.autoconfigure.metrics.ConcurrencyLimitMetrics;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcMeterBinderRegistrar;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetrics;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetricsBinder;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServiceExecutorMetrics;
+import scyuan.spring.boot.autoconfigure.metrics.ResponseCacheMetrics;
+import scyuan.spring.boot.autoconfigure.registry.GrpcServiceRegistry;
 
 /**
  * Created by yuanshichao on 16/2/18.
@@ -22,4 +37,104 @@ public class GrpcServerAutoConfiguration {
         return new GrpcServerRunner();
     }
 
+    @Bean
+    @ConditionalOnMissingBean(GrpcServiceRegistry.class)
+    public GrpcServiceRegistry grpcServiceRegistry() {
+        return new GrpcServiceRegistry();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(GrpcServiceExecutors.class)
+    public GrpcServiceExecutors grpcServiceExecutors(GrpcServerProperties grpcServerProperties,
+                                                     BeanFactory beanFactory) {
+        return new GrpcServiceExecutors(grpcServerProperties, beanFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(GrpcServerMetrics.class)
+    @ConditionalOnProperty(prefix = "grpc.metrics", name = "enabled", matchIfMissing = true)
+    public GrpcServerMetrics grpcServerMetrics(GrpcServerProperties grpcServerProperties) {
+        return new GrpcServerMetrics(grpcServerProperties.getMetrics().getLatencySignificantDigits());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ConcurrencyLimitRegistry.class)
+    public ConcurrencyLimitRegistry concurrencyLimitRegistry() {
+        return new ConcurrencyLimitRegistry();
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+    public static class ResponseCacheConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(ResponseCacheRegistry.class)
+        public ResponseCacheRegistry responseCacheRegistry() {
+            return new ResponseCacheRegistry();
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+        public static class ResponseCacheMetricsConfiguration {
+
+            @Bean
+            public ResponseCacheMetrics responseCacheMetrics(ResponseCacheRegistry responseCacheRegistry) {
+                return new ResponseCacheMetrics(responseCacheRegistry);
+            }
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "grpc.in-process", name = "enabled")
+    public static class InProcessChannelConfiguration implements DisposableBean {
+
+        private ManagedChannel inProcessChannel;
+
+        /**
+         * Channel to the in-process transport of the default server, for the callers in the same JVM.
+         * Shut down by this configuration, as the covariant shutdown methods of the channel can't be
+         * resolved as its destroy method.
+         */
+        @Bean(destroyMethod = "")
+        @ConditionalOnMissingBean(name = "inProcessChannel")
+        public ManagedChannel inProcessChannel(GrpcServerProperties grpcServerProperties) {
+            inProcessChannel = InProcessChannelBuilder.forName(
+                    ManagedGrpcServer.inProcessName(GrpcServerProperties.DEFAULT_SERVER, grpcServerProperties)).build();
+            return inProcessChannel;
+        }
+
+        @Override
+        public void destroy() {
+            if (inProcessChannel != null) {
+                inProcessChannel.shutdownNow();
+            }
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    public static class GrpcMetricsConfiguration {
+
+        @Bean
+        public GrpcMeterBinderRegistrar grpcMeterBinderRegistrar() {
+            return new GrpcMeterBinderRegistrar();
+        }
+
+        @Bean
+        public GrpcServiceExecutorMetrics grpcServiceExecutorMetrics(GrpcServiceExecutors grpcServiceExecutors) {
+            return new GrpcServiceExecutorMetrics(grpcServiceExecutors);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "grpc.metrics", name = "enabled", matchIfMissing = true)
+        public GrpcServerMetricsBinder grpcServerMetricsBinder(GrpcServerMetrics grpcServerMetrics) {
+            return new GrpcServerMetricsBinder(grpcServerMetrics);
+        }
+
+        @Bean
+        public ConcurrencyLimitMetrics concurrencyLimitMetrics(ConcurrencyLimitRegistry concurrencyLimitRegistry) {
+            return new ConcurrencyLimitMetrics(concurrencyLimitRegistry);
+        }
+    }
+
 }
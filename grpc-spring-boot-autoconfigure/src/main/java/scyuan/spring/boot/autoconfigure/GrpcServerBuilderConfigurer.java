@@ -0,0 +1,21 @@
+package scyuan.spring.boot.autoconfigure;
+
+import io.grpc.netty.NettyServerBuilder;
+
+/**
+ * Callback for beans that need to customize the {@link NettyServerBuilder} after it has been
+ * configured from {@link GrpcServerProperties} and before the server is built. Configurers are
+ * applied in {@link org.springframework.core.annotation.Order} order, to every server.
+ */
+public interface GrpcServerBuilderConfigurer {
+
+    void configure(NettyServerBuilder serverBuilder);
+
+    /**
+     * Customizes the builder of the named server, override it to tell the servers apart.
+     */
+    default void configure(String serverName, NettyServerBuilder serverBuilder) {
+        configure(serverBuilder);
+    }
+
+}
@@ -0,0 +1,635 @@
+package scyuan.spring.boot.autoconfigure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transport, executor, limits, rate limit, method policies and shutdown settings of one gRPC server: the
+ * default server, bound from the top-level {@code grpc.*} properties, or a named one bound from
+ * {@code grpc.servers.<name>.*}.
+ */
+public class GrpcServerDefinition {
+
+    private int port = 6565;
+
+    /**
+     * Number of threads of the Netty boss event loop, 0 to use the gRPC shared one.
+     */
+    private int bossThreads = 0;
+
+    /**
+     * Number of threads of the Netty worker event loop, 0 to use the gRPC shared one.
+     */
+    private int workerThreads = 0;
+
+    /**
+     * Netty server channel implementation.
+     */
+    private ChannelType channelType = ChannelType.NIO;
+
+    /**
+     * Executor on which the application (service) code is run.
+     */
+    private ExecutorType executor = ExecutorType.DEFAULT;
+
+    /**
+     * Number of threads of the FIXED and BOUNDED executors.
+     */
+    private int executorThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Maximum number of queued tasks of the BOUNDED executor, the calls that find it full are closed
+     * with RESOURCE_EXHAUSTED.
+     */
+    private int executorQueueCapacity = 1000;
+
+    /**
+     * Maximum size of the inbound messages, in bytes, 0 for the gRPC default of 4 MiB. The method
+     * policies may lower or raise it per method.
+     */
+    private int maxInboundMessageSize = 0;
+
+    /**
+     * Policies of the methods, by full method name ("package.Service/Method") or by a prefix of it
+     * ending with '*' ("package.Service/*", "*"). Every setting is taken from the most specific
+     * pattern that sets it.
+     */
+    private Map<String, MethodPolicy> methods = new LinkedHashMap<>();
+
+    private Limits limits = new Limits();
+
+    private RateLimit rateLimit = new RateLimit();
+
+    private Shutdown shutdown = new Shutdown();
+
+    private InProcess inProcess = new InProcess();
+
+    private Health health = new Health();
+
+    private Reflection reflection = new Reflection();
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getBossThreads() {
+        return bossThreads;
+    }
+
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public ChannelType getChannelType() {
+        return channelType;
+    }
+
+    public void setChannelType(ChannelType channelType) {
+        this.channelType = channelType;
+    }
+
+    public ExecutorType getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorType executor) {
+        this.executor = executor;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    public int getExecutorQueueCapacity() {
+        return executorQueueCapacity;
+    }
+
+    public void setExecutorQueueCapacity(int executorQueueCapacity) {
+        this.executorQueueCapacity = executorQueueCapacity;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    public void setLimits(Limits limits) {
+        this.limits = limits;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Shutdown getShutdown() {
+        return shutdown;
+    }
+
+    public void setShutdown(Shutdown shutdown) {
+        this.shutdown = shutdown;
+    }
+
+    public InProcess getInProcess() {
+        return inProcess;
+    }
+
+    public void setInProcess(InProcess inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public Map<String, MethodPolicy> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(Map<String, MethodPolicy> methods) {
+        this.methods = methods;
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    public void setHealth(Health health) {
+        this.health = health;
+    }
+
+    public Reflection getReflection() {
+        return reflection;
+    }
+
+    public void setReflection(Reflection reflection) {
+        this.reflection = reflection;
+    }
+
+    public static class Shutdown {
+
+        /**
+         * Seconds a stopping server waits for the calls in flight to complete before cancelling them.
+         */
+        private long gracePeriodSeconds = 30;
+
+        /**
+         * Milliseconds a stopping server keeps accepting calls once its health service reports
+         * NOT_SERVING, for the health probes and load balancers to see it and stop sending calls,
+         * before the grace period starts. 0 for none.
+         */
+        private long drainDelayMillis = 0;
+
+        public long getGracePeriodSeconds() {
+            return gracePeriodSeconds;
+        }
+
+        public void setGracePeriodSeconds(long gracePeriodSeconds) {
+            this.gracePeriodSeconds = gracePeriodSeconds;
+        }
+
+        public long getDrainDelayMillis() {
+            return drainDelayMillis;
+        }
+
+        public void setDrainDelayMillis(long drainDelayMillis) {
+            this.drainDelayMillis = drainDelayMillis;
+        }
+    }
+
+    public static class InProcess {
+
+        /**
+         * Also serve the services in-process, to the channels of the same JVM created for its name.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Name of the in-process server, the server name by default ("default" for the default server).
+         */
+        private String name;
+
+        /**
+         * Serve in-process only, without binding the port.
+         */
+        private boolean only = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isOnly() {
+            return only;
+        }
+
+        public void setOnly(boolean only) {
+            this.only = only;
+        }
+    }
+
+    public static class MethodPolicy {
+
+        /**
+         * Maximum size of the request messages, in bytes.
+         */
+        private Integer maxInboundMessageSize;
+
+        /**
+         * Maximum size of the response messages, in bytes. A call sending a larger one is closed
+         * with RESOURCE_EXHAUSTED. Only protobuf messages, serialized or not, are measured.
+         */
+        private Integer maxOutboundMessageSize;
+
+        /**
+         * Time after which the server cancels the call with DEADLINE_EXCEEDED, when the client did
+         * not set an earlier deadline, 0 for none.
+         */
+        private Long deadlineMillis;
+
+        /**
+         * Compression of the responses: "gzip", the message encoding of a Codec bean, or "identity"
+         * for none. Clients that don't accept the encoding get uncompressed responses.
+         */
+        private String compression;
+
+        /**
+         * Time the responses are cached for, 0 for no cache. Only for unary methods whose response
+         * depends on the request message alone, not on its metadata or caller. The method is then
+         * bound with byte[] messages, so the interceptors of the server and of the service see
+         * the requests and responses serialized, and its descriptor with byte[] marshallers.
+         */
+        private Long cacheTtlSeconds;
+
+        /**
+         * Bound of the serialized requests and responses the cache holds, in bytes.
+         */
+        private Long cacheMaxBytes;
+
+        /**
+         * Let the service send its responses serialized already, as ByteString or ByteBuffer, and
+         * decode the requests from one array. See PreSerialized.
+         */
+        private Boolean preSerialized;
+
+        public Integer getMaxInboundMessageSize() {
+            return maxInboundMessageSize;
+        }
+
+        public void setMaxInboundMessageSize(Integer maxInboundMessageSize) {
+            this.maxInboundMessageSize = maxInboundMessageSize;
+        }
+
+        public Integer getMaxOutboundMessageSize() {
+            return maxOutboundMessageSize;
+        }
+
+        public void setMaxOutboundMessageSize(Integer maxOutboundMessageSize) {
+            this.maxOutboundMessageSize = maxOutboundMessageSize;
+        }
+
+        public Long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public void setDeadlineMillis(Long deadlineMillis) {
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public String getCompression() {
+            return compression;
+        }
+
+        public void setCompression(String compression) {
+            this.compression = compression;
+        }
+
+        public Long getCacheTtlSeconds() {
+            return cacheTtlSeconds;
+        }
+
+        public void setCacheTtlSeconds(Long cacheTtlSeconds) {
+            this.cacheTtlSeconds = cacheTtlSeconds;
+        }
+
+        public Long getCacheMaxBytes() {
+            return cacheMaxBytes;
+        }
+
+        public void setCacheMaxBytes(Long cacheMaxBytes) {
+            this.cacheMaxBytes = cacheMaxBytes;
+        }
+
+        public Boolean getPreSerialized() {
+            return preSerialized;
+        }
+
+        public void setPreSerialized(Boolean preSerialized) {
+            this.preSerialized = preSerialized;
+        }
+    }
+
+    public static class Health {
+
+        /**
+         * Serve grpc.health.v1.Health, with the status of the server and of each of its services.
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Reflection {
+
+        /**
+         * Serve grpc.reflection.v1alpha.ServerReflection, with the proto files of the services.
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Limits {
+
+        /**
+         * Reject the calls beyond the limits with RESOURCE_EXHAUSTED instead of queueing them.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of calls in flight on the server, 0 for no limit.
+         */
+        private int maxConcurrentCalls = 0;
+
+        /**
+         * Maximum number of calls in flight per method, 0 for no limit.
+         */
+        private int maxConcurrentCallsPerMethod = 0;
+
+        private Adaptive adaptive = new Adaptive();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public int getMaxConcurrentCallsPerMethod() {
+            return maxConcurrentCallsPerMethod;
+        }
+
+        public void setMaxConcurrentCallsPerMethod(int maxConcurrentCallsPerMethod) {
+            this.maxConcurrentCallsPerMethod = maxConcurrentCallsPerMethod;
+        }
+
+        public Adaptive getAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(Adaptive adaptive) {
+            this.adaptive = adaptive;
+        }
+    }
+
+    /**
+     * Token buckets by caller, every call taking one token from the bucket of its caller.
+     */
+    public static class RateLimit {
+
+        /**
+         * Reject the calls of the callers whose bucket is empty with RESOURCE_EXHAUSTED.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Request header whose value keys the buckets, such as a tenant id set by a proxy. The calls
+         * without it, and all the calls when not set, are keyed by their peer address.
+         */
+        private String keyHeader;
+
+        /**
+         * Rate the bucket of every caller refills at.
+         */
+        private double permitsPerSecond = 100;
+
+        /**
+         * Number of calls a caller may make at once with a full bucket, 0 for one second of permits.
+         */
+        private int burst = 0;
+
+        /**
+         * Number of callers with a bucket at most, beyond which the buckets of the least frequent
+         * callers are evicted, to bound the memory with any number of callers. The buckets that
+         * refilled expire anyway. Needs com.github.ben-manes.caffeine:caffeine on the classpath.
+         */
+        private int maxKeys = 100000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getKeyHeader() {
+            return keyHeader;
+        }
+
+        public void setKeyHeader(String keyHeader) {
+            this.keyHeader = keyHeader;
+        }
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public int getMaxKeys() {
+            return maxKeys;
+        }
+
+        public void setMaxKeys(int maxKeys) {
+            this.maxKeys = maxKeys;
+        }
+    }
+
+    /**
+     * AIMD server limit: grows by one while calls complete in time and the limit is in use, shrinks
+     * by the backoff ratio when a call is slower than the latency threshold or times out. Only the
+     * latency of unary calls is sampled, streams count when they time out.
+     */
+    public static class Adaptive {
+
+        private boolean enabled = false;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 1;
+
+        /**
+         * Upper bound of the adaptive limit, max-concurrent-calls takes precedence when lower.
+         */
+        private int maxLimit = 1000;
+
+        private double backoffRatio = 0.9;
+
+        /**
+         * Latency beyond which a unary call shrinks the limit.
+         */
+        private long latencyThresholdMillis = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public long getLatencyThresholdMillis() {
+            return latencyThresholdMillis;
+        }
+
+        public void setLatencyThresholdMillis(long latencyThresholdMillis) {
+            this.latencyThresholdMillis = latencyThresholdMillis;
+        }
+    }
+
+    public enum ChannelType {
+        /**
+         * Use epoll when the native transport is available, NIO otherwise.
+         */
+        AUTO,
+        /**
+         * Use epoll, falling back to NIO when the native transport is unavailable.
+         */
+        EPOLL,
+        NIO
+    }
+
+    public enum ExecutorType {
+        /**
+         * The gRPC default, an unbounded cached thread pool shared by all servers.
+         */
+        DEFAULT,
+        /**
+         * A fixed thread pool with an unbounded queue.
+         */
+        FIXED,
+        /**
+         * A fixed thread pool with a bounded queue, calls beyond it are closed with RESOURCE_EXHAUSTED.
+         * The calls are dispatched onto the pool once past the admission interceptors of the server
+         * (in-flight tracking, metrics, rate and concurrency limits), so those, the decoding of the
+         * messages, and the health and reflection services run on the event loop.
+         */
+        BOUNDED,
+        /**
+         * Run the service code on the Netty event loop, only for services that never block.
+         */
+        DIRECT,
+        /**
+         * A new virtual thread per task, for services that block. Needs a JDK 21+ runtime, the
+         * DEFAULT executor is used on older ones.
+         */
+        VIRTUAL
+    }
+}
@@ -2,20 +2,181 @@ package scyuan.spring.boot.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Created by yuanshichao on 16/2/18.
  */
 
 @ConfigurationProperties("grpc")
-public class GrpcServerProperties {
+public class GrpcServerProperties extends GrpcServerDefinition {
+
+    /**
+     * Name of the server defined by the top-level properties, which services run on by default.
+     */
+    public static final String DEFAULT_SERVER = "default";
+
+    /**
+     * Start the server with the application context, otherwise GrpcServerRunner#start() does.
+     */
+    private boolean autoStartup = true;
+
+    /**
+     * Lifecycle phase of the server: it starts after and stops before the beans of lower phases.
+     */
+    private int phase = Integer.MAX_VALUE;
+
+    /**
+     * Dedicated thread pools, by name, that services select with {@code @GrpcService(executor = "name")}.
+     */
+    private Map<String, ThreadPool> executors = new LinkedHashMap<>();
+
+    private Metrics metrics = new Metrics();
+
+    /**
+     * Additional servers, by name, that services select with {@code @GrpcService(servers = "name")}.
+     * Every server has its own port, event loops, executor, limits and shutdown; settings that are
+     * not given take their defaults, not the values of the default server.
+     */
+    private Map<String, GrpcServerDefinition> servers = new LinkedHashMap<>();
+
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    public void setAutoStartup(boolean autoStartup) {
+        this.autoStartup = autoStartup;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    public void setPhase(int phase) {
+        this.phase = phase;
+    }
+
+    public Map<String, ThreadPool> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(Map<String, ThreadPool> executors) {
+        this.executors = executors;
+    }
+
+    public Map<String, GrpcServerDefinition> getServers() {
+        return servers;
+    }
+
+    public void setServers(Map<String, GrpcServerDefinition> servers) {
+        this.servers = servers;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public static class Metrics {
+
+        /**
+         * Record call counts, statuses and latencies of every method.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of significant decimal digits of the latency histograms.
+         */
+        private int latencySignificantDigits = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLatencySignificantDigits() {
+            return latencySignificantDigits;
+        }
+
+        public void setLatencySignificantDigits(int latencySignificantDigits) {
+            this.latencySignificantDigits = latencySignificantDigits;
+        }
+    }
+
+    public static class ThreadPool {
+
+        private int coreThreads = Runtime.getRuntime().availableProcessors();
+
+        private int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Maximum number of queued tasks, beyond it the rejection policy applies.
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * Seconds an idle thread above the core threads is kept alive.
+         */
+        private int keepAliveSeconds = 60;
+
+        private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+        public int getCoreThreads() {
+            return coreThreads;
+        }
+
+        public void setCoreThreads(int coreThreads) {
+            this.coreThreads = coreThreads;
+        }
+
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+
+        public void setMaxThreads(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
 
-    private int port = 6565;
+        public RejectionPolicy getRejectionPolicy() {
+            return rejectionPolicy;
+        }
 
-    public int getPort() {
-        return port;
+        public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+            this.rejectionPolicy = rejectionPolicy;
+        }
     }
 
-    public void setPort(int port) {
-        this.port = port;
+    public enum RejectionPolicy {
+        /**
+         * Fail the call with RESOURCE_EXHAUSTED.
+         */
+        ABORT,
+        /**
+         * Run the task on the thread that dispatched it.
+         */
+        CALLER_RUNS
     }
 }
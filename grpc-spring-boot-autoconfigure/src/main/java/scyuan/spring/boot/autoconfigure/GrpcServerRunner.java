@@ -1,28 +1,46 @@
 package scyuan.spring.boot.autoconfigure;
 
-import io.grpc.BindableService;
-import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.Codec;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.serviceloader.ServiceFactoryBean;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.ApplicationContext;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import scyuan.spring.boot.autoconfigure.annotation.GrpcGlobalInterceptor;
 import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCacheRegistry;
+import scyuan.spring.boot.autoconfigure.executor.GrpcServiceExecutors;
+import scyuan.spring.boot.autoconfigure.executor.ServiceExecutorInterceptor;
+import scyuan.spring.boot.autoconfigure.limit.ConcurrencyLimitInterceptor;
+import scyuan.spring.boot.autoconfigure.limit.ConcurrencyLimitRegistry;
+import scyuan.spring.boot.autoconfigure.marshal.GrpcMarshallerConfigurer;
+import scyuan.spring.boot.autoconfigure.marshal.PreSerialized;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetrics;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetricsInterceptor;
+import scyuan.spring.boot.autoconfigure.policy.MethodPolicyInterceptor;
+import scyuan.spring.boot.autoconfigure.registry.GrpcServiceRegistry;
+import scyuan.spring.boot.autoconfigure.registry.RegisteredService;
 
-import java.lang.reflect.Method;
-import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
 
 /**
  * Created by yuanshichao on 16/2/18.
  */
 
-public class GrpcServerRunner implements CommandLineRunner, DisposableBean {
+public class GrpcServerRunner implements SmartLifecycle, DisposableBean {
 
     private static final Log LOG = LogFactory.getLog(GrpcServerRunner.class);
 
@@ -32,48 +50,334 @@ public class GrpcServerRunner implements CommandLineRunner, DisposableBean {
     @Autowired
     private GrpcServerProperties grpcServerProperties;
 
-    private Server server;
+    @Autowired
+    private GrpcServiceExecutors grpcServiceExecutors;
 
-    public void run(String... strings) throws Exception {
-        LOG.info("Starting gRPC Server ...");
+    @Autowired
+    private GrpcServiceRegistry grpcServiceRegistry;
+
+    @Autowired(required = false)
+    private GrpcServerMetrics grpcServerMetrics;
+
+    @Autowired(required = false)
+    private ConcurrencyLimitRegistry concurrencyLimitRegistry;
+
+    @Autowired(required = false)
+    private ResponseCacheRegistry responseCacheRegistry;
+
+    private final Map<String, ManagedGrpcServer> servers = new LinkedHashMap<>();
+
+    private List<ServerInterceptor> globalInterceptors;
+
+    private List<GrpcMarshallerConfigurer> marshallerConfigurers;
+
+    private volatile boolean running;
 
-        final ServerBuilder<?> serverBuilder = ServerBuilder.forPort(grpcServerProperties.getPort());
+    /**
+     * Holds the JVM up while the servers run, as the gRPC and Netty threads are daemon ones.
+     */
+    private CountDownLatch keepAlive;
 
-        for (final Object grpcService : applicationContext.getBeansWithAnnotation(GrpcService.class).values()) {
-            if (grpcService instanceof BindableService) {
-                serverBuilder.addService((BindableService)grpcService);
-                LOG.info("'" + grpcService.getClass().getSimpleName() + "' service has been registered.");
+    /**
+     * Discovers and binds the services and opens the ports. Runs in the lifecycle phase of the
+     * runner, once every singleton is created, rather than after the whole application context is
+     * refreshed.
+     * <p>
+     * Every server that serves a service is started, and the default server also when no other
+     * server is configured.
+     */
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        LOG.info("Starting gRPC Server ...");
+
+        globalInterceptors = new ArrayList<>();
+        for (final Object interceptor : applicationContext.getBeansWithAnnotation(GrpcGlobalInterceptor.class).values()) {
+            if (interceptor instanceof ServerInterceptor) {
+                globalInterceptors.add((ServerInterceptor) interceptor);
             } else {
-                throw new IllegalArgumentException("'" +grpcService.getClass().getName() +
-                        "' don't implement the BindableService interface");
+                throw new IllegalArgumentException("'" + interceptor.getClass().getName() +
+                        "' don't implement the ServerInterceptor interface");
+            }
+        }
+
+        final List<GrpcServerBuilderConfigurer> configurers = new ArrayList<>(
+                applicationContext.getBeansOfType(GrpcServerBuilderConfigurer.class).values());
+        AnnotationAwareOrderComparator.sort(configurers);
+        marshallerConfigurers = new ArrayList<>(applicationContext.getBeansOfType(GrpcMarshallerConfigurer.class).values());
+        AnnotationAwareOrderComparator.sort(marshallerConfigurers);
+        final Collection<Codec> codecs = applicationContext.getBeansOfType(Codec.class).values();
+
+        servers.clear();
+        servers.put(GrpcServerProperties.DEFAULT_SERVER,
+                new ManagedGrpcServer(GrpcServerProperties.DEFAULT_SERVER, grpcServerProperties, configurers, codecs));
+        for (Map.Entry<String, GrpcServerDefinition> entry : grpcServerProperties.getServers().entrySet()) {
+            if (GrpcServerProperties.DEFAULT_SERVER.equals(entry.getKey())) {
+                throw new IllegalArgumentException("'" + GrpcServerProperties.DEFAULT_SERVER
+                        + "' is the server of the top-level grpc properties, it can't be configured under grpc.servers");
+            }
+            servers.put(entry.getKey(), new ManagedGrpcServer(entry.getKey(), entry.getValue(), configurers, codecs));
+        }
+
+        grpcServiceRegistry.build();
+        for (final RegisteredService service : grpcServiceRegistry.getServices()) {
+            final GrpcService annotation = service.getAnnotation();
+            for (String serverName : service.getServers()) {
+                final ManagedGrpcServer server = servers.get(serverName);
+                if (server == null) {
+                    throw new IllegalArgumentException("'" + service.getBean().getClass().getName() +
+                            "' is served on the unknown gRPC server '" + serverName + "'");
+                }
+                server.addService(bindService(service, server));
+                LOG.info("'" + service.getBean().getClass().getSimpleName() + "' service has been registered on server '"
+                        + serverName + "'" + (annotation.executor().isEmpty() ? "." : " and executor '" + annotation.executor() + "'."));
+            }
+        }
+        for (ManagedGrpcServer server : servers.values()) {
+            if (server.getDefinition().getReflection().isEnabled()) {
+                server.enableReflection(grpcServiceRegistry.getServices(server.getName()));
             }
         }
 
-        server = serverBuilder.build().start();
-        LOG.info("gRPC Server started, listening on port " + grpcServerProperties.getPort());
+        final boolean namedServers = !grpcServerProperties.getServers().isEmpty();
+        final List<ManagedGrpcServer> started = new ArrayList<>();
+        try {
+            for (ManagedGrpcServer server : servers.values()) {
+                if (server.hasServices() || (!namedServers && GrpcServerProperties.DEFAULT_SERVER.equals(server.getName()))) {
+                    server.start();
+                    started.add(server);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (ManagedGrpcServer server : started) {
+                server.stop();
+            }
+            throw e;
+        }
+        running = true;
 
-        startDaemonAwaitThread();
+        for (ManagedGrpcServer server : started) {
+            // in-process servers only serve the JVM they run in, there is no one to wait for
+            if (server.getPort() >= 0) {
+                startKeepAliveThread();
+                break;
+            }
+        }
     }
 
-    public void destroy() throws Exception {
-        LOG.info("Shutting down gRPC server ...");
-        Optional.ofNullable(server).ifPresent(Server::shutdown);
-        LOG.info("gRPC server stopped.");
+    /**
+     * Binds the service behind its interceptor chain for the given server, built once here so that
+     * calls only go through the pre-composed handlers. The chain, from the first interceptor to see
+     * a call:
+     * <ol>
+     *     <li>the in-flight call tracking of the graceful shutdown;</li>
+     *     <li>the metrics interceptor, so the whole server-side latency is recorded, bound to the
+     *     metrics of each method;</li>
+     *     <li>the rate limit of the callers, so their rejected calls take no concurrency;</li>
+     *     <li>the concurrency limits, so rejected calls cost as little as possible, bound to the
+     *     limiter of each method;</li>
+     *     <li>the dispatch onto the pool of the BOUNDED server executor, closing the calls it can't
+     *     take with RESOURCE_EXHAUSTED;</li>
+     *     <li>the global and the service interceptors, in {@code @Order} order;</li>
+     *     <li>the service executor dispatch, so only the service code runs on that executor;</li>
+     *     <li>the response caches, which answer the hits without calling the policies and the service;</li>
+     *     <li>the method policies, so that the calls they close go through all the interceptors above.</li>
+     * </ol>
+     * The methods are bound with their marshallers first, so the caches and the policies read and
+     * write the messages with them too.
+     */
+    private ServerServiceDefinition bindService(RegisteredService service, ManagedGrpcServer server) {
+        final GrpcService annotation = service.getAnnotation();
+        ServerServiceDefinition serviceDefinition =
+                MethodPolicyInterceptor.apply(bindMarshallers(service.getDefinition(), server), server.getMethodPolicies());
+        if (server.getMethodPolicies().hasCaches()) {
+            if (responseCacheRegistry == null) {
+                throw new IllegalStateException("The response caches of gRPC server '" + server.getName()
+                        + "' need com.github.ben-manes.caffeine:caffeine on the classpath");
+            }
+            serviceDefinition = responseCacheRegistry.apply(server.getName(), serviceDefinition, server.getMethodPolicies());
+        }
+        // the interceptors by method, those of the metrics and limits being bound to the method
+        final List<Function<ServerMethodDefinition<?, ?>, ServerInterceptor>> interceptors = new ArrayList<>();
+        final ServerInterceptor callTracker = server.getCallTracker();
+        interceptors.add(method -> callTracker);
+
+        if (grpcServerMetrics != null) {
+            final String serverName = server.getName();
+            interceptors.add(method -> new GrpcServerMetricsInterceptor(
+                    grpcServerMetrics.getMethodMetrics(serverName, method.getMethodDescriptor().getFullMethodName())));
+        }
+
+        final ServerInterceptor rateLimitInterceptor = server.getRateLimitInterceptor();
+        if (rateLimitInterceptor != null) {
+            interceptors.add(method -> rateLimitInterceptor);
+        }
+
+        final ConcurrencyLimitInterceptor concurrencyLimitInterceptor = concurrencyLimitRegistry == null ? null
+                : concurrencyLimitRegistry.getInterceptor(server.getName(), server.getDefinition().getLimits());
+        if (concurrencyLimitInterceptor != null) {
+            interceptors.add(concurrencyLimitInterceptor::forMethod);
+        }
+
+        final List<ServerInterceptor> serviceInterceptors = new ArrayList<>();
+        if (server.getExecutorInterceptor() != null) {
+            serviceInterceptors.add(server.getExecutorInterceptor());
+        }
 
+        final List<ServerInterceptor> orderedInterceptors = new ArrayList<>(globalInterceptors);
+        for (Class<? extends ServerInterceptor> interceptorType : annotation.interceptors()) {
+            orderedInterceptors.add(applicationContext.getBean(interceptorType));
+        }
+        AnnotationAwareOrderComparator.sort(orderedInterceptors);
+        serviceInterceptors.addAll(orderedInterceptors);
+
+        if (!annotation.executor().isEmpty()) {
+            final GrpcServiceExecutors.ServicePool pool = grpcServiceExecutors.getPool(annotation.executor());
+            serviceInterceptors.add(new ServiceExecutorInterceptor(annotation.executor(),
+                    grpcServiceExecutors.getExecutor(annotation.executor()),
+                    pool != null ? pool::recordQueueWait : null));
+        }
+        for (ServerInterceptor interceptor : serviceInterceptors) {
+            interceptors.add(method -> interceptor);
+        }
+
+        final ServerServiceDefinition.Builder builder =
+                ServerServiceDefinition.builder(serviceDefinition.getServiceDescriptor().getName());
+        for (ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            builder.addMethod(intercept(method, interceptors));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Wraps the handler of the method in its interceptors, the first one seeing the calls first, as
+     * {@link io.grpc.ServerInterceptors#interceptForward} does.
+     */
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> intercept(
+            ServerMethodDefinition<ReqT, RespT> method,
+            List<Function<ServerMethodDefinition<?, ?>, ServerInterceptor>> interceptors) {
+        ServerCallHandler<ReqT, RespT> handler = method.getServerCallHandler();
+        for (int i = interceptors.size() - 1; i >= 0; i--) {
+            final ServerInterceptor interceptor = interceptors.get(i).apply(method);
+            final ServerCallHandler<ReqT, RespT> next = handler;
+            handler = (call, headers) -> interceptor.interceptCall(call, headers, next);
+        }
+        return ServerMethodDefinition.create(method.getMethodDescriptor(), handler);
+    }
+
+    /**
+     * Binds the methods with the pre-serialized marshallers of their policy, then with those of the
+     * {@link GrpcMarshallerConfigurer} beans.
+     */
+    private ServerServiceDefinition bindMarshallers(ServerServiceDefinition service, ManagedGrpcServer server) {
+        final ServerServiceDefinition preSerialized = PreSerialized.apply(service, server.getMethodPolicies());
+        if (marshallerConfigurers.isEmpty()) {
+            return preSerialized;
+        }
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.getServiceDescriptor().getName());
+        for (ServerMethodDefinition<?, ?> method : preSerialized.getMethods()) {
+            builder.addMethod(configureMarshallers(server.getName(), method));
+        }
+        return builder.build();
+    }
+
+    private <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> configureMarshallers(String serverName,
+                                                                                  ServerMethodDefinition<ReqT, RespT> method) {
+        ServerMethodDefinition<ReqT, RespT> configured = method;
+        for (GrpcMarshallerConfigurer configurer : marshallerConfigurers) {
+            configured = configurer.configure(serverName, configured);
+        }
+        return configured;
+    }
+
+    /**
+     * Returns the server of the given name, null when there is none.
+     */
+    public ManagedGrpcServer getServer(String name) {
+        return servers.get(name);
+    }
+
+    public Collection<ManagedGrpcServer> getServers() {
+        return Collections.unmodifiableCollection(servers.values());
+    }
+
+    /**
+     * Drains all the servers at once, so that their grace periods overlap. Runs in the last phase,
+     * before the beans the services depend on are stopped or destroyed.
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        final List<Thread> shutdownThreads = new ArrayList<>();
+        for (final ManagedGrpcServer server : servers.values()) {
+            if (server.isRunning()) {
+                final Thread shutdownThread = new Thread(server::stop, "grpc-" + server.getName() + "-shutdown");
+                shutdownThread.start();
+                shutdownThreads.add(shutdownThread);
+            }
+        }
+        for (Thread shutdownThread : shutdownThreads) {
+            try {
+                shutdownThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (keepAlive != null) {
+            keepAlive.countDown();
+            keepAlive = null;
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return grpcServerProperties.isAutoStartup();
+    }
+
+    @Override
+    public int getPhase() {
+        return grpcServerProperties.getPhase();
+    }
+
+    /**
+     * Stops the servers when the context is closed without stopping its lifecycle beans first.
+     */
+    public void destroy() throws Exception {
+        stop();
     }
 
-    private void startDaemonAwaitThread() {
-        Thread awaitThread = new Thread() {
+    private void startKeepAliveThread() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        keepAlive = latch;
+        final Thread keepAliveThread = new Thread("grpc-server-keep-alive") {
             @Override
             public void run() {
                 try {
-                    GrpcServerRunner.this.server.awaitTermination();
+                    latch.await();
                 } catch (InterruptedException e) {
-                    LOG.error("gRPC server stopped.", e);
+                    Thread.currentThread().interrupt();
                 }
             }
         };
-        awaitThread.setDaemon(false);
-        awaitThread.start();
+        keepAliveThread.setDaemon(false);
+        keepAliveThread.start();
     }
 }
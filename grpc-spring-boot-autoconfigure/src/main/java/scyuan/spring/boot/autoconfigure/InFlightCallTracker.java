@@ -0,0 +1,95 @@
+package scyuan.spring.boot.autoconfigure;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the calls of a server from the moment they are intercepted until they are closed by the
+ * service or cancelled, so that a shutdown can tell how many calls it drained and aborted.
+ */
+class InFlightCallTracker implements ServerInterceptor {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getCompleted() {
+        return completed.get();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final Tracking tracking = new Tracking(this);
+        final ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(new TrackedServerCall<>(call, tracking), headers);
+        } catch (RuntimeException e) {
+            tracking.complete();
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                tracking.complete();
+                super.onCancel();
+            }
+        };
+    }
+
+    private static class TrackedServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final Tracking tracking;
+
+        TrackedServerCall(ServerCall<ReqT, RespT> delegate, Tracking tracking) {
+            super(delegate);
+            this.tracking = tracking;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            tracking.complete();
+            super.close(status, trailers);
+        }
+    }
+
+    /**
+     * One call counted in flight, apart from the generic call so that its field updater is not of a
+     * raw type.
+     */
+    private static final class Tracking {
+
+        private static final AtomicIntegerFieldUpdater<Tracking> COMPLETED =
+                AtomicIntegerFieldUpdater.newUpdater(Tracking.class, "completed");
+
+        private final InFlightCallTracker tracker;
+
+        private volatile int completed;
+
+        Tracking(InFlightCallTracker tracker) {
+            this.tracker = tracker;
+            tracker.inFlight.incrementAndGet();
+        }
+
+        void complete() {
+            if (COMPLETED.compareAndSet(this, 0, 1)) {
+                tracker.inFlight.decrementAndGet();
+                tracker.completed.incrementAndGet();
+            }
+        }
+    }
+}
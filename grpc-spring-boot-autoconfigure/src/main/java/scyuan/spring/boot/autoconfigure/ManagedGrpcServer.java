@@ -0,0 +1,324 @@
+package scyuan.spring.boot.autoconfigure;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.NettyServerBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+import scyuan.spring.boot.autoconfigure.executor.ServiceExecutorInterceptor;
+import scyuan.spring.boot.autoconfigure.health.GrpcHealthService;
+import scyuan.spring.boot.autoconfigure.health.HealthCheckProtocol;
+import scyuan.spring.boot.autoconfigure.limit.RateLimitInterceptor;
+import scyuan.spring.boot.autoconfigure.policy.MethodPolicies;
+import scyuan.spring.boot.autoconfigure.reflection.GrpcReflectionService;
+import scyuan.spring.boot.autoconfigure.registry.RegisteredService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One gRPC server of the application, with its own port, event loops, executor and in-flight call
+ * tracking, and optionally an in-process transport serving the same services to the same JVM.
+ * {@link GrpcServerRunner} creates, starts and stops all of them with the application context, and
+ * gives access to them to stop or restart one on its own.
+ * <p>
+ * Unless disabled, every server also serves grpc.health.v1.Health: SERVING once started, NOT_SERVING
+ * from the start of the drain. The health service is added without the interceptors, so probes go
+ * through neither the limits nor the service executors that the calls may saturate. The server
+ * reflection, when enabled, is added the same way.
+ */
+public class ManagedGrpcServer {
+
+    private static final Log LOG = LogFactory.getLog(ManagedGrpcServer.class);
+
+    private static final long FORCED_SHUTDOWN_SECONDS = 5;
+
+    private static final boolean CAFFEINE_PRESENT = ClassUtils.isPresent("com.github.benmanes.caffeine.cache.Caffeine",
+            ManagedGrpcServer.class.getClassLoader());
+
+    private final String name;
+
+    private final GrpcServerDefinition definition;
+
+    private final List<GrpcServerBuilderConfigurer> configurers;
+
+    private final Collection<Codec> codecs;
+
+    private final MethodPolicies methodPolicies;
+
+    private final List<ServerServiceDefinition> services = new ArrayList<>();
+
+    private final InFlightCallTracker callTracker = new InFlightCallTracker();
+
+    private final GrpcHealthService healthService;
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    private final ServiceExecutorInterceptor executorInterceptor;
+
+    private GrpcReflectionService reflectionService;
+
+    private Server server;
+
+    private Server inProcessServer;
+
+    private volatile NettyServerBuilderFactory serverBuilderFactory;
+
+    private volatile boolean running;
+
+    ManagedGrpcServer(String name, GrpcServerDefinition definition, List<GrpcServerBuilderConfigurer> configurers,
+                      Collection<Codec> codecs) {
+        this.name = name;
+        this.definition = definition;
+        this.configurers = configurers;
+        this.codecs = codecs;
+        this.methodPolicies = new MethodPolicies(definition, codecs);
+        this.healthService = definition.getHealth().isEnabled() ? new GrpcHealthService() : null;
+        if (definition.getRateLimit().isEnabled() && !CAFFEINE_PRESENT) {
+            throw new IllegalStateException("The rate limit of gRPC server '" + name
+                    + "' needs com.github.ben-manes.caffeine:caffeine on the classpath");
+        }
+        this.rateLimitInterceptor = definition.getRateLimit().isEnabled()
+                ? new RateLimitInterceptor(name, definition.getRateLimit()) : null;
+        // the pool of the current factory, as every start creates a new one
+        this.executorInterceptor = definition.getExecutor() == GrpcServerDefinition.ExecutorType.BOUNDED
+                ? new ServiceExecutorInterceptor(name, task -> serverBuilderFactory.getBoundedExecutor().execute(task))
+                : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GrpcServerDefinition getDefinition() {
+        return definition;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Port the server listens on, the actual one when the configured port is 0, or -1 when it is
+     * served in-process only.
+     */
+    public int getPort() {
+        if (definition.getInProcess().isEnabled() && definition.getInProcess().isOnly()) {
+            return -1;
+        }
+        return running ? server.getPort() : definition.getPort();
+    }
+
+    /**
+     * Name the in-process channels of this server are created for.
+     */
+    public String getInProcessName() {
+        return inProcessName(name, definition);
+    }
+
+    static String inProcessName(String serverName, GrpcServerDefinition definition) {
+        final String inProcessName = definition.getInProcess().getName();
+        return inProcessName == null || inProcessName.isEmpty() ? serverName : inProcessName;
+    }
+
+    public int getInFlightCalls() {
+        return callTracker.getInFlight();
+    }
+
+    /**
+     * Health service of the server, null when disabled.
+     */
+    public GrpcHealthService getHealthService() {
+        return healthService;
+    }
+
+    /**
+     * Reflection service of the server, null when disabled.
+     */
+    public GrpcReflectionService getReflectionService() {
+        return reflectionService;
+    }
+
+    void enableReflection(Collection<RegisteredService> registeredServices) {
+        reflectionService = new GrpcReflectionService(registeredServices, healthService != null
+                ? Collections.singletonList(HealthCheckProtocol.SERVICE_NAME) : Collections.<String>emptyList());
+    }
+
+    public MethodPolicies getMethodPolicies() {
+        return methodPolicies;
+    }
+
+    /**
+     * Rate limit interceptor of the server, shared by all its services, null when disabled.
+     */
+    public RateLimitInterceptor getRateLimitInterceptor() {
+        return rateLimitInterceptor;
+    }
+
+    /**
+     * Interceptor dispatching the calls onto the pool of the BOUNDED executor, null for the other
+     * executors, which the transport runs the calls on itself.
+     */
+    ServiceExecutorInterceptor getExecutorInterceptor() {
+        return executorInterceptor;
+    }
+
+    InFlightCallTracker getCallTracker() {
+        return callTracker;
+    }
+
+    void addService(ServerServiceDefinition service) {
+        services.add(service);
+    }
+
+    boolean hasServices() {
+        return !services.isEmpty();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final GrpcServerDefinition.InProcess inProcess = definition.getInProcess();
+        serverBuilderFactory = new NettyServerBuilderFactory(name, definition);
+        try {
+            if (inProcess.isEnabled()) {
+                inProcessServer = addServices(serverBuilderFactory.createInProcess(getInProcessName())).build().start();
+            }
+            if (!inProcess.isEnabled() || !inProcess.isOnly()) {
+                final NettyServerBuilder serverBuilder = addServices(serverBuilderFactory.create());
+                serverBuilder.maxMessageSize(methodPolicies.getTransportMaxInboundMessageSize());
+                for (GrpcServerBuilderConfigurer configurer : configurers) {
+                    configurer.configure(name, serverBuilder);
+                }
+                server = serverBuilder.build().start();
+            }
+        } catch (IOException e) {
+            if (inProcessServer != null) {
+                inProcessServer.shutdownNow();
+                inProcessServer = null;
+            }
+            serverBuilderFactory.shutdown();
+            throw new IllegalStateException("Failed to start gRPC server '" + name + "' on port "
+                    + definition.getPort(), e);
+        }
+        running = true;
+        if (healthService != null) {
+            final List<String> serviceNames = new ArrayList<>(services.size());
+            for (ServerServiceDefinition service : services) {
+                serviceNames.add(service.getServiceDescriptor().getName());
+            }
+            healthService.startServing(serviceNames);
+        }
+        LOG.info("gRPC Server '" + name + "' started, "
+                + (server != null ? "listening on port " + server.getPort() : "in-process only")
+                + (inProcessServer != null ? ", in-process name '" + getInProcessName() + "'" : "") + " ("
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms)");
+    }
+
+    private <T extends ServerBuilder<T>> T addServices(T serverBuilder) {
+        for (ServerServiceDefinition service : services) {
+            serverBuilder.addService(service);
+        }
+        if (healthService != null) {
+            serverBuilder.addService(healthService);
+        }
+        if (reflectionService != null) {
+            serverBuilder.addService(reflectionService);
+        }
+        if (!codecs.isEmpty()) {
+            final CompressorRegistry compressors = CompressorRegistry.newEmptyInstance();
+            compressors.register(new Codec.Gzip());
+            DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+            for (Codec codec : codecs) {
+                compressors.register(codec);
+                decompressors = decompressors.with(codec, true);
+            }
+            serverBuilder.compressorRegistry(compressors).decompressorRegistry(decompressors);
+        }
+        return serverBuilder;
+    }
+
+    /**
+     * Drains the server: the health service reports NOT_SERVING for the drain delay, then new calls
+     * are refused, the calls in flight get the grace period to complete and are cancelled after it.
+     * The socket and in-process transports share the grace period.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LOG.info("Shutting down gRPC server '" + name + "', " + callTracker.getInFlight() + " calls in flight ...");
+
+        final long gracePeriodSeconds = definition.getShutdown().getGracePeriodSeconds();
+        final long completedBefore = callTracker.getCompleted();
+        if (healthService != null) {
+            healthService.drain();
+            awaitDrainDelay(definition.getShutdown().getDrainDelayMillis());
+        }
+        final List<Server> transports = new ArrayList<>(2);
+        if (server != null) {
+            transports.add(server);
+        }
+        if (inProcessServer != null) {
+            transports.add(inProcessServer);
+        }
+        for (Server transport : transports) {
+            transport.shutdown();
+        }
+        final boolean terminated = awaitTermination(transports, gracePeriodSeconds);
+        final long drained = callTracker.getCompleted() - completedBefore;
+        int aborted = 0;
+        if (!terminated) {
+            aborted = callTracker.getInFlight();
+            LOG.warn("gRPC server '" + name + "' did not drain within " + gracePeriodSeconds
+                    + " seconds, cancelling " + aborted + " calls.");
+            for (Server transport : transports) {
+                transport.shutdownNow();
+            }
+            awaitTermination(transports, FORCED_SHUTDOWN_SECONDS);
+        }
+        server = null;
+        inProcessServer = null;
+        serverBuilderFactory.shutdown();
+        LOG.info("gRPC server '" + name + "' stopped, " + drained + " calls drained, " + aborted + " aborted.");
+    }
+
+    private void awaitDrainDelay(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        LOG.info("gRPC server '" + name + "' is NOT_SERVING, refusing calls in " + millis + " ms ...");
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean awaitTermination(List<Server> transports, long seconds) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            for (Server transport : transports) {
+                if (!transport.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
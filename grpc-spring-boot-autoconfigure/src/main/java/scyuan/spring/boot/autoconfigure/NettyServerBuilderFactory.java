@@ -0,0 +1,206 @@
+package scyuan.spring.boot.autoconfigure;
+
+import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition.ExecutorType;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a {@link NettyServerBuilder}, and the {@link InProcessServerBuilder} of the in-process
+ * transport, configured from a {@link GrpcServerDefinition} and owns the event loops and executor it
+ * created for them, which are released by {@link #shutdown()}.
+ */
+public class NettyServerBuilderFactory {
+
+    private static final Log LOG = LogFactory.getLog(NettyServerBuilderFactory.class);
+
+    private static final boolean EPOLL_PRESENT = ClassUtils.isPresent("io.netty.channel.epoll.Epoll",
+            NettyServerBuilderFactory.class.getClassLoader());
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR =
+            ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+
+    private final GrpcServerDefinition definition;
+
+    /** Prefix of the thread names, "grpc" for the default server and "grpc-name" for the others. */
+    private final String threadNamePrefix;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ExecutorService executor;
+
+    public NettyServerBuilderFactory(GrpcServerDefinition definition) {
+        this(GrpcServerProperties.DEFAULT_SERVER, definition);
+    }
+
+    public NettyServerBuilderFactory(String serverName, GrpcServerDefinition definition) {
+        this.definition = definition;
+        this.threadNamePrefix = GrpcServerProperties.DEFAULT_SERVER.equals(serverName) ? "grpc" : "grpc-" + serverName;
+    }
+
+    public NettyServerBuilder create() {
+        final NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(definition.getPort());
+
+        final boolean epoll = useEpoll();
+        if (epoll) {
+            // the shared gRPC event loops are NIO ones, so epoll always needs its own groups
+            serverBuilder.channelType(EpollSupport.serverChannelType());
+            bossGroup = EpollSupport.newEventLoopGroup(definition.getBossThreads(), threadFactory(threadNamePrefix + "-boss"));
+            workerGroup = EpollSupport.newEventLoopGroup(definition.getWorkerThreads(), threadFactory(threadNamePrefix + "-worker"));
+        } else {
+            serverBuilder.channelType(NioServerSocketChannel.class);
+            if (definition.getBossThreads() > 0) {
+                bossGroup = new NioEventLoopGroup(definition.getBossThreads(), threadFactory(threadNamePrefix + "-boss"));
+            }
+            if (definition.getWorkerThreads() > 0) {
+                workerGroup = new NioEventLoopGroup(definition.getWorkerThreads(), threadFactory(threadNamePrefix + "-worker"));
+            }
+        }
+        if (bossGroup != null) {
+            serverBuilder.bossEventLoopGroup(bossGroup);
+        }
+        if (workerGroup != null) {
+            serverBuilder.workerEventLoopGroup(workerGroup);
+        }
+
+        final ExecutorType executorType = configureExecutor(serverBuilder);
+
+        LOG.info("gRPC Server transport: " + (epoll ? "epoll" : "nio") + ", executor: " + executorType);
+        return serverBuilder;
+    }
+
+    /**
+     * Creates the builder of the in-process server of the given name, which runs the calls on the
+     * same executor as the Netty server of this factory.
+     */
+    public InProcessServerBuilder createInProcess(String name) {
+        final InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(name);
+        final ExecutorType executorType = configureExecutor(serverBuilder);
+        LOG.info("gRPC Server transport: in-process '" + name + "', executor: " + executorType);
+        return serverBuilder;
+    }
+
+    private ExecutorType configureExecutor(ServerBuilder<?> serverBuilder) {
+        ExecutorType executorType = definition.getExecutor();
+        if (executorType == ExecutorType.VIRTUAL && NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            LOG.warn("Virtual threads need a JDK 21+ runtime, falling back to the default executor.");
+            executorType = ExecutorType.DEFAULT;
+        }
+
+        switch (executorType) {
+            case DIRECT:
+                serverBuilder.directExecutor();
+                break;
+            case FIXED:
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(definition.getExecutorThreads(), threadFactory(threadNamePrefix + "-executor"));
+                }
+                serverBuilder.executor(executor);
+                break;
+            case BOUNDED:
+                // the transport would reset the streams it can't hand to a saturated pool with INTERNAL,
+                // the calls are dispatched onto the pool by the interceptor of getBoundedExecutor() instead
+                getBoundedExecutor();
+                serverBuilder.directExecutor();
+                break;
+            case VIRTUAL:
+                if (executor == null) {
+                    executor = (ExecutorService) ReflectionUtils.invokeMethod(NEW_VIRTUAL_THREAD_EXECUTOR, null);
+                }
+                serverBuilder.executor(executor);
+                break;
+            default:
+                break;
+        }
+        return executorType;
+    }
+
+    /**
+     * Returns the pool of the BOUNDED executor, created the first time. The transport runs the calls
+     * on the event loop, a {@link scyuan.spring.boot.autoconfigure.executor.ServiceExecutorInterceptor}
+     * of the server dispatches them onto the pool, and closes them with RESOURCE_EXHAUSTED when it is
+     * saturated.
+     */
+    public synchronized ExecutorService getBoundedExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(definition.getExecutorThreads(), definition.getExecutorThreads(),
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(definition.getExecutorQueueCapacity()),
+                    threadFactory(threadNamePrefix + "-executor"));
+        }
+        return executor;
+    }
+
+    public void shutdown() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private boolean useEpoll() {
+        switch (definition.getChannelType()) {
+            case EPOLL:
+                if (epollAvailable()) {
+                    return true;
+                }
+                LOG.warn("Epoll transport is not available, falling back to NIO.");
+                return false;
+            case AUTO:
+                return epollAvailable();
+            default:
+                return false;
+        }
+    }
+
+    private static boolean epollAvailable() {
+        return EPOLL_PRESENT && EpollSupport.isAvailable();
+    }
+
+    private static ThreadFactory threadFactory(String poolName) {
+        return new DefaultThreadFactory(poolName, true);
+    }
+
+    /**
+     * Keeps the references to the optional native transport classes out of the factory itself.
+     */
+    private static class EpollSupport {
+
+        static boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        static Class<? extends ServerChannel> serverChannelType() {
+            return EpollServerSocketChannel.class;
+        }
+
+        static EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+    }
+}
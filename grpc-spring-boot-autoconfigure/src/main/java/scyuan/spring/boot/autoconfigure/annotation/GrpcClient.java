@@ -0,0 +1,19 @@
+package scyuan.spring.boot.autoconfigure.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Injects into the field the shared channel configured under {@code grpc.client.channels.<name>},
+ * when the field is an {@link io.grpc.Channel} or {@link io.grpc.ManagedChannel}, or else the shared
+ * stub of the field type on it, such as a {@code GreeterGrpc.GreeterBlockingStub}.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GrpcClient {
+
+    /**
+     * Name of the channel.
+     */
+    String value();
+}
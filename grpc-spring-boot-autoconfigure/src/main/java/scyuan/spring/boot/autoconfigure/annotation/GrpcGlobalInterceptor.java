@@ -0,0 +1,14 @@
+package scyuan.spring.boot.autoconfigure.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a {@link io.grpc.ServerInterceptor} bean that intercepts the calls of every {@link GrpcService}.
+ * Interceptors are ordered by {@link org.springframework.core.annotation.Order} or
+ * {@link org.springframework.core.Ordered}, the first one sees the call first.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GrpcGlobalInterceptor {
+}
@@ -1,5 +1,6 @@
 package scyuan.spring.boot.autoconfigure.annotation;
 
+import io.grpc.ServerInterceptor;
 import org.springframework.stereotype.Service;
 
 import java.lang.annotation.*;
@@ -14,4 +15,23 @@ import java.lang.annotation.*;
 @Documented
 @Service
 public @interface GrpcService {
+
+    /**
+     * Name of the executor the calls of this service are dispatched on, either a thread pool
+     * configured under {@code grpc.executors} or an {@link java.util.concurrent.Executor} bean.
+     * By default calls run on the server executor.
+     */
+    String executor() default "";
+
+    /**
+     * Types of the {@link io.grpc.ServerInterceptor} beans that intercept the calls of this service,
+     * ordered together with the {@link GrpcGlobalInterceptor} ones.
+     */
+    Class<? extends ServerInterceptor>[] interceptors() default {};
+
+    /**
+     * Names of the servers this service is served on, among the default server and the ones
+     * configured under {@code grpc.servers}. By default it is served on the default server only.
+     */
+    String[] servers() default {};
 }
@@ -0,0 +1,285 @@
+package scyuan.spring.boot.autoconfigure.cache;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Attributes;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Serves a unary method through its {@link ResponseCache}. The method is bound with marshallers
+ * of the raw bytes, so the request is read as it arrived and is the key of the cache as it is:
+ * <ul>
+ *     <li>on a hit, the cached response bytes are sent as they are, nothing is parsed or
+ *     serialized;</li>
+ *     <li>on a miss, the request is parsed and the method called as usual, its response serialized
+ *     once for both the cache and the transport, and cached when the call succeeds.</li>
+ * </ul>
+ * Concurrent misses of the same request all call the method. The interceptors wrapping the
+ * handler see the messages as the raw bytes, and the descriptor of the raw byte marshallers.
+ */
+final class CachingCallHandler<ReqT, RespT> implements ServerCallHandler<byte[], byte[]> {
+
+    private final MethodDescriptor<ReqT, RespT> descriptor;
+
+    private final ServerCallHandler<ReqT, RespT> handler;
+
+    private final ResponseCache cache;
+
+    private final String compression;
+
+    private CachingCallHandler(ServerMethodDefinition<ReqT, RespT> method, ResponseCache cache, String compression) {
+        this.descriptor = method.getMethodDescriptor();
+        this.handler = method.getServerCallHandler();
+        this.cache = cache;
+        this.compression = compression;
+    }
+
+    /**
+     * @param compression message encoding of the cached responses, null to leave them uncompressed
+     */
+    static <ReqT, RespT> ServerMethodDefinition<byte[], byte[]> bind(ServerMethodDefinition<ReqT, RespT> method,
+                                                                     ResponseCache cache, String compression) {
+        final MethodDescriptor<ReqT, RespT> descriptor = method.getMethodDescriptor();
+        return ServerMethodDefinition.create(
+                MethodDescriptor.create(descriptor.getType(), descriptor.getFullMethodName(),
+                        BytesMarshaller.INSTANCE, BytesMarshaller.INSTANCE).withIdempotent(descriptor.isIdempotent()),
+                new CachingCallHandler<>(method, cache, compression));
+    }
+
+    @Override
+    public ServerCall.Listener<byte[]> startCall(ServerCall<byte[], byte[]> call, Metadata headers) {
+        // like the unary calls of the stubs, the second message tells a client sending more than one
+        call.request(2);
+        return new CachingListener(call, headers);
+    }
+
+    private class CachingListener extends ServerCall.Listener<byte[]> {
+
+        private final ServerCall<byte[], byte[]> call;
+
+        private final Metadata headers;
+
+        private ByteString request;
+
+        /** Whether the call was closed for sending more than one request. */
+        private boolean tooManyRequests;
+
+        /** Listener of the method, once the request missed the cache. */
+        private ServerCall.Listener<ReqT> delegate;
+
+        CachingListener(ServerCall<byte[], byte[]> call, Metadata headers) {
+            this.call = call;
+            this.headers = headers;
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            if (request != null) {
+                // as the unary calls of the stubs do, the method has not been called yet
+                if (!tooManyRequests) {
+                    tooManyRequests = true;
+                    call.close(Status.INTERNAL.withDescription("Too many requests"), new Metadata());
+                }
+                return;
+            }
+            request = UnsafeByteOperations.unsafeWrap(ByteBuffer.wrap(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (tooManyRequests) {
+                return;
+            }
+            if (request == null) {
+                call.close(Status.INTERNAL.withDescription("Half-closed without a request"), new Metadata());
+                return;
+            }
+            final byte[] response = cache.get(request);
+            if (response != null) {
+                if (compression != null) {
+                    call.setCompression(compression);
+                }
+                call.sendHeaders(new Metadata());
+                call.sendMessage(response);
+                call.close(Status.OK, new Metadata());
+                return;
+            }
+
+            final ReqT message;
+            try {
+                message = descriptor.parseRequest(request.newInput());
+            } catch (RuntimeException e) {
+                call.close(Status.fromThrowable(e), new Metadata());
+                return;
+            }
+            delegate = handler.startCall(new CachingServerCall(call, request), headers);
+            delegate.onMessage(message);
+            delegate.onHalfClose();
+        }
+
+        @Override
+        public void onCancel() {
+            if (delegate != null) {
+                delegate.onCancel();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (delegate != null) {
+                delegate.onComplete();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if (delegate != null) {
+                delegate.onReady();
+            }
+        }
+    }
+
+    /**
+     * The call the method sees on a miss: it serializes the response and caches it on success.
+     */
+    private class CachingServerCall extends ServerCall<ReqT, RespT> {
+
+        private final ServerCall<byte[], byte[]> call;
+
+        private final ByteString request;
+
+        private volatile byte[] response;
+
+        CachingServerCall(ServerCall<byte[], byte[]> call, ByteString request) {
+            this.call = call;
+            this.request = request;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            // the request has been read already
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+            call.sendHeaders(headers);
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            final byte[] bytes = serialize(message);
+            response = bytes;
+            call.sendMessage(bytes);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            final byte[] bytes = response;
+            if (status.isOk() && bytes != null) {
+                cache.put(request, bytes);
+            }
+            call.close(status, trailers);
+        }
+
+        @Override
+        public boolean isReady() {
+            return call.isReady();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return call.isCancelled();
+        }
+
+        @Override
+        public void setMessageCompression(boolean enabled) {
+            call.setMessageCompression(enabled);
+        }
+
+        @Override
+        public void setCompression(String compressor) {
+            call.setCompression(compressor);
+        }
+
+        @Override
+        public Attributes attributes() {
+            return call.attributes();
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return descriptor;
+        }
+
+        private byte[] serialize(RespT message) {
+            if (message instanceof MessageLite) {
+                return ((MessageLite) message).toByteArray();
+            }
+            try (InputStream stream = descriptor.streamResponse(message)) {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to serialize the response").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    /**
+     * Marshaller of the raw message bytes.
+     */
+    private static final class BytesMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+        static final BytesMarshaller INSTANCE = new BytesMarshaller();
+
+        @Override
+        public InputStream stream(byte[] value) {
+            return new BytesInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                if (stream instanceof KnownLength) {
+                    final byte[] bytes = new byte[stream.available()];
+                    ByteStreams.readFully(stream, bytes);
+                    return bytes;
+                }
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read the message").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    /**
+     * Lets the transport frame the bytes with their known length and copy them at once.
+     */
+    private static final class BytesInputStream extends ByteArrayInputStream implements KnownLength, Drainable {
+
+        BytesInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            final int length = count - pos;
+            target.write(buf, pos, length);
+            pos = count;
+            return length;
+        }
+    }
+}
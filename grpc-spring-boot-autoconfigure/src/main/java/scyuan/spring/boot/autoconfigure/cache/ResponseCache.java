@@ -0,0 +1,108 @@
+package scyuan.spring.boot.autoconfigure.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.google.protobuf.ByteString;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialized responses of one method of a server, by serialized request. Caffeine bounds the bytes
+ * of the requests and responses it holds and evicts with W-TinyLFU, so a burst of one-off requests
+ * does not flush the frequently requested ones.
+ * <p>
+ * Requests are compared byte by byte: equal messages serialized differently, with unknown fields
+ * for instance, are cached apart.
+ */
+public class ResponseCache {
+
+    private final String server;
+
+    private final String method;
+
+    private final long ttlSeconds;
+
+    private final long maxBytes;
+
+    private final Cache<ByteString, byte[]> cache;
+
+    ResponseCache(String server, String method, long ttlSeconds, long maxBytes) {
+        this.server = server;
+        this.method = method;
+        this.ttlSeconds = ttlSeconds;
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ByteString request, byte[] response) -> request.size() + response.length)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the response to the request, null when it is not cached.
+     */
+    byte[] get(ByteString request) {
+        return cache.getIfPresent(request);
+    }
+
+    void put(ByteString request, byte[] response) {
+        cache.put(request, response);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Ratio of the lookups that were hits, 1 before the first lookup.
+     */
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * Number of entries evicted to stay within the max bytes or because they expired.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Bytes of the requests and responses held.
+     */
+    public long getBytes() {
+        final Optional<Policy.Eviction<ByteString, byte[]>> eviction = cache.policy().eviction();
+        return eviction.isPresent() ? eviction.get().weightedSize().orElse(0) : 0;
+    }
+}
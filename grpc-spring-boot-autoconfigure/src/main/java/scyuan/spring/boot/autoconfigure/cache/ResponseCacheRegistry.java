@@ -0,0 +1,82 @@
+package scyuan.spring.boot.autoconfigure.cache;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import scyuan.spring.boot.autoconfigure.policy.CallPolicy;
+import scyuan.spring.boot.autoconfigure.policy.MethodPolicies;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The {@link ResponseCache} of every method whose policy caches its responses, by server. A cache
+ * outlives the restarts of its server, so its entries and metrics are kept.
+ */
+public class ResponseCacheRegistry {
+
+    private final ConcurrentMap<String, ResponseCache> caches = new ConcurrentHashMap<>();
+
+    private final List<Consumer<ResponseCache>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the service with the unary methods whose policy caches their responses served through
+     * their cache, or the service itself when none of its methods is cached.
+     */
+    public ServerServiceDefinition apply(String server, ServerServiceDefinition service, MethodPolicies policies) {
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.getServiceDescriptor().getName());
+        boolean applied = false;
+        for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+            final MethodDescriptor<?, ?> descriptor = method.getMethodDescriptor();
+            final CallPolicy policy = policies.resolve(descriptor.getFullMethodName());
+            if (policy.isCached() && descriptor.getType() == MethodDescriptor.MethodType.UNARY) {
+                builder.addMethod(CachingCallHandler.bind(method,
+                        getCache(server, descriptor.getFullMethodName(), policy), policy.getCompression()));
+                applied = true;
+            } else {
+                builder.addMethod(method);
+            }
+        }
+        return applied ? builder.build() : service;
+    }
+
+    /**
+     * Returns the cache of the method on the server, created from its policy the first time.
+     */
+    public ResponseCache getCache(String server, String fullMethodName, CallPolicy policy) {
+        final String key = server + ' ' + fullMethodName;
+        final ResponseCache cache = caches.get(key);
+        if (cache != null) {
+            return cache;
+        }
+        final ResponseCache created = new ResponseCache(server, fullMethodName,
+                policy.getCacheTtlSeconds(), policy.getCacheMaxBytes());
+        final ResponseCache existing = caches.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        for (Consumer<ResponseCache> listener : listeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    public Collection<ResponseCache> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+
+    /**
+     * Calls the listener with the caches created so far and with every one created later.
+     */
+    public void addListener(Consumer<ResponseCache> listener) {
+        listeners.add(listener);
+        for (ResponseCache cache : caches.values()) {
+            listener.accept(cache);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.Attributes;
+import io.grpc.NameResolver;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.Status;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves the {@code addresses:///<channel>} target of a channel to a fixed list of addresses, or
+ * to the addresses listed in a file, one host:port per line. The file is watched: every change of
+ * its addresses is passed on to the load balancer, and a file that can't be read keeps the last
+ * addresses.
+ */
+public class AddressListNameResolverFactory extends NameResolver.Factory {
+
+    private static final Log LOG = LogFactory.getLog(AddressListNameResolverFactory.class);
+
+    public static final String SCHEME = "addresses";
+
+    private final String channelName;
+
+    private final List<InetSocketAddress> addresses;
+
+    private final Path addressesFile;
+
+    /**
+     * Resolves to the given addresses, host:port, which are parsed right away.
+     */
+    public static AddressListNameResolverFactory forAddresses(String channelName, List<String> addresses) {
+        final List<InetSocketAddress> parsed = new ArrayList<>(addresses.size());
+        for (String address : addresses) {
+            parsed.add(parseAddress(address));
+        }
+        return new AddressListNameResolverFactory(channelName, parsed, null);
+    }
+
+    /**
+     * Resolves to the addresses listed in the given file, which may not exist yet.
+     */
+    public static AddressListNameResolverFactory forFile(String channelName, Path addressesFile) {
+        return new AddressListNameResolverFactory(channelName, null, addressesFile);
+    }
+
+    private AddressListNameResolverFactory(String channelName, List<InetSocketAddress> addresses, Path addressesFile) {
+        this.channelName = channelName;
+        this.addresses = addresses;
+        this.addressesFile = addressesFile;
+    }
+
+    /**
+     * Target of the channels that resolve through this factory.
+     */
+    public String getTarget() {
+        return SCHEME + ":///" + channelName;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, Attributes params) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        return addressesFile != null ? new FileNameResolver() : new StaticNameResolver();
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    static InetSocketAddress parseAddress(String address) {
+        final URI uri;
+        try {
+            uri = URI.create("//" + address.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid address '" + address + "', expected host:port", e);
+        }
+        if (uri.getHost() == null || uri.getPort() < 0) {
+            throw new IllegalArgumentException("Invalid address '" + address + "', expected host:port");
+        }
+        final String host = uri.getHost().startsWith("[") ? uri.getHost().substring(1, uri.getHost().length() - 1) : uri.getHost();
+        return new InetSocketAddress(host, uri.getPort());
+    }
+
+    /**
+     * Every address is a group of its own, so the balancer spreads the calls over all of them.
+     */
+    private static List<List<ResolvedServerInfo>> toServers(List<InetSocketAddress> addresses) {
+        final List<List<ResolvedServerInfo>> servers = new ArrayList<>(addresses.size());
+        for (InetSocketAddress address : addresses) {
+            servers.add(Collections.singletonList(new ResolvedServerInfo(address, Attributes.EMPTY)));
+        }
+        return servers;
+    }
+
+    private class StaticNameResolver extends NameResolver {
+
+        @Override
+        public String getServiceAuthority() {
+            return channelName;
+        }
+
+        @Override
+        public void start(Listener listener) {
+            listener.onUpdate(toServers(addresses), Attributes.EMPTY);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private class FileNameResolver extends NameResolver {
+
+        private Listener listener;
+
+        private WatchService watchService;
+
+        private List<String> lines;
+
+        @Override
+        public String getServiceAuthority() {
+            return channelName;
+        }
+
+        @Override
+        public synchronized void start(Listener listener) {
+            this.listener = listener;
+            load();
+            final Path directory = addressesFile.toAbsolutePath().getParent();
+            try {
+                watchService = directory.getFileSystem().newWatchService();
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException e) {
+                LOG.warn("Can't watch '" + addressesFile + "' of gRPC channel '" + channelName
+                        + "', its changes are not followed.", e);
+                return;
+            }
+            final Thread watcher = new Thread(this::watch, "grpc-" + channelName + "-addresses");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+
+        @Override
+        public synchronized void refresh() {
+            load();
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            listener = null;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close the watch service of '" + addressesFile + "'", e);
+                }
+            }
+        }
+
+        private void watch() {
+            final Path fileName = addressesFile.getFileName();
+            try {
+                while (true) {
+                    final WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                    }
+                    key.reset();
+                    if (changed) {
+                        refresh();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // shut down
+            }
+        }
+
+        private void load() {
+            if (listener == null) {
+                return;
+            }
+            final List<String> newLines;
+            try {
+                newLines = Files.readAllLines(addressesFile, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                if (lines == null) {
+                    listener.onError(Status.UNAVAILABLE.withDescription("Addresses file '" + addressesFile + "' not found"));
+                } else {
+                    LOG.warn("Addresses file '" + addressesFile + "' of gRPC channel '" + channelName
+                            + "' was removed, keeping its last addresses.");
+                }
+                return;
+            } catch (IOException e) {
+                LOG.warn("Can't read addresses file '" + addressesFile + "' of gRPC channel '" + channelName
+                        + "', keeping its last addresses.", e);
+                if (lines == null) {
+                    listener.onError(Status.UNAVAILABLE.withDescription("Can't read addresses file '" + addressesFile + "'")
+                            .withCause(e));
+                }
+                return;
+            }
+            if (newLines.equals(lines)) {
+                return;
+            }
+            lines = newLines;
+
+            final List<InetSocketAddress> parsed = new ArrayList<>();
+            for (String line : newLines) {
+                final int comment = line.indexOf('#');
+                final String address = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (address.isEmpty()) {
+                    continue;
+                }
+                try {
+                    parsed.add(parseAddress(address));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Skipping the address '" + address + "' of '" + addressesFile + "': " + e.getMessage());
+                }
+            }
+            LOG.info("gRPC channel '" + channelName + "' addresses: " + parsed);
+            listener.onUpdate(toServers(parsed), Attributes.EMPTY);
+        }
+    }
+}
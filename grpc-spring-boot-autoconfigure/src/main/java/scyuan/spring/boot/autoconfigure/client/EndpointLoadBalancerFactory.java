@@ -0,0 +1,477 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import com.google.common.base.Supplier;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.Status;
+import io.grpc.TransportManager;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition.HealthCheck;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition.LoadBalancingPolicy;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition.OutlierDetection;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Balances the calls of a channel over all its resolved addresses, ROUND_ROBIN or LEAST_REQUEST,
+ * skipping the ejected and unhealthy ones while any other is left:
+ * <ul>
+ *     <li>an address is ejected when its transport shuts down or fails to connect, and when its
+ *     calls fail the configured number of times in a row, for the base ejection time multiplied by
+ *     its recent ejections;</li>
+ *     <li>with health checks enabled, an address is unhealthy until grpc.health.v1.Health/Check
+ *     reports it SERVING again.</li>
+ * </ul>
+ * The calls in flight and the call outcomes are tracked per address by the {@link #getCallTracker()
+ * call tracker}, which must intercept the calls of the channel: it hands a holder to the balancer
+ * through the call affinity and learns from it which address the call was sent to.
+ */
+public class EndpointLoadBalancerFactory extends LoadBalancer.Factory {
+
+    private static final Log LOG = LogFactory.getLog(EndpointLoadBalancerFactory.class);
+
+    private static final Attributes.Key<CallEndpoint> CALL_ENDPOINT = Attributes.Key.of("grpc-spring-boot.call-endpoint");
+
+    private static final Status SHUTDOWN_STATUS = Status.UNAVAILABLE.withDescription("Load balancer is shut down");
+
+    private final String channelName;
+
+    private final LoadBalancingPolicy policy;
+
+    private final OutlierDetection outlierDetection;
+
+    private final HealthCheck healthCheck;
+
+    private final ClientInterceptor callTracker = new CallTracker();
+
+    public EndpointLoadBalancerFactory(String channelName, LoadBalancingPolicy policy,
+                                       OutlierDetection outlierDetection, HealthCheck healthCheck) {
+        if (policy == LoadBalancingPolicy.PICK_FIRST) {
+            throw new IllegalArgumentException("PICK_FIRST is the gRPC default load balancer");
+        }
+        this.channelName = channelName;
+        this.policy = policy;
+        this.outlierDetection = outlierDetection;
+        this.healthCheck = healthCheck;
+    }
+
+    public ClientInterceptor getCallTracker() {
+        return callTracker;
+    }
+
+    @Override
+    public <T> LoadBalancer<T> newLoadBalancer(String serviceName, TransportManager<T> tm) {
+        return new EndpointLoadBalancer<>(tm);
+    }
+
+    private static boolean isFailure(Status.Code code) {
+        switch (code) {
+            case UNAVAILABLE:
+            case UNKNOWN:
+            case INTERNAL:
+            case DATA_LOSS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * What the balancer and the call tracker know of one address.
+     */
+    private abstract static class Endpoint {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        abstract void onCallClosed(Status status);
+    }
+
+    /**
+     * Carried by the affinity of a call, from the call tracker to the balancer and back.
+     */
+    private static final class CallEndpoint {
+
+        volatile Endpoint endpoint;
+
+        void picked(Endpoint endpoint) {
+            endpoint.inFlight.incrementAndGet();
+            this.endpoint = endpoint;
+        }
+
+        void closed(Status status) {
+            final Endpoint picked = endpoint;
+            if (picked != null) {
+                picked.inFlight.decrementAndGet();
+                picked.onCallClosed(status);
+            }
+        }
+    }
+
+    private static final class CallTracker implements ClientInterceptor {
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                                   CallOptions callOptions, Channel next) {
+            final CallEndpoint callEndpoint = new CallEndpoint();
+            final Attributes affinity = Attributes.newBuilder()
+                    .setAll(callOptions.getAffinity())
+                    .set(CALL_ENDPOINT, callEndpoint)
+                    .build();
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+                    next.newCall(method, callOptions.withAffinity(affinity))) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            callEndpoint.closed(status);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                }
+            };
+        }
+    }
+
+    private class EndpointLoadBalancer<T> extends LoadBalancer<T> {
+
+        private final TransportManager<T> tm;
+
+        private final Object lock = new Object();
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        /** Immutable, replaced on every resolution. */
+        private volatile List<AddressEndpoint> endpoints;
+
+        private TransportManager.InterimTransport<T> interimTransport;
+
+        private Status nameResolutionError;
+
+        private boolean closed;
+
+        private ScheduledExecutorService healthChecker;
+
+        EndpointLoadBalancer(TransportManager<T> tm) {
+            this.tm = tm;
+        }
+
+        @Override
+        public T pickTransport(Attributes affinity) {
+            List<AddressEndpoint> current = endpoints;
+            if (current == null || closed) {
+                synchronized (lock) {
+                    if (closed) {
+                        return tm.createFailingTransport(SHUTDOWN_STATUS);
+                    }
+                    current = endpoints;
+                    if (current == null) {
+                        if (nameResolutionError != null) {
+                            return tm.createFailingTransport(nameResolutionError);
+                        }
+                        if (interimTransport == null) {
+                            interimTransport = tm.createInterimTransport();
+                        }
+                        return interimTransport.transport();
+                    }
+                }
+            }
+            if (current.isEmpty()) {
+                return tm.createFailingTransport(Status.UNAVAILABLE.withDescription(
+                        "gRPC channel '" + channelName + "' has no address"));
+            }
+            final AddressEndpoint endpoint = pick(current);
+            final CallEndpoint callEndpoint = affinity.get(CALL_ENDPOINT);
+            if (callEndpoint != null) {
+                callEndpoint.picked(endpoint);
+            }
+            return tm.getTransport(endpoint.addressGroup);
+        }
+
+        /**
+         * Picks among the available addresses, or among all of them when none is available, as the
+         * calls would otherwise fail anyway.
+         */
+        private AddressEndpoint pick(List<AddressEndpoint> current) {
+            final int size = current.size();
+            final long now = System.nanoTime();
+            if (policy == LoadBalancingPolicy.ROUND_ROBIN) {
+                // cycle over the available addresses only, so the share of the others is spread
+                // evenly instead of going to the address that follows them
+                int available = 0;
+                for (int i = 0; i < size; i++) {
+                    if (current.get(i).isAvailable(now)) {
+                        available++;
+                    }
+                }
+                final int sequence = next.getAndIncrement() & Integer.MAX_VALUE;
+                if (available == 0) {
+                    return current.get(sequence % size);
+                }
+                int skip = sequence % available;
+                for (int i = 0; i < size; i++) {
+                    final AddressEndpoint endpoint = current.get(i);
+                    if (endpoint.isAvailable(now) && skip-- == 0) {
+                        return endpoint;
+                    }
+                }
+                return current.get(sequence % size);
+            }
+
+            final AddressEndpoint first = randomAvailable(current, now);
+            if (first == null) {
+                return current.get(ThreadLocalRandom.current().nextInt(size));
+            }
+            final AddressEndpoint second = randomAvailable(current, now);
+            return second.inFlight.get() < first.inFlight.get() ? second : first;
+        }
+
+        private AddressEndpoint randomAvailable(List<AddressEndpoint> current, long now) {
+            final int size = current.size();
+            final int start = ThreadLocalRandom.current().nextInt(size);
+            for (int i = 0; i < size; i++) {
+                final AddressEndpoint endpoint = current.get((start + i) % size);
+                if (endpoint.isAvailable(now)) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void handleResolvedAddresses(List<? extends List<ResolvedServerInfo>> updatedServers, Attributes config) {
+            final TransportManager.InterimTransport<T> savedInterimTransport;
+            final List<AddressEndpoint> updated;
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                final Map<EquivalentAddressGroup, AddressEndpoint> previous = new HashMap<>();
+                if (endpoints != null) {
+                    for (AddressEndpoint endpoint : endpoints) {
+                        previous.put(endpoint.addressGroup, endpoint);
+                    }
+                }
+                final List<AddressEndpoint> resolved = new ArrayList<>();
+                final List<EquivalentAddressGroup> addressGroups = new ArrayList<>();
+                for (List<ResolvedServerInfo> servers : updatedServers) {
+                    if (servers.isEmpty()) {
+                        continue;
+                    }
+                    final List<SocketAddress> addresses = new ArrayList<>(servers.size());
+                    for (ResolvedServerInfo server : servers) {
+                        addresses.add(server.getAddress());
+                    }
+                    final EquivalentAddressGroup addressGroup = new EquivalentAddressGroup(addresses);
+                    final AddressEndpoint kept = previous.get(addressGroup);
+                    resolved.add(kept != null ? kept : new AddressEndpoint(addressGroup));
+                    addressGroups.add(addressGroup);
+                }
+                updated = Collections.unmodifiableList(resolved);
+                endpoints = updated;
+                nameResolutionError = null;
+                savedInterimTransport = interimTransport;
+                interimTransport = null;
+                tm.updateRetainedTransports(addressGroups);
+                if (healthCheck.isEnabled() && healthChecker == null) {
+                    startHealthChecks();
+                }
+            }
+            if (savedInterimTransport != null) {
+                savedInterimTransport.closeWithRealTransports(new Supplier<T>() {
+                    @Override
+                    public T get() {
+                        return updated.isEmpty()
+                                ? tm.createFailingTransport(Status.UNAVAILABLE.withDescription(
+                                        "gRPC channel '" + channelName + "' has no address"))
+                                : tm.getTransport(pick(updated).addressGroup);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void handleNameResolutionError(Status error) {
+            final TransportManager.InterimTransport<T> savedInterimTransport;
+            final Status status = error.augmentDescription("Name resolution failed");
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                savedInterimTransport = interimTransport;
+                interimTransport = null;
+                nameResolutionError = status;
+            }
+            if (savedInterimTransport != null) {
+                savedInterimTransport.closeWithError(status);
+            }
+        }
+
+        @Override
+        public void handleTransportReady(EquivalentAddressGroup addressGroup) {
+            final AddressEndpoint endpoint = find(addressGroup);
+            if (endpoint != null) {
+                endpoint.connected = true;
+            }
+        }
+
+        @Override
+        public void handleTransportShutdown(EquivalentAddressGroup addressGroup, Status status) {
+            final AddressEndpoint endpoint = find(addressGroup);
+            if (endpoint != null) {
+                endpoint.connected = false;
+                if (outlierDetection.isEnabled() && !closed) {
+                    endpoint.eject("transport shut down: " + status);
+                }
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            final TransportManager.InterimTransport<T> savedInterimTransport;
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                savedInterimTransport = interimTransport;
+                interimTransport = null;
+                if (healthChecker != null) {
+                    healthChecker.shutdownNow();
+                }
+            }
+            if (savedInterimTransport != null) {
+                savedInterimTransport.closeWithError(SHUTDOWN_STATUS);
+            }
+        }
+
+        private AddressEndpoint find(EquivalentAddressGroup addressGroup) {
+            final List<AddressEndpoint> current = endpoints;
+            if (current != null) {
+                for (AddressEndpoint endpoint : current) {
+                    if (endpoint.addressGroup.equals(addressGroup)) {
+                        return endpoint;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void startHealthChecks() {
+            final HealthCheckClient client = new HealthCheckClient(healthCheck.getService(), healthCheck.getTimeoutMillis());
+            healthChecker = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("grpc-" + channelName + "-health-check", true));
+            healthChecker.scheduleWithFixedDelay(() -> {
+                final List<AddressEndpoint> current = endpoints;
+                for (final AddressEndpoint endpoint : current) {
+                    client.check(tm.makeChannel(tm.getTransport(endpoint.addressGroup)), serving -> {
+                        if (endpoint.healthy != serving) {
+                            LOG.info("gRPC channel '" + channelName + "' address " + endpoint.addressGroup
+                                    + (serving ? " is healthy again" : " failed its health check"));
+                        }
+                        endpoint.healthy = serving;
+                    });
+                }
+            }, 0, healthCheck.getIntervalSeconds(), TimeUnit.SECONDS);
+        }
+
+        private class AddressEndpoint extends Endpoint {
+
+            final EquivalentAddressGroup addressGroup;
+
+            final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+            volatile boolean healthy = true;
+
+            volatile boolean connected;
+
+            volatile boolean ejected;
+
+            volatile long ejectedUntilNanos;
+
+            /** Guarded by the endpoint. */
+            private int ejections;
+
+            AddressEndpoint(EquivalentAddressGroup addressGroup) {
+                this.addressGroup = addressGroup;
+            }
+
+            boolean isAvailable(long now) {
+                if (ejected && now - ejectedUntilNanos >= 0) {
+                    ejected = false;
+                }
+                return healthy && !ejected;
+            }
+
+            @Override
+            void onCallClosed(Status status) {
+                if (!outlierDetection.isEnabled()) {
+                    return;
+                }
+                if (!isFailure(status.getCode())) {
+                    consecutiveFailures.set(0);
+                } else if (consecutiveFailures.incrementAndGet() >= outlierDetection.getConsecutiveFailures()) {
+                    consecutiveFailures.set(0);
+                    eject(outlierDetection.getConsecutiveFailures() + " consecutive failures, last " + status);
+                }
+            }
+
+            void eject(String reason) {
+                final List<AddressEndpoint> current = endpoints;
+                final long now = System.nanoTime();
+                synchronized (this) {
+                    if (isEjected(now)) {
+                        return;
+                    }
+                    int ejectedCount = 0;
+                    for (AddressEndpoint endpoint : current) {
+                        if (endpoint.isEjected(now)) {
+                            ejectedCount++;
+                        }
+                    }
+                    if (ejectedCount + 1 > Math.max(1, current.size() * outlierDetection.getMaxEjectionPercent() / 100)) {
+                        return;
+                    }
+                    final long maxEjectionNanos = TimeUnit.SECONDS.toNanos(outlierDetection.getMaxEjectionTimeSeconds());
+                    // forget the ejections of an address that did not fail for the max ejection time
+                    if (ejections > 0 && now - ejectedUntilNanos > maxEjectionNanos) {
+                        ejections = 0;
+                    }
+                    ejections++;
+                    final long ejectionNanos = Math.min(maxEjectionNanos,
+                            TimeUnit.SECONDS.toNanos(outlierDetection.getBaseEjectionTimeSeconds()) * ejections);
+                    ejectedUntilNanos = now + ejectionNanos;
+                    ejected = true;
+                    LOG.warn("gRPC channel '" + channelName + "' ejects " + addressGroup + " for "
+                            + TimeUnit.NANOSECONDS.toMillis(ejectionNanos) + " ms, " + reason);
+                }
+            }
+
+            boolean isEjected(long now) {
+                return ejected && now - ejectedUntilNanos < 0;
+            }
+        }
+    }
+}
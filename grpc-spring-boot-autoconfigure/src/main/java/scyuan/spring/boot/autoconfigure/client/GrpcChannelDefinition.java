@@ -0,0 +1,292 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Target and transport settings of one client channel, bound from {@code grpc.client.channels.<name>.*}.
+ */
+public class GrpcChannelDefinition {
+
+    /**
+     * Target of the channel, host:port or a name resolver URI such as dns:///host:port. Not needed
+     * when addresses or addresses-file is set.
+     */
+    private String target;
+
+    /**
+     * Backend addresses, host:port, the channel balances the calls over instead of resolving a target.
+     */
+    private List<String> addresses = new ArrayList<>();
+
+    /**
+     * File listing the backend addresses, one host:port per line, '#' starts a comment. It is
+     * watched and the channel follows its changes.
+     */
+    private String addressesFile;
+
+    /**
+     * How the calls are spread over the resolved addresses.
+     */
+    private LoadBalancingPolicy loadBalancing = LoadBalancingPolicy.PICK_FIRST;
+
+    private OutlierDetection outlierDetection = new OutlierDetection();
+
+    private HealthCheck healthCheck = new HealthCheck();
+
+    /**
+     * Connect without TLS.
+     */
+    private boolean plaintext = true;
+
+    /**
+     * Maximum size in bytes of a received message, 0 for the gRPC default.
+     */
+    private int maxInboundMessageSize = 0;
+
+    /**
+     * HTTP/2 flow-control window in bytes of every connection, 0 for the gRPC default.
+     */
+    private int flowControlWindow = 0;
+
+    /**
+     * Seconds without calls after which the connections are closed, until the next call reopens
+     * them; 0 to keep them open.
+     */
+    private long idleTimeoutSeconds = 0;
+
+    /**
+     * Number of channels, each with its own HTTP/2 connections, the calls are spread over in turn.
+     */
+    private int poolSize = 1;
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public void setAddresses(List<String> addresses) {
+        this.addresses = addresses;
+    }
+
+    public String getAddressesFile() {
+        return addressesFile;
+    }
+
+    public void setAddressesFile(String addressesFile) {
+        this.addressesFile = addressesFile;
+    }
+
+    public LoadBalancingPolicy getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public void setLoadBalancing(LoadBalancingPolicy loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public OutlierDetection getOutlierDetection() {
+        return outlierDetection;
+    }
+
+    public void setOutlierDetection(OutlierDetection outlierDetection) {
+        this.outlierDetection = outlierDetection;
+    }
+
+    public HealthCheck getHealthCheck() {
+        return healthCheck;
+    }
+
+    public void setHealthCheck(HealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    public boolean isPlaintext() {
+        return plaintext;
+    }
+
+    public void setPlaintext(boolean plaintext) {
+        this.plaintext = plaintext;
+    }
+
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    public long getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public enum LoadBalancingPolicy {
+
+        /**
+         * The gRPC default: all calls go to the first address that connects.
+         */
+        PICK_FIRST,
+
+        /**
+         * Every address in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * The address with the fewer calls in flight of two picked at random.
+         */
+        LEAST_REQUEST
+    }
+
+    /**
+     * Ejection of the addresses whose calls keep failing, by the ROUND_ROBIN and LEAST_REQUEST policies.
+     */
+    public static class OutlierDetection {
+
+        private boolean enabled = true;
+
+        /**
+         * Consecutive UNAVAILABLE, UNKNOWN, INTERNAL or DATA_LOSS calls that eject an address.
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * Seconds of the first ejection of an address, multiplied by the number of its recent ejections.
+         */
+        private long baseEjectionTimeSeconds = 30;
+
+        /**
+         * Upper bound of the ejection time in seconds.
+         */
+        private long maxEjectionTimeSeconds = 300;
+
+        /**
+         * Maximum percentage of the addresses ejected at once, at least one can always be.
+         */
+        private int maxEjectionPercent = 50;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public void setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+        }
+
+        public long getBaseEjectionTimeSeconds() {
+            return baseEjectionTimeSeconds;
+        }
+
+        public void setBaseEjectionTimeSeconds(long baseEjectionTimeSeconds) {
+            this.baseEjectionTimeSeconds = baseEjectionTimeSeconds;
+        }
+
+        public long getMaxEjectionTimeSeconds() {
+            return maxEjectionTimeSeconds;
+        }
+
+        public void setMaxEjectionTimeSeconds(long maxEjectionTimeSeconds) {
+            this.maxEjectionTimeSeconds = maxEjectionTimeSeconds;
+        }
+
+        public int getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public void setMaxEjectionPercent(int maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+    }
+
+    /**
+     * Active grpc.health.v1.Health/Check probing of every address, by the ROUND_ROBIN and
+     * LEAST_REQUEST policies, which skip the addresses not SERVING.
+     */
+    public static class HealthCheck {
+
+        private boolean enabled = false;
+
+        /**
+         * Seconds between the checks of an address.
+         */
+        private long intervalSeconds = 5;
+
+        /**
+         * Deadline of a check in milliseconds.
+         */
+        private long timeoutMillis = 1000;
+
+        /**
+         * Service name sent in the checks, empty for the whole server.
+         */
+        private String service = "";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalSeconds() {
+            return intervalSeconds;
+        }
+
+        public void setIntervalSeconds(long intervalSeconds) {
+            this.intervalSeconds = intervalSeconds;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public void setService(String service) {
+            this.service = service;
+        }
+    }
+}
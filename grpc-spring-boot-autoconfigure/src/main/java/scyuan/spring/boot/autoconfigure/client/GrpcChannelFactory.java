@@ -0,0 +1,184 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NegotiationType;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.AbstractStub;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the channels configured under {@code grpc.client.channels} on first use and shares them,
+ * and the stubs on them, for the application lifetime. Channels and stubs are thread-safe, and a
+ * channel is costly to create: it resolves the target and opens a connection, so creating one per
+ * call pays a TCP and HTTP/2 handshake every time.
+ */
+public class GrpcChannelFactory implements DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(GrpcChannelFactory.class);
+
+    private static final long SHUTDOWN_SECONDS = 5;
+
+    private final GrpcClientProperties properties;
+
+    private final ConcurrentMap<String, ManagedChannel> channels = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<StubKey, Object> stubs = new ConcurrentHashMap<>();
+
+    public GrpcChannelFactory(GrpcClientProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the shared channel of the given name, a {@link PooledChannel} when its pool size is
+     * above 1.
+     */
+    public ManagedChannel getChannel(String name) {
+        ManagedChannel channel = channels.get(name);
+        if (channel == null) {
+            channel = channels.computeIfAbsent(name, this::createChannel);
+        }
+        return channel;
+    }
+
+    /**
+     * Returns the shared stub of the given type on the channel of the given name, created by the
+     * static factory method of the generated service class, such as
+     * {@code GreeterGrpc.newBlockingStub(Channel)}.
+     */
+    public <T extends AbstractStub<T>> T getStub(String name, Class<T> stubType) {
+        final StubKey key = new StubKey(name, stubType);
+        Object stub = stubs.get(key);
+        if (stub == null) {
+            stub = stubs.computeIfAbsent(key, k -> ReflectionUtils.invokeMethod(stubFactory(stubType), null, getChannel(name)));
+        }
+        return stubType.cast(stub);
+    }
+
+    private ManagedChannel createChannel(String name) {
+        final GrpcChannelDefinition definition = properties.getChannels().get(name);
+        if (definition == null) {
+            throw new IllegalArgumentException("No gRPC channel named '" + name + "' is configured under grpc.client.channels");
+        }
+        final boolean hasAddresses = !definition.getAddresses().isEmpty()
+                || (definition.getAddressesFile() != null && !definition.getAddressesFile().isEmpty());
+        if (!hasAddresses && (definition.getTarget() == null || definition.getTarget().isEmpty())) {
+            throw new IllegalArgumentException("gRPC channel '" + name + "' has no target nor addresses");
+        }
+        if (definition.getPoolSize() < 1) {
+            throw new IllegalArgumentException("gRPC channel '" + name + "' needs a pool size of at least 1");
+        }
+
+        final ManagedChannel[] pool = new ManagedChannel[definition.getPoolSize()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = newChannel(name, definition);
+        }
+        LOG.info("gRPC channel '" + name + "' created, "
+                + (definition.getAddressesFile() != null && !definition.getAddressesFile().isEmpty()
+                        ? "addresses file " + definition.getAddressesFile()
+                        : !definition.getAddresses().isEmpty() ? "addresses " + definition.getAddresses()
+                        : "target " + definition.getTarget())
+                + ", load balancing " + definition.getLoadBalancing()
+                + (pool.length > 1 ? ", pool of " + pool.length + " channels" : ""));
+        return pool.length == 1 ? pool[0] : new PooledChannel(pool);
+    }
+
+    private static ManagedChannel newChannel(String name, GrpcChannelDefinition definition) {
+        final NettyChannelBuilder channelBuilder;
+        if (definition.getAddressesFile() != null && !definition.getAddressesFile().isEmpty()) {
+            final AddressListNameResolverFactory nameResolverFactory =
+                    AddressListNameResolverFactory.forFile(name, Paths.get(definition.getAddressesFile()));
+            channelBuilder = NettyChannelBuilder.forTarget(nameResolverFactory.getTarget())
+                    .nameResolverFactory(nameResolverFactory);
+        } else if (!definition.getAddresses().isEmpty()) {
+            final AddressListNameResolverFactory nameResolverFactory =
+                    AddressListNameResolverFactory.forAddresses(name, definition.getAddresses());
+            channelBuilder = NettyChannelBuilder.forTarget(nameResolverFactory.getTarget())
+                    .nameResolverFactory(nameResolverFactory);
+        } else {
+            channelBuilder = NettyChannelBuilder.forTarget(definition.getTarget());
+        }
+        channelBuilder.negotiationType(definition.isPlaintext() ? NegotiationType.PLAINTEXT : NegotiationType.TLS);
+        if (definition.getLoadBalancing() != GrpcChannelDefinition.LoadBalancingPolicy.PICK_FIRST) {
+            final EndpointLoadBalancerFactory loadBalancerFactory = new EndpointLoadBalancerFactory(name,
+                    definition.getLoadBalancing(), definition.getOutlierDetection(), definition.getHealthCheck());
+            channelBuilder.loadBalancerFactory(loadBalancerFactory).intercept(loadBalancerFactory.getCallTracker());
+        }
+        if (definition.getMaxInboundMessageSize() > 0) {
+            channelBuilder.maxMessageSize(definition.getMaxInboundMessageSize());
+        }
+        if (definition.getFlowControlWindow() > 0) {
+            channelBuilder.flowControlWindow(definition.getFlowControlWindow());
+        }
+        if (definition.getIdleTimeoutSeconds() > 0) {
+            channelBuilder.idleTimeout(definition.getIdleTimeoutSeconds(), TimeUnit.SECONDS);
+        }
+        return channelBuilder.build();
+    }
+
+    private static Method stubFactory(Class<?> stubType) {
+        final Class<?> serviceClass = stubType.getEnclosingClass();
+        if (serviceClass != null) {
+            for (Method method : serviceClass.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) && method.getReturnType() == stubType
+                        && method.getParameterCount() == 1 && method.getParameterTypes()[0] == Channel.class) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalArgumentException("'" + stubType.getName()
+                + "' is not a stub of a generated gRPC service class");
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ManagedChannel channel : channels.values()) {
+            channel.shutdown();
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_SECONDS);
+        for (ManagedChannel channel : channels.values()) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                channel.shutdownNow();
+            }
+        }
+    }
+
+    private static final class StubKey {
+
+        private final String channel;
+
+        private final Class<?> stubType;
+
+        StubKey(String channel, Class<?> stubType) {
+            this.channel = channel;
+            this.stubType = stubType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StubKey)) {
+                return false;
+            }
+            final StubKey other = (StubKey) o;
+            return channel.equals(other.channel) && stubType == other.stubType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * channel.hashCode() + stubType.hashCode();
+        }
+    }
+}
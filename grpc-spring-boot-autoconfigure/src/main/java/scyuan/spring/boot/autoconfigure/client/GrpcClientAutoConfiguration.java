@@ -0,0 +1,28 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.netty.NettyChannelBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Client channels and the {@link scyuan.spring.boot.autoconfigure.annotation.GrpcClient} injection.
+ */
+@Configuration
+@ConditionalOnClass(NettyChannelBuilder.class)
+@EnableConfigurationProperties(GrpcClientProperties.class)
+public class GrpcClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(GrpcChannelFactory.class)
+    public GrpcChannelFactory grpcChannelFactory(GrpcClientProperties grpcClientProperties) {
+        return new GrpcChannelFactory(grpcClientProperties);
+    }
+
+    @Bean
+    public static GrpcClientBeanPostProcessor grpcClientBeanPostProcessor() {
+        return new GrpcClientBeanPostProcessor();
+    }
+}
@@ -0,0 +1,72 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.Channel;
+import io.grpc.stub.AbstractStub;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ReflectionUtils;
+import scyuan.spring.boot.autoconfigure.annotation.GrpcClient;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Injects the {@link GrpcClient} fields of the beans. The channel factory is looked up on the first
+ * injection, so that this post processor, created before the other beans, does not create it early.
+ */
+public class GrpcClientBeanPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    private GrpcChannelFactory channelFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, String beanName) throws BeansException {
+        ReflectionUtils.doWithFields(bean.getClass(), field -> inject(bean, field),
+                field -> field.isAnnotationPresent(GrpcClient.class));
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void inject(Object bean, Field field) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            throw new IllegalStateException("@GrpcClient is not supported on static field '" + field + "'");
+        }
+        final String name = field.getAnnotation(GrpcClient.class).value();
+        final Class<?> type = field.getType();
+        final Object client;
+        if (Channel.class.isAssignableFrom(type)) {
+            client = channelFactory().getChannel(name);
+            if (!type.isInstance(client)) {
+                throw new IllegalStateException("@GrpcClient field '" + field + "' can't hold a "
+                        + client.getClass().getName() + ", declare it as a Channel or ManagedChannel");
+            }
+        } else if (AbstractStub.class.isAssignableFrom(type)) {
+            client = channelFactory().getStub(name, (Class) type);
+        } else {
+            throw new IllegalStateException("@GrpcClient field '" + field + "' is neither a "
+                    + Channel.class.getName() + " nor a stub");
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, bean, client);
+    }
+
+    private GrpcChannelFactory channelFactory() {
+        if (channelFactory == null) {
+            channelFactory = beanFactory.getBean(GrpcChannelFactory.class);
+        }
+        return channelFactory;
+    }
+}
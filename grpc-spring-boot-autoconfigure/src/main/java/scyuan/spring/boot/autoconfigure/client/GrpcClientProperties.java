@@ -0,0 +1,23 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client channels, by name, that {@code @GrpcClient("name")} injects.
+ */
+@ConfigurationProperties("grpc.client")
+public class GrpcClientProperties {
+
+    private Map<String, GrpcChannelDefinition> channels = new LinkedHashMap<>();
+
+    public Map<String, GrpcChannelDefinition> getChannels() {
+        return channels;
+    }
+
+    public void setChannels(Map<String, GrpcChannelDefinition> channels) {
+        this.channels = channels;
+    }
+}
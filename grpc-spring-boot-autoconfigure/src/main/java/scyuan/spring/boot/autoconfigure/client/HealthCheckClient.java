@@ -0,0 +1,52 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import scyuan.spring.boot.autoconfigure.health.HealthCheckProtocol;
+import scyuan.spring.boot.autoconfigure.health.ServingStatus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Calls grpc.health.v1.Health/Check.
+ */
+class HealthCheckClient {
+
+    private final String service;
+
+    private final long timeoutMillis;
+
+    HealthCheckClient(String service, long timeoutMillis) {
+        this.service = service;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Checks the server behind the channel and passes whether it is serving to the callback. A
+     * server without the health service counts as serving.
+     */
+    void check(Channel channel, final Consumer<Boolean> callback) {
+        ClientCalls.asyncUnaryCall(
+                channel.newCall(HealthCheckProtocol.CHECK,
+                        CallOptions.DEFAULT.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)),
+                service, new StreamObserver<ServingStatus>() {
+                    @Override
+                    public void onNext(ServingStatus status) {
+                        callback.accept(status == ServingStatus.SERVING);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        callback.accept(Status.fromThrowable(t).getCode() == Status.Code.UNIMPLEMENTED);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+    }
+}
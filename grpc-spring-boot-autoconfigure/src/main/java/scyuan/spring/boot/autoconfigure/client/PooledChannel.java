@@ -0,0 +1,91 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the calls over several channels in turn. Every channel opens its own HTTP/2 connections,
+ * so the calls to one target are not all multiplexed on a single connection, with its single event
+ * loop thread and its concurrent stream limit.
+ */
+public class PooledChannel extends ManagedChannel {
+
+    private final ManagedChannel[] channels;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public PooledChannel(ManagedChannel... channels) {
+        if (channels.length == 0) {
+            throw new IllegalArgumentException("A channel pool needs at least one channel");
+        }
+        this.channels = channels.clone();
+    }
+
+    public int size() {
+        return channels.length;
+    }
+
+    @Override
+    public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+            MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+        final int index = (next.getAndIncrement() & Integer.MAX_VALUE) % channels.length;
+        return channels[index].newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return channels[0].authority();
+    }
+
+    @Override
+    public PooledChannel shutdown() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public PooledChannel shutdownNow() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+package scyuan.spring.boot.autoconfigure.executor;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import scyuan.spring.boot.autoconfigure.GrpcServerProperties;
+import scyuan.spring.boot.autoconfigure.metrics.LatencyHistogram;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The dedicated service executors: the thread pools configured under {@code grpc.executors}, created
+ * up front, and the {@link Executor} beans services refer to by name.
+ */
+public class GrpcServiceExecutors implements DisposableBean {
+
+    private final BeanFactory beanFactory;
+
+    private final Map<String, ServicePool> pools = new LinkedHashMap<>();
+
+    public GrpcServiceExecutors(GrpcServerProperties properties, BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+        for (Map.Entry<String, GrpcServerProperties.ThreadPool> entry : properties.getExecutors().entrySet()) {
+            pools.put(entry.getKey(), new ServicePool(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the configured thread pool with the given name, or else the {@link Executor} bean with it.
+     */
+    public Executor getExecutor(String name) {
+        final ServicePool pool = pools.get(name);
+        if (pool != null) {
+            return pool.getExecutor();
+        }
+        try {
+            return beanFactory.getBean(name, Executor.class);
+        } catch (NoSuchBeanDefinitionException e) {
+            throw new IllegalArgumentException("No executor named '" + name
+                    + "' is configured under grpc.executors or defined as a bean", e);
+        }
+    }
+
+    /**
+     * Returns the configured thread pool with the given name, or null when there is none.
+     */
+    public ServicePool getPool(String name) {
+        return pools.get(name);
+    }
+
+    public Collection<ServicePool> getPools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+
+    @Override
+    public void destroy() {
+        for (ServicePool pool : pools.values()) {
+            pool.getExecutor().shutdown();
+        }
+    }
+
+    public static class ServicePool {
+
+        private final String name;
+
+        private final ThreadPoolExecutor executor;
+
+        private final LongAdder rejected = new LongAdder();
+
+        private final LatencyHistogram queueWait = new LatencyHistogram(2);
+
+        ServicePool(String name, GrpcServerProperties.ThreadPool config) {
+            this.name = name;
+            final RejectedExecutionHandler policy =
+                    config.getRejectionPolicy() == GrpcServerProperties.RejectionPolicy.CALLER_RUNS
+                            ? new ThreadPoolExecutor.CallerRunsPolicy() : new ThreadPoolExecutor.AbortPolicy();
+            this.executor = new ThreadPoolExecutor(config.getCoreThreads(),
+                    Math.max(config.getCoreThreads(), config.getMaxThreads()),
+                    config.getKeepAliveSeconds(), TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(config.getQueueCapacity()),
+                    new DefaultThreadFactory("grpc-" + name, true),
+                    (task, executor) -> {
+                        rejected.increment();
+                        policy.rejectedExecution(task, executor);
+                    });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ThreadPoolExecutor getExecutor() {
+            return executor;
+        }
+
+        /**
+         * Number of tasks the pool could not accept, whatever the rejection policy did with them.
+         */
+        public long getRejectedCount() {
+            return rejected.sum();
+        }
+
+        public void recordQueueWait(long nanos) {
+            queueWait.record(nanos);
+        }
+
+        /**
+         * Time the calls waited in the queue of the pool, in microseconds.
+         */
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package scyuan.spring.boot.autoconfigure.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs the submitted tasks one at a time, in submission order, on the delegate executor. Used to
+ * keep the callbacks of a single call ordered once they leave the transport thread.
+ */
+class SerializingExecutor implements Executor, Runnable {
+
+    private static final Log LOG = LogFactory.getLog(SerializingExecutor.class);
+
+    private final Executor delegate;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongConsumer queueWaitRecorder;
+
+    private volatile long scheduledNanos;
+
+    /**
+     * @param queueWaitRecorder receives the nanoseconds each drain waited in the delegate's queue, may be null
+     */
+    SerializingExecutor(Executor delegate, LongConsumer queueWaitRecorder) {
+        this.delegate = delegate;
+        this.queueWaitRecorder = queueWaitRecorder;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            boolean scheduled = false;
+            scheduledNanos = System.nanoTime();
+            try {
+                delegate.execute(this);
+                scheduled = true;
+            } finally {
+                if (!scheduled) {
+                    running.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the tasks not run yet and runs the given one last: on the calling thread when no task
+     * is running, otherwise on the thread running them, once they complete. For the tasks that must
+     * run even when the delegate rejects them.
+     */
+    void abort(Runnable task) {
+        tasks.clear();
+        tasks.add(task);
+        if (running.compareAndSet(false, true)) {
+            drain();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (queueWaitRecorder != null) {
+            queueWaitRecorder.accept(System.nanoTime() - scheduledNanos);
+        }
+        drain();
+    }
+
+    /**
+     * Runs the queued tasks, with {@link #running} set. The tasks queued while it is cleared again are
+     * run on this thread too, so that none is left behind when the delegate rejects new ones.
+     */
+    private void drain() {
+        do {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("Exception while executing task " + task, e);
+                    }
+                }
+            } finally {
+                running.set(false);
+            }
+        } while (!tasks.isEmpty() && running.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,167 @@
+package scyuan.spring.boot.autoconfigure.executor;
+
+import io.grpc.Context;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * Moves the calls of a service off the server executor onto a dedicated one. The call is started
+ * and all of its listener callbacks are run, in order and in the call's {@link Context}, on the
+ * dedicated executor. When that executor rejects the call, or one of its callbacks, it is closed
+ * with RESOURCE_EXHAUSTED.
+ */
+public class ServiceExecutorInterceptor implements ServerInterceptor {
+
+    private final String name;
+
+    private final Executor executor;
+
+    private final LongConsumer queueWaitRecorder;
+
+    public ServiceExecutorInterceptor(String name, Executor executor) {
+        this(name, executor, null);
+    }
+
+    /**
+     * @param queueWaitRecorder receives the nanoseconds calls waited in the executor's queue, may be null
+     */
+    public ServiceExecutorInterceptor(String name, Executor executor, LongConsumer queueWaitRecorder) {
+        this.name = name;
+        this.executor = executor;
+        this.queueWaitRecorder = queueWaitRecorder;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(final ServerCall<ReqT, RespT> call,
+                                                                 final Metadata headers,
+                                                                 final ServerCallHandler<ReqT, RespT> next) {
+        final Context context = Context.current();
+        final GuardedServerCall<ReqT, RespT> guardedCall = new GuardedServerCall<>(call);
+        final DispatchingListener<ReqT> listener = new DispatchingListener<>(guardedCall, context,
+                new SerializingExecutor(context.fixedContextExecutor(executor), queueWaitRecorder));
+        listener.dispatch(() -> listener.delegate = next.startCall(guardedCall, headers));
+        return listener;
+    }
+
+    private class DispatchingListener<ReqT> extends ServerCall.Listener<ReqT> {
+
+        private final GuardedServerCall<ReqT, ?> call;
+
+        private final Context context;
+
+        private final SerializingExecutor callExecutor;
+
+        // only accessed from callExecutor, which runs the tasks one at a time
+        private ServerCall.Listener<ReqT> delegate;
+
+        // only accessed from the transport, which delivers the callbacks one at a time
+        private boolean rejected;
+
+        DispatchingListener(GuardedServerCall<ReqT, ?> call, Context context, SerializingExecutor callExecutor) {
+            this.call = call;
+            this.context = context;
+            this.callExecutor = callExecutor;
+        }
+
+        /**
+         * Runs the task on the executor. When the executor rejects it, the tasks still queued are
+         * dropped, and the call is closed and the service told it is cancelled after the task running,
+         * if any, so the call is never used by two threads at once. The callbacks of the transport
+         * that follow are dropped, the service got its last one.
+         */
+        void dispatch(Runnable task) {
+            if (rejected) {
+                return;
+            }
+            try {
+                callExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+                callExecutor.abort(context.wrap(() -> {
+                    call.abort(Status.RESOURCE_EXHAUSTED.withDescription("Executor '" + name + "' is saturated"));
+                    if (delegate != null) {
+                        delegate.onCancel();
+                    }
+                }));
+            }
+        }
+
+        @Override
+        public void onMessage(final ReqT message) {
+            dispatch(() -> delegate.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            dispatch(() -> delegate.onHalfClose());
+        }
+
+        @Override
+        public void onCancel() {
+            dispatch(() -> delegate.onCancel());
+        }
+
+        @Override
+        public void onComplete() {
+            dispatch(() -> delegate.onComplete());
+        }
+
+        @Override
+        public void onReady() {
+            dispatch(() -> delegate.onReady());
+        }
+    }
+
+    /**
+     * The call as the service sees it, which the interceptor may close from another thread than the
+     * service's when the executor rejects a callback: headers, messages and closes are sent under the
+     * lock of the call, and those of the service are dropped once the interceptor closed it.
+     */
+    private static class GuardedServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private boolean closed;
+
+        private boolean aborted;
+
+        GuardedServerCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public synchronized void sendHeaders(Metadata headers) {
+            if (!aborted) {
+                super.sendHeaders(headers);
+            }
+        }
+
+        @Override
+        public synchronized void sendMessage(RespT message) {
+            if (!aborted) {
+                super.sendMessage(message);
+            }
+        }
+
+        @Override
+        public synchronized void close(Status status, Metadata trailers) {
+            if (!aborted) {
+                closed = true;
+                super.close(status, trailers);
+            }
+        }
+
+        synchronized void abort(Status status) {
+            if (!closed && !aborted) {
+                aborted = true;
+                super.close(status, new Metadata());
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package scyuan.spring.boot.autoconfigure.health;
+
+import io.grpc.BindableService;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The grpc.health.v1.Health service of one server, which serves the status of the server itself,
+ * under the empty service name, and of each of its services.
+ * <p>
+ * Check only reads a {@link ConcurrentHashMap}, so probes never wait on a lock nor on the service
+ * traffic. Watch streams the status of a service on every change; a watcher that is slower than the
+ * changes only gets the latest status. A service name is only kept for the Watch streams while one
+ * is open on it, so watching names the server does not know holds nothing once the streams end.
+ * <p>
+ * The server marks everything SERVING when it starts, and NOT_SERVING when it starts draining, at
+ * which point the Watch streams are completed so they don't hold the drain up.
+ */
+public class GrpcHealthService implements BindableService {
+
+    /**
+     * Service name of the status of the server as a whole.
+     */
+    public static final String SERVER = "";
+
+    private final ConcurrentMap<String, ServingStatus> statuses = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<Watcher>> watchers = new ConcurrentHashMap<>();
+
+    private volatile boolean draining = true;
+
+    /**
+     * Returns the status of the service, null when it is unknown.
+     */
+    public ServingStatus getStatus(String service) {
+        return statuses.get(service);
+    }
+
+    /**
+     * Sets the status of the service. Ignored while the server is draining or stopped, as it is
+     * NOT_SERVING whatever the service state.
+     */
+    public void setStatus(String service, ServingStatus status) {
+        if (draining) {
+            return;
+        }
+        statuses.put(service, status);
+        notifyWatchers(service);
+    }
+
+    public void clearStatus(String service) {
+        statuses.remove(service);
+        notifyWatchers(service);
+    }
+
+    /**
+     * Marks the server and the given services SERVING, when the server starts.
+     */
+    public void startServing(Collection<String> services) {
+        draining = false;
+        setStatus(SERVER, ServingStatus.SERVING);
+        for (String service : services) {
+            setStatus(service, ServingStatus.SERVING);
+        }
+    }
+
+    /**
+     * Marks everything NOT_SERVING and completes the Watch streams, when the server starts draining.
+     */
+    public void drain() {
+        draining = true;
+        for (String service : statuses.keySet()) {
+            statuses.put(service, ServingStatus.NOT_SERVING);
+            notifyWatchers(service);
+        }
+        for (Set<Watcher> serviceWatchers : watchers.values()) {
+            for (Watcher watcher : serviceWatchers) {
+                watcher.complete();
+            }
+        }
+    }
+
+    /**
+     * Number of open Watch streams.
+     */
+    public int getWatchCount() {
+        int count = 0;
+        for (Set<Watcher> serviceWatchers : watchers.values()) {
+            count += serviceWatchers.size();
+        }
+        return count;
+    }
+
+    /**
+     * Number of service names kept for the Watch streams, those with an open stream.
+     */
+    int getWatchedServiceCount() {
+        return watchers.size();
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(new ServiceDescriptor(HealthCheckProtocol.SERVICE_NAME,
+                HealthCheckProtocol.CHECK, HealthCheckProtocol.WATCH))
+                .addMethod(HealthCheckProtocol.CHECK, ServerCalls.asyncUnaryCall(this::check))
+                .addMethod(HealthCheckProtocol.WATCH, ServerCalls.asyncServerStreamingCall(this::watch))
+                .build();
+    }
+
+    private void check(String service, StreamObserver<ServingStatus> responseObserver) {
+        final ServingStatus status = statuses.get(service);
+        if (status == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Unknown service '" + service + "'").asRuntimeException());
+        } else {
+            responseObserver.onNext(status);
+            responseObserver.onCompleted();
+        }
+    }
+
+    private void watch(String service, StreamObserver<ServingStatus> responseObserver) {
+        final Watcher watcher = new Watcher(service, (ServerCallStreamObserver<ServingStatus>) responseObserver);
+        watchers.compute(service, (s, serviceWatchers) -> {
+            final Set<Watcher> added = serviceWatchers != null ? serviceWatchers : ConcurrentHashMap.newKeySet();
+            added.add(watcher);
+            return added;
+        });
+        watcher.observer.setOnCancelHandler(() -> removeWatcher(watcher));
+        watcher.observer.setOnReadyHandler(watcher::update);
+        if (draining) {
+            watcher.complete();
+        } else {
+            watcher.update();
+        }
+    }
+
+    /**
+     * Removes the watcher, and the set of its service along with the last one, atomically with the
+     * additions so that no watcher is added to a set removed meanwhile.
+     */
+    private void removeWatcher(Watcher watcher) {
+        watchers.computeIfPresent(watcher.service, (s, serviceWatchers) -> {
+            serviceWatchers.remove(watcher);
+            return serviceWatchers.isEmpty() ? null : serviceWatchers;
+        });
+    }
+
+    private void notifyWatchers(String service) {
+        final Set<Watcher> serviceWatchers = watchers.get(service);
+        if (serviceWatchers != null) {
+            for (Watcher watcher : serviceWatchers) {
+                watcher.update();
+            }
+        }
+    }
+
+    private final class Watcher {
+
+        final String service;
+
+        final ServerCallStreamObserver<ServingStatus> observer;
+
+        /** Guarded by this. */
+        private ServingStatus sent;
+
+        /** Guarded by this. */
+        private boolean completed;
+
+        Watcher(String service, ServerCallStreamObserver<ServingStatus> observer) {
+            this.service = service;
+            this.observer = observer;
+        }
+
+        /**
+         * Sends the current status when it changed since the last one sent and the stream can take
+         * it, otherwise the on-ready handler sends it later.
+         */
+        synchronized void update() {
+            if (completed || observer.isCancelled() || !observer.isReady()) {
+                return;
+            }
+            final ServingStatus status = statuses.get(service);
+            final ServingStatus current = status != null ? status : ServingStatus.SERVICE_UNKNOWN;
+            if (current != sent) {
+                sent = current;
+                observer.onNext(current);
+            }
+        }
+
+        synchronized void complete() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            removeWatcher(this);
+            if (!observer.isCancelled()) {
+                final ServingStatus status = statuses.get(service);
+                final ServingStatus current = status != null ? status : ServingStatus.SERVICE_UNKNOWN;
+                if (current != sent) {
+                    observer.onNext(current);
+                }
+                observer.onCompleted();
+            }
+        }
+    }
+}
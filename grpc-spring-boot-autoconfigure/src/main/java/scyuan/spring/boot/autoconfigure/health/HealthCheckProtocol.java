@@ -0,0 +1,110 @@
+package scyuan.spring.boot.autoconfigure.health;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Methods of the grpc.health.v1.Health service. Its two messages have a single field each, so they
+ * are encoded by hand: the request as the service name and the response as its {@link ServingStatus},
+ * without the generated health classes.
+ */
+public final class HealthCheckProtocol {
+
+    public static final String SERVICE_NAME = "grpc.health.v1.Health";
+
+    public static final MethodDescriptor<String, ServingStatus> CHECK = MethodDescriptor.create(
+            MethodDescriptor.MethodType.UNARY, MethodDescriptor.generateFullMethodName(SERVICE_NAME, "Check"),
+            new RequestMarshaller(), new ResponseMarshaller());
+
+    public static final MethodDescriptor<String, ServingStatus> WATCH = MethodDescriptor.create(
+            MethodDescriptor.MethodType.SERVER_STREAMING, MethodDescriptor.generateFullMethodName(SERVICE_NAME, "Watch"),
+            new RequestMarshaller(), new ResponseMarshaller());
+
+    /** Tag of field 1, length-delimited. */
+    private static final int SERVICE_TAG = 10;
+
+    /** Tag of field 1, varint. */
+    private static final int STATUS_TAG = 8;
+
+    private HealthCheckProtocol() {
+    }
+
+    /**
+     * HealthCheckRequest: string service = 1.
+     */
+    private static class RequestMarshaller implements MethodDescriptor.Marshaller<String> {
+
+        @Override
+        public InputStream stream(String service) {
+            if (service.isEmpty()) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            final byte[] bytes = service.getBytes(StandardCharsets.UTF_8);
+            final byte[] message = new byte[1 + CodedOutputStream.computeUInt32SizeNoTag(bytes.length) + bytes.length];
+            final CodedOutputStream output = CodedOutputStream.newInstance(message);
+            try {
+                output.writeByteArray(1, bytes);
+                output.checkNoSpaceLeft();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new ByteArrayInputStream(message);
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            final CodedInputStream input = CodedInputStream.newInstance(stream);
+            String service = "";
+            try {
+                for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+                    if (tag == SERVICE_TAG) {
+                        service = input.readStringRequireUtf8();
+                    } else if (!input.skipField(tag)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid health check request").withCause(e).asRuntimeException();
+            }
+            return service;
+        }
+    }
+
+    /**
+     * HealthCheckResponse: ServingStatus status = 1.
+     */
+    private static class ResponseMarshaller implements MethodDescriptor.Marshaller<ServingStatus> {
+
+        @Override
+        public InputStream stream(ServingStatus status) {
+            // UNKNOWN is the default value, which is not encoded
+            return new ByteArrayInputStream(status == ServingStatus.UNKNOWN
+                    ? new byte[0] : new byte[]{STATUS_TAG, (byte) status.getNumber()});
+        }
+
+        @Override
+        public ServingStatus parse(InputStream stream) {
+            final CodedInputStream input = CodedInputStream.newInstance(stream);
+            int status = 0;
+            try {
+                for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+                    if (tag == STATUS_TAG) {
+                        status = input.readEnum();
+                    } else if (!input.skipField(tag)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid health check response").withCause(e).asRuntimeException();
+            }
+            return ServingStatus.forNumber(status);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package scyuan.spring.boot.autoconfigure.health;
+
+/**
+ * HealthCheckResponse.ServingStatus of grpc.health.v1, with its wire numbers.
+ */
+public enum ServingStatus {
+
+    UNKNOWN(0),
+
+    SERVING(1),
+
+    NOT_SERVING(2),
+
+    /**
+     * Only sent by Watch, for a service the server does not know (yet).
+     */
+    SERVICE_UNKNOWN(3);
+
+    private static final ServingStatus[] BY_NUMBER = values();
+
+    private final int number;
+
+    ServingStatus(int number) {
+        this.number = number;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public static ServingStatus forNumber(int number) {
+        return number >= 0 && number < BY_NUMBER.length ? BY_NUMBER[number] : UNKNOWN;
+    }
+}
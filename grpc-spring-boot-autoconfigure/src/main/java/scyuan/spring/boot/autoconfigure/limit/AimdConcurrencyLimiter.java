@@ -0,0 +1,57 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ConcurrencyLimiter} whose limit is adjusted by additive increase, multiplicative decrease:
+ * it grows by one when a call completes in time while at least half of the limit was in use, and is
+ * multiplied by the backoff ratio when a call is dropped or slower than the latency threshold.
+ * <p>
+ * {@link ConcurrencyLimitInterceptor} samples the unary calls, and the streams that time out only.
+ */
+public class AimdConcurrencyLimiter extends ConcurrencyLimiter {
+
+    private final AtomicInteger limit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long latencyThresholdNanos;
+
+    public AimdConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                  double backoffRatio, long latencyThresholdMillis) {
+        super(name, maxLimit);
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    }
+
+    @Override
+    protected void onSample(int inFlight, long latencyNanos, boolean dropped) {
+        for (;;) {
+            final int current = limit.get();
+            final int next;
+            if (dropped || latencyNanos > latencyThresholdNanos) {
+                next = Math.max(minLimit, (int) (current * backoffRatio));
+            } else if (inFlight * 2 >= current) {
+                next = Math.min(maxLimit, current + 1);
+            } else {
+                return;
+            }
+            if (next == current || limit.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return limit.get();
+    }
+}
@@ -0,0 +1,228 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Admission control: a call is admitted only when both the server and its method are under their
+ * concurrency limit, otherwise it is closed right away with RESOURCE_EXHAUSTED so that overload
+ * turns into fast rejections rather than queueing.
+ * <p>
+ * It holds the limiters of one server, and intercepts the calls through the interceptor that
+ * {@link #forMethod(ServerMethodDefinition)} binds to the limiter of each method, so a call looks
+ * nothing up.
+ */
+public class ConcurrencyLimitInterceptor {
+
+    private final String server;
+
+    private final ConcurrencyLimiter serverLimiter;
+
+    private final int maxConcurrentCallsPerMethod;
+
+    private final ConcurrentMap<String, ConcurrencyLimiter> methodLimiters = new ConcurrentHashMap<>();
+
+    private final List<Consumer<ConcurrencyLimiter>> listeners = new CopyOnWriteArrayList<>();
+
+    public ConcurrencyLimitInterceptor(String server, GrpcServerDefinition.Limits limits) {
+        this.server = server;
+        final GrpcServerDefinition.Adaptive adaptive = limits.getAdaptive();
+        if (adaptive.isEnabled()) {
+            final int maxLimit = limits.getMaxConcurrentCalls() > 0
+                    ? Math.min(limits.getMaxConcurrentCalls(), adaptive.getMaxLimit()) : adaptive.getMaxLimit();
+            this.serverLimiter = new AimdConcurrencyLimiter("server", adaptive.getInitialLimit(),
+                    adaptive.getMinLimit(), maxLimit, adaptive.getBackoffRatio(), adaptive.getLatencyThresholdMillis());
+        } else if (limits.getMaxConcurrentCalls() > 0) {
+            this.serverLimiter = new ConcurrencyLimiter("server", limits.getMaxConcurrentCalls());
+        } else {
+            this.serverLimiter = null;
+        }
+        this.maxConcurrentCallsPerMethod = limits.getMaxConcurrentCallsPerMethod();
+    }
+
+    /**
+     * Returns the interceptor of the calls of the method, creating its limiter up front.
+     */
+    public ServerInterceptor forMethod(ServerMethodDefinition<?, ?> method) {
+        final MethodDescriptor<?, ?> descriptor = method.getMethodDescriptor();
+        return new MethodInterceptor(getMethodLimiter(descriptor.getFullMethodName()),
+                descriptor.getType() == MethodDescriptor.MethodType.UNARY);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public ConcurrencyLimiter getServerLimiter() {
+        return serverLimiter;
+    }
+
+    public Collection<ConcurrencyLimiter> getMethodLimiters() {
+        return Collections.unmodifiableCollection(methodLimiters.values());
+    }
+
+    /**
+     * Calls the listener with the method limiters created so far and with every one created later.
+     */
+    public void addListener(Consumer<ConcurrencyLimiter> listener) {
+        listeners.add(listener);
+        for (ConcurrencyLimiter limiter : methodLimiters.values()) {
+            listener.accept(limiter);
+        }
+    }
+
+    private ConcurrencyLimiter getMethodLimiter(String fullMethodName) {
+        if (maxConcurrentCallsPerMethod <= 0) {
+            return null;
+        }
+        final ConcurrencyLimiter limiter = methodLimiters.get(fullMethodName);
+        if (limiter != null) {
+            return limiter;
+        }
+        final ConcurrencyLimiter created = new ConcurrencyLimiter(fullMethodName, maxConcurrentCallsPerMethod);
+        final ConcurrencyLimiter existing = methodLimiters.putIfAbsent(fullMethodName, created);
+        if (existing != null) {
+            return existing;
+        }
+        for (Consumer<ConcurrencyLimiter> listener : listeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    private static <ReqT> ServerCall.Listener<ReqT> reject(ServerCall<ReqT, ?> call, String description) {
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription(description), new Metadata());
+        return new ServerCall.Listener<ReqT>() {
+        };
+    }
+
+    private final class MethodInterceptor implements ServerInterceptor {
+
+        private final ConcurrencyLimiter methodLimiter;
+
+        /** Whether the latency of the calls tells the load, only that of unary calls does. */
+        private final boolean sampled;
+
+        MethodInterceptor(ConcurrencyLimiter methodLimiter, boolean sampled) {
+            this.methodLimiter = methodLimiter;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                     Metadata headers,
+                                                                     ServerCallHandler<ReqT, RespT> next) {
+            if (serverLimiter != null && !serverLimiter.tryAcquire()) {
+                return reject(call, "Server concurrency limit reached");
+            }
+            if (methodLimiter != null && !methodLimiter.tryAcquire()) {
+                if (serverLimiter != null) {
+                    serverLimiter.abandon();
+                }
+                return reject(call, "Method concurrency limit reached");
+            }
+
+            final Permit permit = new Permit(serverLimiter, methodLimiter, sampled);
+            final ServerCall.Listener<ReqT> listener;
+            try {
+                listener = next.startCall(new LimitedServerCall<>(call, permit), headers);
+            } catch (RuntimeException e) {
+                permit.release(Status.Code.UNKNOWN);
+                throw e;
+            }
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+                @Override
+                public void onCancel() {
+                    permit.release(Status.Code.CANCELLED);
+                    super.onCancel();
+                }
+            };
+        }
+    }
+
+    private static class LimitedServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final Permit permit;
+
+        LimitedServerCall(ServerCall<ReqT, RespT> delegate, Permit permit) {
+            super(delegate);
+            this.permit = permit;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            permit.release(status.getCode());
+            super.close(status, trailers);
+        }
+    }
+
+    /**
+     * The admission of one call by its limiters, apart from the generic call so that its field
+     * updater is not of a raw type.
+     */
+    private static final class Permit {
+
+        private static final AtomicIntegerFieldUpdater<Permit> RELEASED =
+                AtomicIntegerFieldUpdater.newUpdater(Permit.class, "released");
+
+        private final ConcurrencyLimiter serverLimiter;
+
+        private final ConcurrencyLimiter methodLimiter;
+
+        /** Whether the latency of the call tells the load, only that of unary calls does. */
+        private final boolean sampled;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile int released;
+
+        Permit(ConcurrencyLimiter serverLimiter, ConcurrencyLimiter methodLimiter, boolean sampled) {
+            this.serverLimiter = serverLimiter;
+            this.methodLimiter = methodLimiter;
+            this.sampled = sampled;
+        }
+
+        /**
+         * Releases the call from its limiters. Only a timed out call counts as dropped: the calls closed
+         * with RESOURCE_EXHAUSTED by the method policies or a saturated executor say nothing of the
+         * latency. A stream that did not time out is released without a sample, as it lasts as long
+         * as its client keeps it open, however loaded the server is.
+         */
+        void release(Status.Code code) {
+            if (RELEASED.compareAndSet(this, 0, 1)) {
+                final long latencyNanos = System.nanoTime() - startNanos;
+                final boolean dropped = code == Status.Code.DEADLINE_EXCEEDED;
+                release(serverLimiter, latencyNanos, dropped);
+                release(methodLimiter, latencyNanos, dropped);
+            }
+        }
+
+        private void release(ConcurrencyLimiter limiter, long latencyNanos, boolean dropped) {
+            if (limiter == null) {
+                return;
+            }
+            if (sampled || dropped) {
+                limiter.release(latencyNanos, dropped);
+            } else {
+                limiter.abandon();
+            }
+        }
+    }
+}
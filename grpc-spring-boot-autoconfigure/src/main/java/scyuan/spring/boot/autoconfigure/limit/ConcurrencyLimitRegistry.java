@@ -0,0 +1,59 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The {@link ConcurrencyLimitInterceptor} of every server that has limits enabled. An interceptor
+ * outlives the restarts of its server, so its limiters and their metrics are kept.
+ */
+public class ConcurrencyLimitRegistry {
+
+    private final ConcurrentMap<String, ConcurrencyLimitInterceptor> interceptors = new ConcurrentHashMap<>();
+
+    private final List<Consumer<ConcurrencyLimitInterceptor>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the interceptor of the server, created from its limits the first time, or null when
+     * they are disabled.
+     */
+    public ConcurrencyLimitInterceptor getInterceptor(String server, GrpcServerDefinition.Limits limits) {
+        if (!limits.isEnabled()) {
+            return null;
+        }
+        final ConcurrencyLimitInterceptor interceptor = interceptors.get(server);
+        if (interceptor != null) {
+            return interceptor;
+        }
+        final ConcurrencyLimitInterceptor created = new ConcurrencyLimitInterceptor(server, limits);
+        final ConcurrencyLimitInterceptor existing = interceptors.putIfAbsent(server, created);
+        if (existing != null) {
+            return existing;
+        }
+        for (Consumer<ConcurrencyLimitInterceptor> listener : listeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    public Collection<ConcurrencyLimitInterceptor> getInterceptors() {
+        return Collections.unmodifiableCollection(interceptors.values());
+    }
+
+    /**
+     * Calls the listener with the interceptors created so far and with every one created later.
+     */
+    public void addListener(Consumer<ConcurrencyLimitInterceptor> listener) {
+        listeners.add(listener);
+        for (ConcurrencyLimitInterceptor interceptor : interceptors.values()) {
+            listener.accept(interceptor);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits calls while fewer than {@link #getLimit()} are in flight.
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+
+    private final int limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimiter(String name, int limit) {
+        this.name = name;
+        this.limit = limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean tryAcquire() {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted call.
+     *
+     * @param latencyNanos time the call was in flight
+     * @param dropped whether the call timed out or was overloaded
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        onSample(inFlight.getAndDecrement(), latencyNanos, dropped);
+    }
+
+    /**
+     * Releases an admitted call without taking it as a sample, one that was not processed or whose
+     * latency does not tell the load.
+     */
+    public void abandon() {
+        inFlight.decrementAndGet();
+    }
+
+    protected void onSample(int inFlight, long latencyNanos, boolean dropped) {
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiting by caller: every call takes a token from the bucket of its caller, keyed by the
+ * value of a request header, or by the peer address (without its port) when no header is configured
+ * or the call does not carry it. A call finding the bucket empty is closed right away with
+ * RESOURCE_EXHAUSTED, and the milliseconds until the bucket has a token again in the
+ * {@link #RETRY_PUSHBACK_MS} trailer.
+ * <p>
+ * Callers choose the values of their headers, so a header should only key the buckets when it is
+ * set or checked upstream, by a proxy or an authenticating interceptor.
+ */
+public class RateLimitInterceptor implements ServerInterceptor {
+
+    /**
+     * Trailer of the rejected calls with the milliseconds to wait before retrying, the one gRPC
+     * clients read as the server pushback of their retries.
+     */
+    public static final Metadata.Key<String> RETRY_PUSHBACK_MS =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Object UNKNOWN_PEER = new Object();
+
+    private final String server;
+
+    private final Metadata.Key<String> keyHeader;
+
+    private final RateLimiter limiter;
+
+    public RateLimitInterceptor(String server, GrpcServerDefinition.RateLimit rateLimit) {
+        this.server = server;
+        final String header = rateLimit.getKeyHeader();
+        this.keyHeader = header == null || header.isEmpty() ? null : Metadata.Key.of(header, Metadata.ASCII_STRING_MARSHALLER);
+        final int burst = rateLimit.getBurst() > 0 ? rateLimit.getBurst()
+                : (int) Math.max(1, Math.ceil(rateLimit.getPermitsPerSecond()));
+        this.limiter = new RateLimiter(rateLimit.getPermitsPerSecond(), burst, rateLimit.getMaxKeys());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final long waitNanos = limiter.tryAcquire(keyOf(call, headers), System.nanoTime());
+        if (waitNanos == 0) {
+            return next.startCall(call, headers);
+        }
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        final Metadata trailers = new Metadata();
+        trailers.put(RETRY_PUSHBACK_MS, Long.toString(waitMillis));
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("Rate limit exceeded, retry after " + waitMillis + " ms"),
+                trailers);
+        return new ServerCall.Listener<ReqT>() {
+        };
+    }
+
+    private Object keyOf(ServerCall<?, ?> call, Metadata headers) {
+        if (keyHeader != null) {
+            final String value = headers.get(keyHeader);
+            if (value != null) {
+                return value;
+            }
+        }
+        final SocketAddress address = call.attributes().get(ServerCall.REMOTE_ADDR_KEY);
+        if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+            return ((InetSocketAddress) address).getAddress();
+        }
+        return address != null ? address : UNKNOWN_PEER;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public RateLimiter getLimiter() {
+        return limiter;
+    }
+}
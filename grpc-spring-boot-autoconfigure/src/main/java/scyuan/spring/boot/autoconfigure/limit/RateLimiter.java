@@ -0,0 +1,133 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets by key, refilled at the same rate and holding the same burst. A bucket is kept as
+ * the single time it will be full again, as in the generic cell rate algorithm: taking a token
+ * pushes that time one emission interval further, which is refused when it would go beyond the
+ * burst from now. Buckets are taken with one compare-and-set, without locking, and a bucket evicted
+ * while it was being taken is taken again from the store.
+ * <p>
+ * The store is a Caffeine cache bounded to {@code maxKeys}, whose evictions are amortized over the
+ * calls and run on its executor, so that looking a key up stays constant time however many callers
+ * there are. A bucket not taken for the time it takes to refill is full again, no different from a
+ * new one, and expires; beyond the bound, the buckets of the least frequent keys are evicted,
+ * forgetting the little debt of their keys.
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+
+    private final long burstNanos;
+
+    private final Cache<Object, Bucket> cache;
+
+    private final ConcurrentMap<Object, Bucket> buckets;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permitsPerSecond rate the buckets refill at
+     * @param burst number of tokens of a full bucket, at least 1
+     * @param maxKeys number of buckets the store holds at most
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this(permitsPerSecond, burst, maxKeys, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param ticker clock of the expiry of the buckets, the one of the times given to
+     *               {@link #tryAcquire(Object, long)}
+     * @param executor executor of the evictions
+     */
+    RateLimiter(double permitsPerSecond, int burst, int maxKeys, Ticker ticker, Executor executor) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("The rate, burst and max keys of a rate limiter must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = emissionIntervalNanos * burst;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(burstNanos, TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .executor(executor)
+                .build();
+        this.buckets = cache.asMap();
+    }
+
+    /**
+     * Takes a token from the bucket of the key.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds until the bucket has one
+     */
+    public long tryAcquire(Object key, long nowNanos) {
+        for (;;) {
+            final Bucket bucket = bucketOf(key, nowNanos);
+            final long result = tryAcquire(bucket, nowNanos);
+            // a bucket evicted meanwhile is no longer the one of the key, take the token from the new one
+            if (buckets.get(key) == bucket) {
+                if (result > 0) {
+                    rejected.increment();
+                }
+                return result;
+            }
+        }
+    }
+
+    private Bucket bucketOf(Object key, long nowNanos) {
+        final Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        final Bucket created = new Bucket(nowNanos);
+        final Bucket existing = buckets.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    private long tryAcquire(Bucket bucket, long nowNanos) {
+        for (;;) {
+            final long full = bucket.full;
+            final long next = (full - nowNanos > 0 ? full : nowNanos) + emissionIntervalNanos;
+            final long excess = next - nowNanos - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (Bucket.FULL.compareAndSet(bucket, full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Number of keys with a bucket in the store.
+     */
+    public long getKeyCount() {
+        return cache.estimatedSize();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private static final class Bucket {
+
+        static final AtomicLongFieldUpdater<Bucket> FULL = AtomicLongFieldUpdater.newUpdater(Bucket.class, "full");
+
+        /** Time the bucket is full again, in {@link System#nanoTime()}. */
+        volatile long full;
+
+        Bucket(long full) {
+            this.full = full;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package scyuan.spring.boot.autoconfigure.marshal;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Marshaller of the requests of a method that reads every uncompressed protobuf request whole into
+ * an array of the thread and decodes it from there. The generated marshallers decode from the
+ * stream of the transport, through a buffer allocated for every message and refilled as they go.
+ * Other messages, and compressed ones whose length is not known, go to the marshaller of the method.
+ */
+final class BufferedRequestMarshaller<T> implements MethodDescriptor.Marshaller<T> {
+
+    /** Requests up to this size are read into the array of the thread, larger ones into their own. */
+    private static final int MAX_BUFFERED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    private final MethodDescriptor<T, ?> descriptor;
+
+    /** Parser of the protobuf requests, null when they are not protobuf messages. */
+    private final Parser<T> parser;
+
+    BufferedRequestMarshaller(MethodDescriptor<T, ?> descriptor) {
+        this.descriptor = descriptor;
+        this.parser = parserOf(descriptor);
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return descriptor.streamRequest(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        if (parser == null || !(stream instanceof KnownLength)) {
+            return descriptor.parseRequest(stream);
+        }
+        try {
+            final int size = stream.available();
+            final byte[] buffer = size <= MAX_BUFFERED_SIZE ? buffer(size) : new byte[size];
+            ByteStreams.readFully(stream, buffer, 0, size);
+            // the messages copy what they keep out of the buffer
+            return parser.parseFrom(buffer, 0, size);
+        } catch (InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Failed to read the message").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static byte[] buffer(int size) {
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.max(size, Math.min(MAX_BUFFERED_SIZE, buffer.length * 2))];
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Gets the parser from the message the marshaller of the method reads out of no bytes, the
+     * default instance of the protobuf requests.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Parser<T> parserOf(MethodDescriptor<T, ?> descriptor) {
+        final Object empty;
+        try {
+            empty = descriptor.parseRequest(new ByteArrayInputStream(new byte[0]));
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return empty instanceof MessageLite ? (Parser<T>) ((MessageLite) empty).getParserForType() : null;
+    }
+}
@@ -0,0 +1,18 @@
+package scyuan.spring.boot.autoconfigure.marshal;
+
+import io.grpc.ServerMethodDefinition;
+
+/**
+ * Callback for beans that bind methods with marshallers of their own, to read or write their
+ * messages in another way than the generated code does. Configurers are applied in
+ * {@link org.springframework.core.annotation.Order} order to every method of every service, when
+ * the services are bound, after the {@link PreSerialized} marshallers of the method policies.
+ */
+public interface GrpcMarshallerConfigurer {
+
+    /**
+     * Returns the method bound with the marshallers to use on the named server, or the method itself
+     * to keep its own. The new method must keep the full name and type of the given one.
+     */
+    <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> configure(String serverName, ServerMethodDefinition<ReqT, RespT> method);
+}
@@ -0,0 +1,98 @@
+package scyuan.spring.boot.autoconfigure.marshal;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.StreamObserver;
+import scyuan.spring.boot.autoconfigure.policy.MethodPolicies;
+
+/**
+ * Methods whose responses may be sent serialized already, so that payloads returned over and over,
+ * or kept serialized in the first place, are not encoded again on every call. A method whose policy
+ * sets {@code pre-serialized} is bound with marshallers that:
+ * <ul>
+ *     <li>take {@link com.google.protobuf.ByteString} and {@link java.nio.ByteBuffer} responses as
+ *     the serialized message, and write them to the transport as they are, heap bytes without any
+ *     intermediate copy;</li>
+ *     <li>take the response messages as usual;</li>
+ *     <li>decode the protobuf requests from an array of the thread the whole message is read into,
+ *     rather than through a stream and buffers of their own.</li>
+ * </ul>
+ * The service tells whether its call can take serialized responses with {@link #isEnabled()}:
+ *
+ * <pre>
+ * public void getFeature(Point request, StreamObserver&lt;Feature&gt; responseObserver) {
+ *     if (PreSerialized.isEnabled()) {
+ *         PreSerialized.&lt;ByteString&gt;responses(responseObserver).onNext(serializedFeature(request));
+ *     } else {
+ *         responseObserver.onNext(feature(request));
+ *     }
+ *     responseObserver.onCompleted();
+ * }
+ * </pre>
+ */
+public final class PreSerialized {
+
+    private static final Context.Key<Boolean> ENABLED = Context.key("pre-serialized");
+
+    private PreSerialized() {
+    }
+
+    /**
+     * Whether the current call is one of a method bound by {@link #bind}, which takes serialized
+     * responses.
+     */
+    public static boolean isEnabled() {
+        return ENABLED.get() != null;
+    }
+
+    /**
+     * Returns the response observer of the current call as one of serialized responses, either
+     * {@link com.google.protobuf.ByteString} or {@link java.nio.ByteBuffer} ones.
+     *
+     * @throws IllegalStateException when the method of the call is not bound by {@link #bind}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> StreamObserver<T> responses(StreamObserver<?> responseObserver) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("The method of the call does not take pre-serialized responses");
+        }
+        return (StreamObserver<T>) responseObserver;
+    }
+
+    /**
+     * Returns the service with the methods whose policy sets pre-serialized bound by {@link #bind},
+     * or the service itself when none of its methods does.
+     */
+    public static ServerServiceDefinition apply(ServerServiceDefinition service, MethodPolicies policies) {
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.getServiceDescriptor().getName());
+        boolean applied = false;
+        for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+            if (policies.resolve(method.getMethodDescriptor().getFullMethodName()).isPreSerialized()) {
+                builder.addMethod(bind(method));
+                applied = true;
+            } else {
+                builder.addMethod(method);
+            }
+        }
+        return applied ? builder.build() : service;
+    }
+
+    /**
+     * Binds the method with the marshallers of pre-serialized responses and buffered requests, its
+     * calls running in a context where {@link #isEnabled()} holds.
+     */
+    public static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> bind(ServerMethodDefinition<ReqT, RespT> method) {
+        final MethodDescriptor<ReqT, RespT> descriptor = method.getMethodDescriptor();
+        final ServerCallHandler<ReqT, RespT> handler = method.getServerCallHandler();
+        return ServerMethodDefinition.create(
+                MethodDescriptor.create(descriptor.getType(), descriptor.getFullMethodName(),
+                        new BufferedRequestMarshaller<>(descriptor), new PreSerializedResponseMarshaller<>(descriptor))
+                        .withIdempotent(descriptor.isIdempotent()),
+                (call, headers) -> Contexts.interceptCall(Context.current().withValue(ENABLED, Boolean.TRUE), call, headers,
+                        handler));
+    }
+}
@@ -0,0 +1,185 @@
+package scyuan.spring.boot.autoconfigure.marshal;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Marshaller of the responses of a method that takes {@link ByteString} and {@link ByteBuffer}
+ * values as serialized messages, and other values as the marshaller of the method does.
+ * <p>
+ * Serialized messages are drained into the framer of the transport with their known length: the
+ * bytes of heap byte strings and buffers are written as they are, those of direct buffers through
+ * a chunk of the thread, as the framer only takes arrays.
+ */
+final class PreSerializedResponseMarshaller<T> implements MethodDescriptor.Marshaller<T> {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private final MethodDescriptor<?, T> descriptor;
+
+    PreSerializedResponseMarshaller(MethodDescriptor<?, T> descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        if (value instanceof ByteString) {
+            return new ByteStringInputStream((ByteString) value);
+        }
+        if (value instanceof ByteBuffer) {
+            // the caller may reuse its buffer, its position and limit are left alone
+            return new ByteBufferInputStream(((ByteBuffer) value).duplicate());
+        }
+        return descriptor.streamResponse(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        return descriptor.parseResponse(stream);
+    }
+
+    private static void write(ByteBuffer buffer, OutputStream target) throws IOException {
+        if (buffer.hasArray()) {
+            target.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        final byte[] chunk = CHUNK.get();
+        while (buffer.hasRemaining()) {
+            final int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            target.write(chunk, 0, length);
+        }
+    }
+
+    private static final class ByteStringInputStream extends InputStream implements KnownLength, Drainable {
+
+        private ByteString bytes;
+
+        /** The stream of the bytes once they are read rather than drained. */
+        private InputStream input;
+
+        ByteStringInputStream(ByteString bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            if (input != null) {
+                return (int) ByteStreams.copy(input, target);
+            }
+            final int size = bytes.size();
+            // hands the backing array or buffer of the byte string to the target, without copying it
+            UnsafeByteOperations.unsafeWriteTo(bytes, new OutputStreamByteOutput(target));
+            bytes = ByteString.EMPTY;
+            return size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return input().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return input().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return input != null ? input.available() : bytes.size();
+        }
+
+        private InputStream input() {
+            if (input == null) {
+                input = bytes.newInput();
+            }
+            return input;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream implements KnownLength, Drainable {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            final int size = buffer.remaining();
+            write(buffer, target);
+            return size;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return len == 0 ? 0 : -1;
+            }
+            final int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Writes what a byte string hands over to the output stream of the framer.
+     */
+    private static final class OutputStreamByteOutput extends ByteOutput {
+
+        private final OutputStream target;
+
+        OutputStreamByteOutput(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(byte value) throws IOException {
+            target.write(value);
+        }
+
+        @Override
+        public void write(byte[] value, int offset, int length) throws IOException {
+            target.write(value, offset, length);
+        }
+
+        @Override
+        public void writeLazy(byte[] value, int offset, int length) throws IOException {
+            target.write(value, offset, length);
+        }
+
+        @Override
+        public void write(ByteBuffer value) throws IOException {
+            PreSerializedResponseMarshaller.write(value.duplicate(), target);
+        }
+
+        @Override
+        public void writeLazy(ByteBuffer value) throws IOException {
+            PreSerializedResponseMarshaller.write(value.duplicate(), target);
+        }
+    }
+}
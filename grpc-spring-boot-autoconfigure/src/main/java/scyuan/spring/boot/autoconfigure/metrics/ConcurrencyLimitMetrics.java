@@ -0,0 +1,42 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import scyuan.spring.boot.autoconfigure.limit.ConcurrencyLimitRegistry;
+import scyuan.spring.boot.autoconfigure.limit.ConcurrencyLimiter;
+
+/**
+ * Current limit, calls in flight and rejections of the server and per-method concurrency limiters,
+ * tagged with the server.
+ */
+public class ConcurrencyLimitMetrics implements GrpcMeterBinder {
+
+    private final ConcurrencyLimitRegistry limitRegistry;
+
+    public ConcurrencyLimitMetrics(ConcurrencyLimitRegistry limitRegistry) {
+        this.limitRegistry = limitRegistry;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limitRegistry.addListener(interceptor -> {
+            final String server = interceptor.getServer();
+            if (interceptor.getServerLimiter() != null) {
+                bind(registry, interceptor.getServerLimiter(), Tags.of("scope", "server", "server", server));
+            }
+            interceptor.addListener(limiter -> bind(registry, limiter,
+                    Tags.of("scope", "method", "server", server, "method", limiter.getName())));
+        });
+    }
+
+    private static void bind(MeterRegistry registry, ConcurrencyLimiter limiter, Tags tags) {
+        Gauge.builder("grpc.server.limit", limiter, ConcurrencyLimiter::getLimit)
+                .tags(tags).description("Current concurrency limit").register(registry);
+        Gauge.builder("grpc.server.limit.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                .tags(tags).description("Admitted calls in flight").register(registry);
+        FunctionCounter.builder("grpc.server.limit.rejected", limiter, ConcurrencyLimiter::getRejectedCount)
+                .tags(tags).description("Calls rejected with RESOURCE_EXHAUSTED").register(registry);
+    }
+}
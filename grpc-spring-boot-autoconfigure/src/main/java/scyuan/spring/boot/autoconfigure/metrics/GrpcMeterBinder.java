@@ -0,0 +1,10 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * A {@link MeterBinder} of the starter, bound by {@link GrpcMeterBinderRegistrar} to every
+ * {@link io.micrometer.core.instrument.MeterRegistry} bean of the application context.
+ */
+public interface GrpcMeterBinder extends MeterBinder {
+}
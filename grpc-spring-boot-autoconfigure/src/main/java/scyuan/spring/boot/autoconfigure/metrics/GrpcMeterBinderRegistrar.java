@@ -0,0 +1,25 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Binds the {@link GrpcMeterBinder} beans to the {@link MeterRegistry} beans once all singletons
+ * have been created.
+ */
+public class GrpcMeterBinderRegistrar implements SmartInitializingSingleton {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (MeterRegistry registry : applicationContext.getBeansOfType(MeterRegistry.class).values()) {
+            for (GrpcMeterBinder binder : applicationContext.getBeansOfType(GrpcMeterBinder.class).values()) {
+                binder.bindTo(registry);
+            }
+        }
+    }
+}
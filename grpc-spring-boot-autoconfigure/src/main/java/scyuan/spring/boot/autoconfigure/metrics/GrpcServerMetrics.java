@@ -0,0 +1,72 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The {@link MethodMetrics} of every method served, by server, recorded by
+ * {@link GrpcServerMetricsInterceptor}.
+ */
+public class GrpcServerMetrics {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, MethodMetrics>> servers = new ConcurrentHashMap<>();
+
+    private final List<Consumer<MethodMetrics>> listeners = new CopyOnWriteArrayList<>();
+
+    private final int significantDigits;
+
+    public GrpcServerMetrics(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+    /**
+     * Returns the metrics of the method, created when its server binds it, so they are reported
+     * before the first call.
+     */
+    public MethodMetrics getMethodMetrics(String server, String fullMethodName) {
+        ConcurrentMap<String, MethodMetrics> methods = servers.get(server);
+        if (methods == null) {
+            final ConcurrentMap<String, MethodMetrics> created = new ConcurrentHashMap<>();
+            methods = servers.putIfAbsent(server, created);
+            if (methods == null) {
+                methods = created;
+            }
+        }
+        final MethodMetrics metrics = methods.get(fullMethodName);
+        if (metrics != null) {
+            return metrics;
+        }
+        final MethodMetrics created = new MethodMetrics(server, fullMethodName, significantDigits);
+        final MethodMetrics existing = methods.putIfAbsent(fullMethodName, created);
+        if (existing != null) {
+            return existing;
+        }
+        for (Consumer<MethodMetrics> listener : listeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    public Collection<MethodMetrics> getMethodMetrics() {
+        final List<MethodMetrics> all = new ArrayList<>();
+        for (ConcurrentMap<String, MethodMetrics> methods : servers.values()) {
+            all.addAll(methods.values());
+        }
+        return all;
+    }
+
+    /**
+     * Calls the listener with the metrics of the methods known so far and of every method added later.
+     */
+    public void addListener(Consumer<MethodMetrics> listener) {
+        listeners.add(listener);
+        for (MethodMetrics metrics : getMethodMetrics()) {
+            listener.accept(metrics);
+        }
+    }
+}
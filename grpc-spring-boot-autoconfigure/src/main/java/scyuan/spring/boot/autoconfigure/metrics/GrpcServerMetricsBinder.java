@@ -0,0 +1,48 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Publishes the {@link GrpcServerMetrics} to Micrometer, tagged with the server and the full method
+ * name. Latencies are cumulative percentiles of the HdrHistogram, in seconds.
+ */
+public class GrpcServerMetricsBinder implements GrpcMeterBinder {
+
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final GrpcServerMetrics serverMetrics;
+
+    public GrpcServerMetricsBinder(GrpcServerMetrics serverMetrics) {
+        this.serverMetrics = serverMetrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        serverMetrics.addListener(metrics -> bind(registry, metrics));
+    }
+
+    private static void bind(MeterRegistry registry, MethodMetrics metrics) {
+        final Tags tags = Tags.of("server", metrics.getServer(), "method", metrics.getFullMethodName());
+
+        FunctionCounter.builder("grpc.server.calls.started", metrics, MethodMetrics::getStartedCount)
+                .tags(tags).description("Calls received").register(registry);
+        for (Status.Code code : Status.Code.values()) {
+            FunctionCounter.builder("grpc.server.calls.completed", metrics, m -> m.getCompletedCount(code))
+                    .tags(tags).tag("status", code.name()).description("Calls completed, by status")
+                    .register(registry);
+        }
+        Gauge.builder("grpc.server.calls.in.flight", metrics, MethodMetrics::getInFlightCount)
+                .tags(tags).description("Calls started and not completed yet").register(registry);
+        for (double percentile : PERCENTILES) {
+            Gauge.builder("grpc.server.call.latency", metrics, m -> m.getLatencyPercentile(percentile) / 1e6)
+                    .tags(tags).tag("percentile", String.valueOf(percentile)).baseUnit("seconds")
+                    .description("Call latency percentile").register(registry);
+        }
+        Gauge.builder("grpc.server.call.latency.max", metrics, m -> m.getMaxLatency() / 1e6)
+                .tags(tags).baseUnit("seconds").description("Highest call latency").register(registry);
+    }
+}
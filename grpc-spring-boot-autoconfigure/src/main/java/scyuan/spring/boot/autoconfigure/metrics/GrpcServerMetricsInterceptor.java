@@ -0,0 +1,89 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Records the {@link MethodMetrics} of every call of one method: it is counted in flight from the
+ * moment it is intercepted until it is closed by the service or cancelled. The metrics are bound
+ * with the method, so a call looks nothing up.
+ */
+public class GrpcServerMetricsInterceptor implements ServerInterceptor {
+
+    private final MethodMetrics metrics;
+
+    public GrpcServerMetricsInterceptor(MethodMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final CallRecord record = new CallRecord(metrics);
+        final ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(new MonitoringServerCall<>(call, record), headers);
+        } catch (RuntimeException e) {
+            record.complete(Status.Code.UNKNOWN);
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                record.complete(Status.Code.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    private static class MonitoringServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final CallRecord record;
+
+        MonitoringServerCall(ServerCall<ReqT, RespT> delegate, CallRecord record) {
+            super(delegate);
+            this.record = record;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            record.complete(status.getCode());
+            super.close(status, trailers);
+        }
+    }
+
+    /**
+     * The metrics of one call, apart from the generic call so that its field updater is not of a raw
+     * type.
+     */
+    private static final class CallRecord {
+
+        private static final AtomicIntegerFieldUpdater<CallRecord> COMPLETED =
+                AtomicIntegerFieldUpdater.newUpdater(CallRecord.class, "completed");
+
+        private final MethodMetrics metrics;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile int completed;
+
+        CallRecord(MethodMetrics metrics) {
+            this.metrics = metrics;
+            metrics.callStarted();
+        }
+
+        void complete(Status.Code code) {
+            if (COMPLETED.compareAndSet(this, 0, 1)) {
+                metrics.callCompleted(code, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import scyuan.spring.boot.autoconfigure.executor.GrpcServiceExecutors;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Saturation metrics of the dedicated service thread pools, tagged with the pool name.
+ */
+public class GrpcServiceExecutorMetrics implements GrpcMeterBinder {
+
+    private static final double[] PERCENTILES = {50.0, 99.0};
+
+    private final GrpcServiceExecutors serviceExecutors;
+
+    public GrpcServiceExecutorMetrics(GrpcServiceExecutors serviceExecutors) {
+        this.serviceExecutors = serviceExecutors;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (GrpcServiceExecutors.ServicePool pool : serviceExecutors.getPools()) {
+            final ThreadPoolExecutor executor = pool.getExecutor();
+            final Tags tags = Tags.of("executor", pool.getName());
+
+            Gauge.builder("grpc.server.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .tags(tags).description("Threads running a task").register(registry);
+            Gauge.builder("grpc.server.executor.pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                    .tags(tags).description("Threads in the pool").register(registry);
+            Gauge.builder("grpc.server.executor.pool.max", executor, ThreadPoolExecutor::getMaximumPoolSize)
+                    .tags(tags).description("Maximum threads of the pool").register(registry);
+            Gauge.builder("grpc.server.executor.queued", executor, e -> e.getQueue().size())
+                    .tags(tags).description("Tasks waiting for a thread").register(registry);
+            Gauge.builder("grpc.server.executor.queue.remaining", executor, e -> e.getQueue().remainingCapacity())
+                    .tags(tags).description("Tasks the queue can still accept").register(registry);
+            FunctionCounter.builder("grpc.server.executor.completed", executor, ThreadPoolExecutor::getCompletedTaskCount)
+                    .tags(tags).description("Tasks completed").register(registry);
+            FunctionCounter.builder("grpc.server.executor.rejected", pool, GrpcServiceExecutors.ServicePool::getRejectedCount)
+                    .tags(tags).description("Tasks rejected by the pool").register(registry);
+            final LatencyHistogram queueWait = pool.getQueueWait();
+            for (double percentile : PERCENTILES) {
+                Gauge.builder("grpc.server.executor.queue.wait", queueWait, h -> h.getPercentile(percentile) / 1e6)
+                        .tags(tags).tag("percentile", String.valueOf(percentile)).baseUnit("seconds")
+                        .description("Time calls waited for a thread, percentile").register(registry);
+            }
+            Gauge.builder("grpc.server.executor.queue.wait.max", queueWait, h -> h.getMax() / 1e6)
+                    .tags(tags).baseUnit("seconds").description("Longest time a call waited for a thread")
+                    .register(registry);
+        }
+    }
+}
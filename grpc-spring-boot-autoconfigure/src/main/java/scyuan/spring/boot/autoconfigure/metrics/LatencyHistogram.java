@@ -0,0 +1,48 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A latency distribution in microseconds. Recording goes to an HdrHistogram {@link Recorder}, whose
+ * writers never block; readers merge the recorded intervals into a cumulative histogram.
+ */
+public class LatencyHistogram {
+
+    private final Recorder recorder;
+
+    private final Histogram cumulative;
+
+    private Histogram interval;
+
+    public LatencyHistogram(int significantDigits) {
+        this.recorder = new Recorder(significantDigits);
+        this.cumulative = new Histogram(significantDigits);
+    }
+
+    public void record(long nanos) {
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Returns the value at the given percentile (0 to 100) of everything recorded, in microseconds.
+     */
+    public synchronized long getPercentile(double percentile) {
+        return merge().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Returns the highest value recorded, in microseconds.
+     */
+    public synchronized long getMax() {
+        return merge().getMaxValue();
+    }
+
+    private Histogram merge() {
+        interval = recorder.getIntervalHistogram(interval);
+        cumulative.add(interval);
+        return cumulative;
+    }
+}
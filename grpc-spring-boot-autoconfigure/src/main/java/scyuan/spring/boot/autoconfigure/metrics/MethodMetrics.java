@@ -0,0 +1,80 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts by status, in-flight calls and latency distribution of one gRPC method of a server. Recording is
+ * lock-free: counters are {@link LongAdder}s and latencies go to a {@link LatencyHistogram}.
+ */
+public class MethodMetrics {
+
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    private final String server;
+
+    private final String fullMethodName;
+
+    private final LongAdder started = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder[] completed = new LongAdder[CODES.length];
+
+    private final LatencyHistogram latency;
+
+    MethodMetrics(String server, String fullMethodName, int significantDigits) {
+        this.server = server;
+        this.fullMethodName = fullMethodName;
+        for (int i = 0; i < completed.length; i++) {
+            completed[i] = new LongAdder();
+        }
+        this.latency = new LatencyHistogram(significantDigits);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+
+    void callStarted() {
+        started.increment();
+        inFlight.increment();
+    }
+
+    void callCompleted(Status.Code code, long latencyNanos) {
+        inFlight.decrement();
+        completed[code.ordinal()].increment();
+        latency.record(latencyNanos);
+    }
+
+    public long getStartedCount() {
+        return started.sum();
+    }
+
+    public long getInFlightCount() {
+        return inFlight.sum();
+    }
+
+    public long getCompletedCount(Status.Code code) {
+        return completed[code.ordinal()].sum();
+    }
+
+    /**
+     * Returns the latency at the given percentile (0 to 100) of all the completed calls, in microseconds.
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latency.getPercentile(percentile);
+    }
+
+    /**
+     * Returns the highest latency of all the completed calls, in microseconds.
+     */
+    public long getMaxLatency() {
+        return latency.getMax();
+    }
+}
@@ -0,0 +1,39 @@
+package scyuan.spring.boot.autoconfigure.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCache;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCacheRegistry;
+
+/**
+ * Lookups, hit ratio, evictions and size of the response caches, tagged with the server and method.
+ */
+public class ResponseCacheMetrics implements GrpcMeterBinder {
+
+    private final ResponseCacheRegistry cacheRegistry;
+
+    public ResponseCacheMetrics(ResponseCacheRegistry cacheRegistry) {
+        this.cacheRegistry = cacheRegistry;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cacheRegistry.addListener(cache -> {
+            final Tags tags = Tags.of("server", cache.getServer(), "method", cache.getMethod());
+            FunctionCounter.builder("grpc.server.cache.gets", cache, ResponseCache::getHitCount)
+                    .tags(tags).tag("result", "hit").description("Calls answered from the cache").register(registry);
+            FunctionCounter.builder("grpc.server.cache.gets", cache, ResponseCache::getMissCount)
+                    .tags(tags).tag("result", "miss").description("Calls that missed the cache").register(registry);
+            Gauge.builder("grpc.server.cache.hit.ratio", cache, ResponseCache::getHitRatio)
+                    .tags(tags).description("Ratio of the calls answered from the cache").register(registry);
+            FunctionCounter.builder("grpc.server.cache.evictions", cache, ResponseCache::getEvictionCount)
+                    .tags(tags).description("Responses evicted by size or expiry").register(registry);
+            Gauge.builder("grpc.server.cache.size", cache, ResponseCache::getSize)
+                    .tags(tags).description("Responses cached").register(registry);
+            Gauge.builder("grpc.server.cache.bytes", cache, ResponseCache::getBytes)
+                    .tags(tags).description("Bytes of the requests and responses cached").register(registry);
+        });
+    }
+}
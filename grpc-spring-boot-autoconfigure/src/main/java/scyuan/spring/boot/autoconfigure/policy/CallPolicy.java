@@ -0,0 +1,96 @@
+package scyuan.spring.boot.autoconfigure.policy;
+
+/**
+ * The policy of one method, resolved from the method policies of its server when the services are
+ * bound. Zero and null settings are not enforced.
+ */
+public final class CallPolicy {
+
+    static final CallPolicy NONE = new CallPolicy(0, 0, 0, null, 0, 0, false);
+
+    private final int maxInboundMessageSize;
+
+    private final int maxOutboundMessageSize;
+
+    private final long deadlineMillis;
+
+    private final String compression;
+
+    private final long cacheTtlSeconds;
+
+    private final long cacheMaxBytes;
+
+    private final boolean preSerialized;
+
+    CallPolicy(int maxInboundMessageSize, int maxOutboundMessageSize, long deadlineMillis, String compression,
+               long cacheTtlSeconds, long cacheMaxBytes, boolean preSerialized) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+        this.maxOutboundMessageSize = maxOutboundMessageSize;
+        this.deadlineMillis = deadlineMillis;
+        this.compression = compression;
+        this.cacheTtlSeconds = cacheTtlSeconds;
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.preSerialized = preSerialized;
+    }
+
+    /**
+     * Maximum size of the requests when it is lower than the one the transport enforces, otherwise 0.
+     */
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    public int getMaxOutboundMessageSize() {
+        return maxOutboundMessageSize;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Message encoding of the responses, null to leave them uncompressed.
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    public long getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    /**
+     * Whether the responses of the method are cached.
+     */
+    public boolean isCached() {
+        return cacheTtlSeconds > 0;
+    }
+
+    /**
+     * Whether the method is bound with the marshallers of
+     * {@link scyuan.spring.boot.autoconfigure.marshal.PreSerialized} messages.
+     */
+    public boolean isPreSerialized() {
+        return preSerialized;
+    }
+
+    /**
+     * Whether the calls need no interception by {@link MethodPolicyInterceptor}, which leaves the
+     * cache to the response caches.
+     */
+    public boolean isNone() {
+        return maxInboundMessageSize == 0 && maxOutboundMessageSize == 0 && deadlineMillis == 0 && compression == null;
+    }
+
+    @Override
+    public String toString() {
+        return "max inbound " + maxInboundMessageSize + ", max outbound " + maxOutboundMessageSize
+                + ", deadline " + deadlineMillis + " ms, compression " + compression
+                + (isCached() ? ", cached " + cacheTtlSeconds + " s up to " + cacheMaxBytes + " bytes" : "")
+                + (preSerialized ? ", pre-serialized" : "");
+    }
+}
@@ -0,0 +1,152 @@
+package scyuan.spring.boot.autoconfigure.policy;
+
+import io.grpc.Codec;
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the {@link CallPolicy} of the methods of a server from its method policies: a method
+ * takes every setting from the most specific pattern that sets it, its full name first, then the
+ * longest matching prefix, "*" last.
+ */
+public class MethodPolicies {
+
+    /** The maximum message size gRPC enforces by default. */
+    private static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = 4 * 1024 * 1024;
+
+    /** Bound of a response cache whose max bytes are not set. */
+    private static final long DEFAULT_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+
+    /** Message encoding of uncompressed messages. */
+    private static final String IDENTITY = Codec.Identity.NONE.getMessageEncoding();
+
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    private final int serverMaxInboundMessageSize;
+
+    private final int transportMaxInboundMessageSize;
+
+    private final Set<String> encodings = new HashSet<>();
+
+    /**
+     * @param codecs the codecs the server can compress with besides gzip
+     */
+    public MethodPolicies(GrpcServerDefinition definition, Collection<? extends Codec> codecs) {
+        int transportMax = definition.getMaxInboundMessageSize() > 0
+                ? definition.getMaxInboundMessageSize() : DEFAULT_MAX_INBOUND_MESSAGE_SIZE;
+        this.serverMaxInboundMessageSize = transportMax;
+        for (Map.Entry<String, GrpcServerDefinition.MethodPolicy> entry : definition.getMethods().entrySet()) {
+            patterns.add(new Pattern(entry.getKey(), entry.getValue()));
+            if (entry.getValue().getMaxInboundMessageSize() != null) {
+                transportMax = Math.max(transportMax, entry.getValue().getMaxInboundMessageSize());
+            }
+        }
+        this.transportMaxInboundMessageSize = transportMax;
+        patterns.sort((a, b) -> a.exact != b.exact ? (a.exact ? -1 : 1) : b.prefix.length() - a.prefix.length());
+
+        encodings.add(new Codec.Gzip().getMessageEncoding());
+        for (Codec codec : codecs) {
+            encodings.add(codec.getMessageEncoding());
+        }
+    }
+
+    /**
+     * Maximum message size the transport has to accept, the largest of the server and methods ones.
+     */
+    public int getTransportMaxInboundMessageSize() {
+        return transportMaxInboundMessageSize;
+    }
+
+    /**
+     * Whether any method may have its responses cached.
+     */
+    public boolean hasCaches() {
+        for (Pattern pattern : patterns) {
+            if (pattern.policy.getCacheTtlSeconds() != null && pattern.policy.getCacheTtlSeconds() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public CallPolicy resolve(String fullMethodName) {
+        Integer maxInbound = null;
+        Integer maxOutbound = null;
+        Long deadlineMillis = null;
+        String compression = null;
+        Long cacheTtlSeconds = null;
+        Long cacheMaxBytes = null;
+        Boolean preSerialized = null;
+        for (Pattern pattern : patterns) {
+            if (!pattern.matches(fullMethodName)) {
+                continue;
+            }
+            final GrpcServerDefinition.MethodPolicy policy = pattern.policy;
+            if (maxInbound == null) {
+                maxInbound = policy.getMaxInboundMessageSize();
+            }
+            if (maxOutbound == null) {
+                maxOutbound = policy.getMaxOutboundMessageSize();
+            }
+            if (deadlineMillis == null) {
+                deadlineMillis = policy.getDeadlineMillis();
+            }
+            if (compression == null) {
+                compression = policy.getCompression();
+            }
+            if (cacheTtlSeconds == null) {
+                cacheTtlSeconds = policy.getCacheTtlSeconds();
+            }
+            if (cacheMaxBytes == null) {
+                cacheMaxBytes = policy.getCacheMaxBytes();
+            }
+            if (preSerialized == null) {
+                preSerialized = policy.getPreSerialized();
+            }
+        }
+        if (compression != null && !compression.equals(IDENTITY) && !encodings.contains(compression)) {
+            throw new IllegalArgumentException("Unknown compression '" + compression + "' of method '" + fullMethodName
+                    + "', neither gzip, identity nor the message encoding of a Codec bean");
+        }
+        final int inbound = maxInbound != null && maxInbound > 0 ? maxInbound : serverMaxInboundMessageSize;
+        return new CallPolicy(
+                // the transport already enforces its own limit
+                inbound < transportMaxInboundMessageSize ? inbound : 0,
+                maxOutbound != null ? Math.max(0, maxOutbound) : 0,
+                deadlineMillis != null ? Math.max(0, deadlineMillis) : 0,
+                compression == null || compression.equals(IDENTITY) ? null : compression,
+                cacheTtlSeconds != null ? Math.max(0, cacheTtlSeconds) : 0,
+                cacheMaxBytes != null && cacheMaxBytes > 0 ? cacheMaxBytes : DEFAULT_CACHE_MAX_BYTES,
+                preSerialized != null && preSerialized);
+    }
+
+    private static final class Pattern {
+
+        final String prefix;
+
+        final boolean exact;
+
+        final GrpcServerDefinition.MethodPolicy policy;
+
+        Pattern(String pattern, GrpcServerDefinition.MethodPolicy policy) {
+            final int star = pattern.indexOf('*');
+            if (star >= 0 && star != pattern.length() - 1) {
+                throw new IllegalArgumentException("Invalid method pattern '" + pattern
+                        + "', '*' is only allowed at the end");
+            }
+            this.exact = star < 0;
+            this.prefix = exact ? pattern : pattern.substring(0, star);
+            this.policy = policy;
+        }
+
+        boolean matches(String fullMethodName) {
+            return exact ? fullMethodName.equals(prefix) : fullMethodName.startsWith(prefix);
+        }
+    }
+}
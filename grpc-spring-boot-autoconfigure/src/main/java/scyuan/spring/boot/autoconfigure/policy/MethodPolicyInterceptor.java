@@ -0,0 +1,278 @@
+package scyuan.spring.boot.autoconfigure.policy;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Enforces the {@link CallPolicy} of one method. {@link #apply} binds one to every method of a
+ * service that has a policy, so the calls never look their policy up:
+ * <ul>
+ *     <li>requests over the max inbound size close the call with RESOURCE_EXHAUSTED, the
+ *     transport limit being raised to the largest of them;</li>
+ *     <li>responses over the max outbound size close the call with RESOURCE_EXHAUSTED;</li>
+ *     <li>the deadline cancels the context of the call and closes it with DEADLINE_EXCEEDED;</li>
+ *     <li>the compression is set on the call before the service sends anything.</li>
+ * </ul>
+ * Only protobuf messages, serialized or not, are measured. Methods without a policy are left as
+ * they are.
+ */
+public class MethodPolicyInterceptor implements ServerInterceptor {
+
+    private final String fullMethodName;
+
+    private final CallPolicy policy;
+
+    public MethodPolicyInterceptor(String fullMethodName, CallPolicy policy) {
+        this.fullMethodName = fullMethodName;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the service with the policies of its methods applied, or the service itself when none
+     * of its methods has one.
+     */
+    public static ServerServiceDefinition apply(ServerServiceDefinition service, MethodPolicies policies) {
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.getServiceDescriptor().getName());
+        boolean applied = false;
+        for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+            final CallPolicy policy = policies.resolve(method.getMethodDescriptor().getFullMethodName());
+            if (policy.isNone()) {
+                builder.addMethod(method);
+            } else {
+                builder.addMethod(apply(method, policy));
+                applied = true;
+            }
+        }
+        return applied ? builder.build() : service;
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> apply(ServerMethodDefinition<ReqT, RespT> method,
+                                                                           CallPolicy policy) {
+        final ServerCallHandler<ReqT, RespT> handler = method.getServerCallHandler();
+        final MethodPolicyInterceptor interceptor =
+                new MethodPolicyInterceptor(method.getMethodDescriptor().getFullMethodName(), policy);
+        return method.withServerCallHandler((call, headers) -> interceptor.interceptCall(call, headers, handler));
+    }
+
+    public CallPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (policy.getCompression() != null) {
+            call.setCompression(policy.getCompression());
+        }
+        if (policy.getMaxInboundMessageSize() == 0 && policy.getMaxOutboundMessageSize() == 0
+                && policy.getDeadlineMillis() == 0) {
+            return next.startCall(call, headers);
+        }
+
+        final PolicyServerCall<ReqT, RespT> policyCall = new PolicyServerCall<>(call);
+        final Context.CancellableContext context = deadlineContext(policyCall);
+        final ServerCall.Listener<ReqT> listener = context != null
+                ? Contexts.interceptCall(context, policyCall, headers, next)
+                : next.startCall(policyCall, headers);
+        return new PolicyListener<>(listener, policyCall, context);
+    }
+
+    /**
+     * Returns the context that cancels the call on the deadline of the policy, or null when there
+     * is none or the client set an earlier one.
+     */
+    private Context.CancellableContext deadlineContext(PolicyServerCall<?, ?> policyCall) {
+        final long deadlineNanos = TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+        final Context current = Context.current();
+        if (deadlineNanos == 0 || (current.getDeadline() != null
+                && current.getDeadline().timeRemaining(TimeUnit.NANOSECONDS) <= deadlineNanos)) {
+            return null;
+        }
+        final Context.CancellableContext context = current.withDeadlineAfter(deadlineNanos, TimeUnit.NANOSECONDS,
+                DeadlineTimer.SCHEDULER);
+        context.addListener(cancelled -> {
+            if (cancelled.cancellationCause() instanceof TimeoutException) {
+                policyCall.closeOnPolicy(Status.DEADLINE_EXCEEDED.withDescription("Server deadline of "
+                        + policy.getDeadlineMillis() + " ms of " + fullMethodName + " exceeded"));
+            }
+        }, Runnable::run);
+        return context;
+    }
+
+    /**
+     * Returns the serialized size of a protobuf message, or of a pre-serialized one, -1 for other
+     * messages.
+     */
+    private static int sizeOf(Object message) {
+        if (message instanceof MessageLite) {
+            return ((MessageLite) message).getSerializedSize();
+        }
+        if (message instanceof ByteString) {
+            return ((ByteString) message).size();
+        }
+        if (message instanceof ByteBuffer) {
+            return ((ByteBuffer) message).remaining();
+        }
+        return -1;
+    }
+
+    /**
+     * Rejects the requests over the max inbound size, and stops delivering the requests once the
+     * policy closed the call.
+     */
+    private class PolicyListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final PolicyServerCall<ReqT, ?> policyCall;
+
+        private final Context.CancellableContext context;
+
+        PolicyListener(ServerCall.Listener<ReqT> delegate, PolicyServerCall<ReqT, ?> policyCall,
+                       Context.CancellableContext context) {
+            super(delegate);
+            this.policyCall = policyCall;
+            this.context = context;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            if (policyCall.isClosedOnPolicy()) {
+                return;
+            }
+            final int maxInbound = policy.getMaxInboundMessageSize();
+            if (maxInbound > 0 && message instanceof MessageLite) {
+                final int size = ((MessageLite) message).getSerializedSize();
+                if (size > maxInbound) {
+                    policyCall.closeOnPolicy(Status.RESOURCE_EXHAUSTED.withDescription("Request message of " + size
+                            + " bytes of " + fullMethodName + " is larger than the maximum of " + maxInbound));
+                    return;
+                }
+            }
+            super.onMessage(message);
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (!policyCall.isClosedOnPolicy()) {
+                super.onHalfClose();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if (!policyCall.isClosedOnPolicy()) {
+                super.onReady();
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            try {
+                super.onCancel();
+            } finally {
+                cancelContext();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                super.onComplete();
+            } finally {
+                cancelContext();
+            }
+        }
+
+        private void cancelContext() {
+            if (context != null) {
+                context.cancel(null);
+            }
+        }
+    }
+
+    /**
+     * Closes the call when the policy is breached, which may happen on the deadline timer while the
+     * service sends, hence the lock. The service calls that follow are dropped.
+     */
+    private class PolicyServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        /** Guarded by this. */
+        private boolean closed;
+
+        private volatile boolean closedOnPolicy;
+
+        PolicyServerCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public synchronized void sendHeaders(Metadata headers) {
+            if (!closed) {
+                super.sendHeaders(headers);
+            }
+        }
+
+        @Override
+        public synchronized void sendMessage(RespT message) {
+            if (closed) {
+                return;
+            }
+            final int maxOutbound = policy.getMaxOutboundMessageSize();
+            if (maxOutbound > 0) {
+                final int size = sizeOf(message);
+                if (size > maxOutbound) {
+                    closeOnPolicy(Status.RESOURCE_EXHAUSTED.withDescription("Response message of " + size
+                            + " bytes of " + fullMethodName + " is larger than the maximum of " + maxOutbound));
+                    return;
+                }
+            }
+            super.sendMessage(message);
+        }
+
+        @Override
+        public synchronized void close(Status status, Metadata trailers) {
+            if (!closed) {
+                closed = true;
+                super.close(status, trailers);
+            }
+        }
+
+        synchronized void closeOnPolicy(Status status) {
+            if (!closed) {
+                closedOnPolicy = true;
+                close(status, new Metadata());
+            }
+        }
+
+        boolean isClosedOnPolicy() {
+            return closedOnPolicy;
+        }
+    }
+
+    /**
+     * Timer of the server deadlines, shared by all servers like the gRPC one.
+     */
+    private static final class DeadlineTimer {
+
+        static final ScheduledExecutorService SCHEDULER =
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("grpc-server-deadline", true));
+    }
+}
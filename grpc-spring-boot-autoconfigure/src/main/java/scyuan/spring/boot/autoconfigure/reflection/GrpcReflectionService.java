@@ -0,0 +1,197 @@
+package scyuan.spring.boot.autoconfigure.reflection;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import io.grpc.BindableService;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import scyuan.spring.boot.autoconfigure.registry.RegisteredMethod;
+import scyuan.spring.boot.autoconfigure.registry.RegisteredService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The grpc.reflection.v1alpha.ServerReflection service of one server, which lets tools like grpcurl
+ * list its services and fetch their proto files without having them.
+ * <p>
+ * The files come from the {@link scyuan.spring.boot.autoconfigure.registry.GrpcServiceRegistry}, and
+ * the symbols, files and extensions are indexed once, when the server starts, with every answer
+ * already serialized.
+ */
+public class GrpcReflectionService implements BindableService {
+
+    private final List<String> serviceNames;
+
+    private final Map<String, Descriptors.FileDescriptor> filesByName = new HashMap<>();
+
+    private final Map<String, Descriptors.FileDescriptor> filesBySymbol = new HashMap<>();
+
+    private final Map<String, TreeMap<Integer, Descriptors.FileDescriptor>> extensions = new HashMap<>();
+
+    private final Map<Descriptors.FileDescriptor, List<ByteString>> encodedFiles = new HashMap<>();
+
+    /**
+     * @param services        the services of the server
+     * @param otherServices   names of the services of the server that are not registered, like the
+     *                        health one, which are listed without a file
+     */
+    public GrpcReflectionService(Collection<RegisteredService> services, Collection<String> otherServices) {
+        final Set<String> names = new LinkedHashSet<>();
+        for (RegisteredService service : services) {
+            names.add(service.getName());
+            if (service.getFile() != null) {
+                addFile(service.getFile());
+            }
+            for (RegisteredMethod method : service.getMethods()) {
+                if (method.getInputType() != null) {
+                    addFile(method.getInputType().getFile());
+                }
+                if (method.getOutputType() != null) {
+                    addFile(method.getOutputType().getFile());
+                }
+            }
+        }
+        names.addAll(otherServices);
+        names.add(ReflectionProtocol.SERVICE_NAME);
+        this.serviceNames = Collections.unmodifiableList(new ArrayList<>(names));
+    }
+
+    public List<String> getServiceNames() {
+        return serviceNames;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(new ServiceDescriptor(ReflectionProtocol.SERVICE_NAME,
+                ReflectionProtocol.SERVER_REFLECTION_INFO))
+                .addMethod(ReflectionProtocol.SERVER_REFLECTION_INFO, ServerCalls.asyncBidiStreamingCall(this::serverReflectionInfo))
+                .build();
+    }
+
+    private StreamObserver<ReflectionRequest> serverReflectionInfo(final StreamObserver<ReflectionResponse> responseObserver) {
+        return new StreamObserver<ReflectionRequest>() {
+            @Override
+            public void onNext(ReflectionRequest request) {
+                responseObserver.onNext(answer(request));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // cancelled by the client
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    ReflectionResponse answer(ReflectionRequest request) {
+        switch (request.getKind()) {
+            case LIST_SERVICES:
+                return ReflectionResponse.services(request, serviceNames);
+            case FILE_BY_FILENAME:
+                return fileResponse(request, filesByName.get(request.getArgument()));
+            case FILE_CONTAINING_SYMBOL:
+                return fileResponse(request, filesBySymbol.get(request.getArgument()));
+            case FILE_CONTAINING_EXTENSION: {
+                final TreeMap<Integer, Descriptors.FileDescriptor> numbers = extensions.get(request.getArgument());
+                return fileResponse(request, numbers == null ? null : numbers.get(request.getExtensionNumber()));
+            }
+            case ALL_EXTENSION_NUMBERS_OF_TYPE: {
+                if (!filesBySymbol.containsKey(request.getArgument())) {
+                    return ReflectionResponse.error(request, Status.Code.NOT_FOUND, "Type not found.");
+                }
+                final TreeMap<Integer, Descriptors.FileDescriptor> numbers = extensions.get(request.getArgument());
+                return ReflectionResponse.extensionNumbers(request, request.getArgument(), numbers == null
+                        ? Collections.<Integer>emptyList() : new ArrayList<>(numbers.keySet()));
+            }
+            default:
+                return ReflectionResponse.error(request, Status.Code.INVALID_ARGUMENT, "Invalid message_request.");
+        }
+    }
+
+    private ReflectionResponse fileResponse(ReflectionRequest request, Descriptors.FileDescriptor file) {
+        if (file == null) {
+            return ReflectionResponse.error(request, Status.Code.NOT_FOUND, request.getKind() + " not found.");
+        }
+        return ReflectionResponse.fileDescriptors(request, encodedFiles.get(file));
+    }
+
+    /**
+     * Indexes the file and its dependencies, and serializes it followed by them.
+     */
+    private void addFile(Descriptors.FileDescriptor file) {
+        if (encodedFiles.containsKey(file)) {
+            return;
+        }
+        final Set<Descriptors.FileDescriptor> closure = new LinkedHashSet<>();
+        collectDependencies(file, closure);
+        final List<ByteString> encoded = new ArrayList<>(closure.size());
+        for (Descriptors.FileDescriptor dependency : closure) {
+            encoded.add(dependency.toProto().toByteString());
+        }
+        encodedFiles.put(file, Collections.unmodifiableList(encoded));
+
+        filesByName.put(file.getName(), file);
+        for (Descriptors.ServiceDescriptor service : file.getServices()) {
+            filesBySymbol.put(service.getFullName(), file);
+            for (Descriptors.MethodDescriptor method : service.getMethods()) {
+                filesBySymbol.put(method.getFullName(), file);
+            }
+        }
+        for (Descriptors.Descriptor type : file.getMessageTypes()) {
+            addType(file, type);
+        }
+        for (Descriptors.EnumDescriptor type : file.getEnumTypes()) {
+            filesBySymbol.put(type.getFullName(), file);
+        }
+        addExtensions(file, file.getExtensions());
+        for (Descriptors.FileDescriptor dependency : file.getDependencies()) {
+            addFile(dependency);
+        }
+    }
+
+    private void addType(Descriptors.FileDescriptor file, Descriptors.Descriptor type) {
+        filesBySymbol.put(type.getFullName(), file);
+        for (Descriptors.Descriptor nested : type.getNestedTypes()) {
+            addType(file, nested);
+        }
+        for (Descriptors.EnumDescriptor nested : type.getEnumTypes()) {
+            filesBySymbol.put(nested.getFullName(), file);
+        }
+        addExtensions(file, type.getExtensions());
+    }
+
+    private void addExtensions(Descriptors.FileDescriptor file, List<Descriptors.FieldDescriptor> fields) {
+        for (Descriptors.FieldDescriptor extension : fields) {
+            filesBySymbol.put(extension.getFullName(), file);
+            TreeMap<Integer, Descriptors.FileDescriptor> numbers = extensions.get(extension.getContainingType().getFullName());
+            if (numbers == null) {
+                numbers = new TreeMap<>();
+                extensions.put(extension.getContainingType().getFullName(), numbers);
+            }
+            numbers.put(extension.getNumber(), file);
+        }
+    }
+
+    private static void collectDependencies(Descriptors.FileDescriptor file, Set<Descriptors.FileDescriptor> closure) {
+        if (closure.add(file)) {
+            for (Descriptors.FileDescriptor dependency : file.getDependencies()) {
+                collectDependencies(dependency, closure);
+            }
+        }
+    }
+}
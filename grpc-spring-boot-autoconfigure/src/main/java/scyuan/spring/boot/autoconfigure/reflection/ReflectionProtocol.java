@@ -0,0 +1,251 @@
+package scyuan.spring.boot.autoconfigure.reflection;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The grpc.reflection.v1alpha.ServerReflection service. Its messages are encoded by hand, like the
+ * health ones, as grpc 1.0 ships neither the reflection service nor its generated classes.
+ */
+public final class ReflectionProtocol {
+
+    public static final String SERVICE_NAME = "grpc.reflection.v1alpha.ServerReflection";
+
+    public static final MethodDescriptor<ReflectionRequest, ReflectionResponse> SERVER_REFLECTION_INFO =
+            MethodDescriptor.create(MethodDescriptor.MethodType.BIDI_STREAMING,
+                    MethodDescriptor.generateFullMethodName(SERVICE_NAME, "ServerReflectionInfo"),
+                    new RequestMarshaller(), new ResponseMarshaller());
+
+    /** Tag of ExtensionRequest field 1, length-delimited. */
+    private static final int CONTAINING_TYPE_TAG = 10;
+
+    /** Tag of ExtensionRequest field 2, varint. */
+    private static final int EXTENSION_NUMBER_TAG = 16;
+
+    private ReflectionProtocol() {
+    }
+
+    private interface Writer {
+        void writeTo(CodedOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(Writer writer) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        try {
+            writer.writeTo(output);
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRequest(final ReflectionRequest request) {
+        return encode(output -> {
+            if (!request.getHost().isEmpty()) {
+                output.writeString(1, request.getHost());
+            }
+            switch (request.getKind()) {
+                case NOT_SET:
+                    break;
+                case FILE_CONTAINING_EXTENSION:
+                    output.writeByteArray(5, encode(extension -> {
+                        extension.writeString(1, request.getArgument());
+                        extension.writeInt32(2, request.getExtensionNumber());
+                    }));
+                    break;
+                default:
+                    output.writeString(request.getKind().getFieldNumber(), request.getArgument());
+                    break;
+            }
+        });
+    }
+
+    private static ReflectionRequest parseRequest(CodedInputStream input) throws IOException {
+        String host = "";
+        ReflectionRequest.Kind kind = ReflectionRequest.Kind.NOT_SET;
+        String argument = "";
+        int extensionNumber = 0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            final int field = WireFormat.getTagFieldNumber(tag);
+            if (field == 1 && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                host = input.readStringRequireUtf8();
+            } else if (field == 5 && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                kind = ReflectionRequest.Kind.FILE_CONTAINING_EXTENSION;
+                final CodedInputStream extension = input.readBytes().newCodedInput();
+                for (int extensionTag = extension.readTag(); extensionTag != 0; extensionTag = extension.readTag()) {
+                    if (extensionTag == CONTAINING_TYPE_TAG) {
+                        argument = extension.readStringRequireUtf8();
+                    } else if (extensionTag == EXTENSION_NUMBER_TAG) {
+                        extensionNumber = extension.readInt32();
+                    } else if (!extension.skipField(extensionTag)) {
+                        break;
+                    }
+                }
+            } else if (field >= 3 && field <= 7 && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                kind = ReflectionRequest.Kind.forFieldNumber(field);
+                argument = input.readStringRequireUtf8();
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        return new ReflectionRequest(host, kind, argument, extensionNumber);
+    }
+
+    /**
+     * ServerReflectionRequest.
+     */
+    private static class RequestMarshaller implements MethodDescriptor.Marshaller<ReflectionRequest> {
+
+        @Override
+        public InputStream stream(ReflectionRequest request) {
+            return new ByteArrayInputStream(encodeRequest(request));
+        }
+
+        @Override
+        public ReflectionRequest parse(InputStream stream) {
+            try {
+                return parseRequest(CodedInputStream.newInstance(stream));
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid reflection request").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    /**
+     * ServerReflectionResponse.
+     */
+    private static class ResponseMarshaller implements MethodDescriptor.Marshaller<ReflectionResponse> {
+
+        @Override
+        public InputStream stream(final ReflectionResponse response) {
+            return new ByteArrayInputStream(encode(output -> {
+                if (!response.getValidHost().isEmpty()) {
+                    output.writeString(1, response.getValidHost());
+                }
+                output.writeByteArray(2, encodeRequest(response.getOriginalRequest()));
+                switch (response.getKind()) {
+                    case FILE_DESCRIPTOR:
+                        output.writeByteArray(4, encode(files -> {
+                            for (ByteString file : response.getFileDescriptors()) {
+                                files.writeBytes(1, file);
+                            }
+                        }));
+                        break;
+                    case ALL_EXTENSION_NUMBERS:
+                        output.writeByteArray(5, encode(numbers -> {
+                            numbers.writeString(1, response.getBaseTypeName());
+                            for (int number : response.getExtensionNumbers()) {
+                                numbers.writeInt32(2, number);
+                            }
+                        }));
+                        break;
+                    case LIST_SERVICES:
+                        output.writeByteArray(6, encode(services -> {
+                            for (final String service : response.getServices()) {
+                                services.writeByteArray(1, encode(entry -> entry.writeString(1, service)));
+                            }
+                        }));
+                        break;
+                    case ERROR:
+                        output.writeByteArray(7, encode(error -> {
+                            error.writeInt32(1, response.getErrorCode());
+                            error.writeString(2, response.getErrorMessage());
+                        }));
+                        break;
+                    default:
+                        break;
+                }
+            }));
+        }
+
+        @Override
+        public ReflectionResponse parse(InputStream stream) {
+            try {
+                return parse(CodedInputStream.newInstance(stream));
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid reflection response").withCause(e).asRuntimeException();
+            }
+        }
+
+        private static ReflectionResponse parse(CodedInputStream input) throws IOException {
+            String validHost = "";
+            ReflectionRequest originalRequest = new ReflectionRequest("", ReflectionRequest.Kind.NOT_SET, "", 0);
+            ReflectionResponse.Kind kind = ReflectionResponse.Kind.NOT_SET;
+            final List<ByteString> files = new ArrayList<>();
+            String baseTypeName = "";
+            final List<Integer> numbers = new ArrayList<>();
+            final List<String> services = new ArrayList<>();
+            int errorCode = 0;
+            String errorMessage = "";
+            for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+                final int field = WireFormat.getTagFieldNumber(tag);
+                if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED || field == 3 || field > 7) {
+                    if (!input.skipField(tag)) {
+                        break;
+                    }
+                    continue;
+                }
+                if (field == 1) {
+                    validHost = input.readStringRequireUtf8();
+                    continue;
+                }
+                final CodedInputStream nested = input.readBytes().newCodedInput();
+                if (field == 2) {
+                    originalRequest = parseRequest(nested);
+                    continue;
+                }
+                kind = ReflectionResponse.Kind.forFieldNumber(field);
+                for (int nestedTag = nested.readTag(); nestedTag != 0; nestedTag = nested.readTag()) {
+                    final int nestedField = WireFormat.getTagFieldNumber(nestedTag);
+                    if (kind == ReflectionResponse.Kind.FILE_DESCRIPTOR && nestedField == 1) {
+                        files.add(nested.readBytes());
+                    } else if (kind == ReflectionResponse.Kind.ALL_EXTENSION_NUMBERS && nestedField == 1) {
+                        baseTypeName = nested.readStringRequireUtf8();
+                    } else if (kind == ReflectionResponse.Kind.ALL_EXTENSION_NUMBERS && nestedField == 2) {
+                        if (WireFormat.getTagWireType(nestedTag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                            final int limit = nested.pushLimit(nested.readRawVarint32());
+                            while (nested.getBytesUntilLimit() > 0) {
+                                numbers.add(nested.readInt32());
+                            }
+                            nested.popLimit(limit);
+                        } else {
+                            numbers.add(nested.readInt32());
+                        }
+                    } else if (kind == ReflectionResponse.Kind.LIST_SERVICES && nestedField == 1) {
+                        final CodedInputStream service = nested.readBytes().newCodedInput();
+                        for (int serviceTag = service.readTag(); serviceTag != 0; serviceTag = service.readTag()) {
+                            if (WireFormat.getTagFieldNumber(serviceTag) == 1) {
+                                services.add(service.readStringRequireUtf8());
+                            } else if (!service.skipField(serviceTag)) {
+                                break;
+                            }
+                        }
+                    } else if (kind == ReflectionResponse.Kind.ERROR && nestedField == 1) {
+                        errorCode = nested.readInt32();
+                    } else if (kind == ReflectionResponse.Kind.ERROR && nestedField == 2) {
+                        errorMessage = nested.readStringRequireUtf8();
+                    } else if (!nested.skipField(nestedTag)) {
+                        break;
+                    }
+                }
+            }
+            return new ReflectionResponse(validHost, originalRequest, kind, Collections.unmodifiableList(files),
+                    baseTypeName, Collections.unmodifiableList(numbers), Collections.unmodifiableList(services),
+                    errorCode, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package scyuan.spring.boot.autoconfigure.reflection;
+
+/**
+ * A grpc.reflection.v1alpha.ServerReflectionRequest.
+ */
+public final class ReflectionRequest {
+
+    /**
+     * The message_request cases, by field number.
+     */
+    public enum Kind {
+        NOT_SET(0),
+        FILE_BY_FILENAME(3),
+        FILE_CONTAINING_SYMBOL(4),
+        FILE_CONTAINING_EXTENSION(5),
+        ALL_EXTENSION_NUMBERS_OF_TYPE(6),
+        LIST_SERVICES(7);
+
+        private final int fieldNumber;
+
+        Kind(int fieldNumber) {
+            this.fieldNumber = fieldNumber;
+        }
+
+        public int getFieldNumber() {
+            return fieldNumber;
+        }
+
+        static Kind forFieldNumber(int fieldNumber) {
+            for (Kind kind : values()) {
+                if (kind.fieldNumber == fieldNumber) {
+                    return kind;
+                }
+            }
+            return NOT_SET;
+        }
+    }
+
+    private final String host;
+
+    private final Kind kind;
+
+    private final String argument;
+
+    private final int extensionNumber;
+
+    ReflectionRequest(String host, Kind kind, String argument, int extensionNumber) {
+        this.host = host;
+        this.kind = kind;
+        this.argument = argument;
+        this.extensionNumber = extensionNumber;
+    }
+
+    public static ReflectionRequest listServices() {
+        return new ReflectionRequest("", Kind.LIST_SERVICES, "*", 0);
+    }
+
+    public static ReflectionRequest fileByFilename(String filename) {
+        return new ReflectionRequest("", Kind.FILE_BY_FILENAME, filename, 0);
+    }
+
+    public static ReflectionRequest fileContainingSymbol(String symbol) {
+        return new ReflectionRequest("", Kind.FILE_CONTAINING_SYMBOL, symbol, 0);
+    }
+
+    public static ReflectionRequest fileContainingExtension(String containingType, int extensionNumber) {
+        return new ReflectionRequest("", Kind.FILE_CONTAINING_EXTENSION, containingType, extensionNumber);
+    }
+
+    public static ReflectionRequest allExtensionNumbersOfType(String type) {
+        return new ReflectionRequest("", Kind.ALL_EXTENSION_NUMBERS_OF_TYPE, type, 0);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The file name, the symbol, the type or the list_services content, depending on the kind.
+     */
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * The extension number of a FILE_CONTAINING_EXTENSION request.
+     */
+    public int getExtensionNumber() {
+        return extensionNumber;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + argument + (kind == Kind.FILE_CONTAINING_EXTENSION ? " " + extensionNumber : "");
+    }
+}
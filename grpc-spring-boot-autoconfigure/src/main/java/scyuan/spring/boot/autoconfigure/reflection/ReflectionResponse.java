@@ -0,0 +1,136 @@
+package scyuan.spring.boot.autoconfigure.reflection;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A grpc.reflection.v1alpha.ServerReflectionResponse. Only the fields of its kind are set.
+ */
+public final class ReflectionResponse {
+
+    /**
+     * The message_response cases, by field number.
+     */
+    public enum Kind {
+        NOT_SET(0),
+        FILE_DESCRIPTOR(4),
+        ALL_EXTENSION_NUMBERS(5),
+        LIST_SERVICES(6),
+        ERROR(7);
+
+        private final int fieldNumber;
+
+        Kind(int fieldNumber) {
+            this.fieldNumber = fieldNumber;
+        }
+
+        public int getFieldNumber() {
+            return fieldNumber;
+        }
+
+        static Kind forFieldNumber(int fieldNumber) {
+            for (Kind kind : values()) {
+                if (kind.fieldNumber == fieldNumber) {
+                    return kind;
+                }
+            }
+            return NOT_SET;
+        }
+    }
+
+    private final String validHost;
+
+    private final ReflectionRequest originalRequest;
+
+    private final Kind kind;
+
+    private final List<ByteString> fileDescriptors;
+
+    private final String baseTypeName;
+
+    private final List<Integer> extensionNumbers;
+
+    private final List<String> services;
+
+    private final int errorCode;
+
+    private final String errorMessage;
+
+    ReflectionResponse(String validHost, ReflectionRequest originalRequest, Kind kind, List<ByteString> fileDescriptors,
+                       String baseTypeName, List<Integer> extensionNumbers, List<String> services,
+                       int errorCode, String errorMessage) {
+        this.validHost = validHost;
+        this.originalRequest = originalRequest;
+        this.kind = kind;
+        this.fileDescriptors = fileDescriptors;
+        this.baseTypeName = baseTypeName;
+        this.extensionNumbers = extensionNumbers;
+        this.services = services;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    static ReflectionResponse fileDescriptors(ReflectionRequest request, List<ByteString> fileDescriptors) {
+        return new ReflectionResponse(request.getHost(), request, Kind.FILE_DESCRIPTOR, fileDescriptors,
+                "", Collections.<Integer>emptyList(), Collections.<String>emptyList(), 0, "");
+    }
+
+    static ReflectionResponse extensionNumbers(ReflectionRequest request, String baseTypeName,
+                                               List<Integer> extensionNumbers) {
+        return new ReflectionResponse(request.getHost(), request, Kind.ALL_EXTENSION_NUMBERS,
+                Collections.<ByteString>emptyList(), baseTypeName, extensionNumbers,
+                Collections.<String>emptyList(), 0, "");
+    }
+
+    static ReflectionResponse services(ReflectionRequest request, List<String> services) {
+        return new ReflectionResponse(request.getHost(), request, Kind.LIST_SERVICES,
+                Collections.<ByteString>emptyList(), "", Collections.<Integer>emptyList(), services, 0, "");
+    }
+
+    static ReflectionResponse error(ReflectionRequest request, Status.Code code, String message) {
+        return new ReflectionResponse(request.getHost(), request, Kind.ERROR, Collections.<ByteString>emptyList(),
+                "", Collections.<Integer>emptyList(), Collections.<String>emptyList(), code.value(), message);
+    }
+
+    public String getValidHost() {
+        return validHost;
+    }
+
+    public ReflectionRequest getOriginalRequest() {
+        return originalRequest;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The serialized FileDescriptorProtos of a FILE_DESCRIPTOR response, the requested file first.
+     */
+    public List<ByteString> getFileDescriptors() {
+        return fileDescriptors;
+    }
+
+    public String getBaseTypeName() {
+        return baseTypeName;
+    }
+
+    public List<Integer> getExtensionNumbers() {
+        return extensionNumbers;
+    }
+
+    public List<String> getServices() {
+        return services;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
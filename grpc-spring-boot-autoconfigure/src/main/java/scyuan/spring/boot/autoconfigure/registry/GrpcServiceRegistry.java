@@ -0,0 +1,186 @@
+package scyuan.spring.boot.autoconfigure.registry;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import scyuan.spring.boot.autoconfigure.GrpcServerProperties;
+import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link GrpcService} beans of the application and their methods, bound and indexed once all
+ * the singletons are created, before the servers start. It does not change afterwards. The servers
+ * bind the per-method state of their interceptors, such as the metrics and the limiters, to each
+ * method when they bind it, so calls look nothing up.
+ * <p>
+ * The protobuf types of the methods are taken from their marshallers, which parse an empty message
+ * into the default instance of their type. They give the proto files the server reflection serves.
+ */
+public class GrpcServiceRegistry implements ApplicationContextAware, SmartInitializingSingleton {
+
+    private static final byte[] EMPTY_MESSAGE = new byte[0];
+
+    private ApplicationContext applicationContext;
+
+    private volatile boolean built;
+
+    private Map<String, RegisteredService> services = Collections.emptyMap();
+
+    private List<RegisteredMethod> methods = Collections.emptyList();
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        build();
+    }
+
+    /**
+     * Binds and indexes the services, once.
+     */
+    public synchronized void build() {
+        if (built) {
+            return;
+        }
+        final Map<String, RegisteredService> services = new LinkedHashMap<>();
+        final List<RegisteredMethod> methods = new ArrayList<>();
+        for (final Map.Entry<String, Object> entry : applicationContext.getBeansWithAnnotation(GrpcService.class).entrySet()) {
+            if (!(entry.getValue() instanceof BindableService)) {
+                throw new IllegalArgumentException("'" + entry.getValue().getClass().getName() +
+                        "' don't implement the BindableService interface");
+            }
+            final BindableService bean = (BindableService) entry.getValue();
+            final GrpcService annotation = applicationContext.findAnnotationOnBean(entry.getKey(), GrpcService.class);
+            final ServerServiceDefinition definition = bean.bindService();
+            final String name = definition.getServiceDescriptor().getName();
+            final RegisteredService existing = services.get(name);
+            if (existing != null) {
+                throw new IllegalArgumentException("'" + name + "' is implemented by both bean '"
+                        + existing.getBeanName() + "' and bean '" + entry.getKey() + "'");
+            }
+            final List<String> servers = annotation.servers().length == 0
+                    ? Collections.singletonList(GrpcServerProperties.DEFAULT_SERVER)
+                    : Collections.unmodifiableList(Arrays.asList(annotation.servers()));
+
+            final Map<MethodDescriptor<?, ?>, Descriptors.Descriptor[]> types = new LinkedHashMap<>();
+            final Set<Descriptors.FileDescriptor> files = new LinkedHashSet<>();
+            for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+                final MethodDescriptor<?, ?> descriptor = method.getMethodDescriptor();
+                final Descriptors.Descriptor inputType = messageType(descriptor, true);
+                final Descriptors.Descriptor outputType = messageType(descriptor, false);
+                types.put(descriptor, new Descriptors.Descriptor[]{inputType, outputType});
+                if (inputType != null) {
+                    files.add(inputType.getFile());
+                }
+                if (outputType != null) {
+                    files.add(outputType.getFile());
+                }
+            }
+
+            final RegisteredService service = new RegisteredService(entry.getKey(), bean, annotation, definition,
+                    servers, serviceFile(name, files));
+            final List<RegisteredMethod> serviceMethods = new ArrayList<>(types.size());
+            for (Map.Entry<MethodDescriptor<?, ?>, Descriptors.Descriptor[]> method : types.entrySet()) {
+                final RegisteredMethod registered = new RegisteredMethod(service, method.getKey(),
+                        method.getValue()[0], method.getValue()[1]);
+                methods.add(registered);
+                serviceMethods.add(registered);
+            }
+            service.setMethods(Collections.unmodifiableList(serviceMethods));
+            services.put(name, service);
+        }
+        this.services = Collections.unmodifiableMap(services);
+        this.methods = Collections.unmodifiableList(methods);
+        built = true;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public List<RegisteredService> getServices() {
+        return new ArrayList<>(services.values());
+    }
+
+    /**
+     * Returns the services served on the given server.
+     */
+    public List<RegisteredService> getServices(String server) {
+        final List<RegisteredService> served = new ArrayList<>();
+        for (RegisteredService service : services.values()) {
+            if (service.getServers().contains(server)) {
+                served.add(service);
+            }
+        }
+        return served;
+    }
+
+    /**
+     * Returns the service of the given full name, null when there is none.
+     */
+    public RegisteredService getService(String serviceName) {
+        return services.get(serviceName);
+    }
+
+    /**
+     * All the methods, service by service.
+     */
+    public List<RegisteredMethod> getMethods() {
+        return methods;
+    }
+
+    private static Descriptors.Descriptor messageType(MethodDescriptor<?, ?> descriptor, boolean request) {
+        try {
+            final Object prototype = request
+                    ? descriptor.parseRequest(new ByteArrayInputStream(EMPTY_MESSAGE))
+                    : descriptor.parseResponse(new ByteArrayInputStream(EMPTY_MESSAGE));
+            return prototype instanceof Message ? ((Message) prototype).getDescriptorForType() : null;
+        } catch (RuntimeException e) {
+            // not a protobuf marshaller, or one that requires some field
+            return null;
+        }
+    }
+
+    /**
+     * Looks for the file declaring the service among the files of its types and their dependencies.
+     */
+    private static Descriptors.FileDescriptor serviceFile(String serviceName, Set<Descriptors.FileDescriptor> files) {
+        final int dot = serviceName.lastIndexOf('.');
+        final String packageName = dot < 0 ? "" : serviceName.substring(0, dot);
+        final String simpleName = serviceName.substring(dot + 1);
+        final Set<Descriptors.FileDescriptor> visited = new LinkedHashSet<>();
+        final Deque<Descriptors.FileDescriptor> pending = new ArrayDeque<>(files);
+        while (!pending.isEmpty()) {
+            final Descriptors.FileDescriptor file = pending.poll();
+            if (!visited.add(file)) {
+                continue;
+            }
+            if (file.getPackage().equals(packageName) && file.findServiceByName(simpleName) != null) {
+                return file;
+            }
+            pending.addAll(file.getDependencies());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package scyuan.spring.boot.autoconfigure.registry;
+
+import com.google.protobuf.Descriptors;
+import io.grpc.MethodDescriptor;
+
+/**
+ * A method of a {@link RegisteredService}, with its names split once at startup.
+ */
+public final class RegisteredMethod {
+
+    private final RegisteredService service;
+
+    private final MethodDescriptor<?, ?> descriptor;
+
+    private final String methodName;
+
+    private final Descriptors.Descriptor inputType;
+
+    private final Descriptors.Descriptor outputType;
+
+    RegisteredMethod(RegisteredService service, MethodDescriptor<?, ?> descriptor,
+                     Descriptors.Descriptor inputType, Descriptors.Descriptor outputType) {
+        this.service = service;
+        this.descriptor = descriptor;
+        final String fullMethodName = descriptor.getFullMethodName();
+        this.methodName = fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1);
+        this.inputType = inputType;
+        this.outputType = outputType;
+    }
+
+    public RegisteredService getService() {
+        return service;
+    }
+
+    public MethodDescriptor<?, ?> getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * The full method name, "package.Service/Method".
+     */
+    public String getFullMethodName() {
+        return descriptor.getFullMethodName();
+    }
+
+    public String getServiceName() {
+        return service.getName();
+    }
+
+    /**
+     * The method name without the service, "Method".
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public MethodDescriptor.MethodType getType() {
+        return descriptor.getType();
+    }
+
+    /**
+     * Protobuf type of the requests, null when the method is not marshalled with protobuf.
+     */
+    public Descriptors.Descriptor getInputType() {
+        return inputType;
+    }
+
+    /**
+     * Protobuf type of the responses, null when the method is not marshalled with protobuf.
+     */
+    public Descriptors.Descriptor getOutputType() {
+        return outputType;
+    }
+
+    @Override
+    public String toString() {
+        return getFullMethodName();
+    }
+}
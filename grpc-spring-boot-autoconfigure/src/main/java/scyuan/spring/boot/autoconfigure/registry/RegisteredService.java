@@ -0,0 +1,89 @@
+package scyuan.spring.boot.autoconfigure.registry;
+
+import com.google.protobuf.Descriptors;
+import io.grpc.BindableService;
+import io.grpc.ServerServiceDefinition;
+import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+
+import java.util.List;
+
+/**
+ * A {@link GrpcService} bean and its bound service definition, before any interceptor.
+ */
+public final class RegisteredService {
+
+    private final String beanName;
+
+    private final BindableService bean;
+
+    private final GrpcService annotation;
+
+    private final ServerServiceDefinition definition;
+
+    private final List<String> servers;
+
+    private final Descriptors.FileDescriptor file;
+
+    private List<RegisteredMethod> methods;
+
+    RegisteredService(String beanName, BindableService bean, GrpcService annotation,
+                      ServerServiceDefinition definition, List<String> servers, Descriptors.FileDescriptor file) {
+        this.beanName = beanName;
+        this.bean = bean;
+        this.annotation = annotation;
+        this.definition = definition;
+        this.servers = servers;
+        this.file = file;
+    }
+
+    public String getBeanName() {
+        return beanName;
+    }
+
+    public BindableService getBean() {
+        return bean;
+    }
+
+    public GrpcService getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * The full service name, "package.Service".
+     */
+    public String getName() {
+        return definition.getServiceDescriptor().getName();
+    }
+
+    public ServerServiceDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Names of the servers the service is served on.
+     */
+    public List<String> getServers() {
+        return servers;
+    }
+
+    /**
+     * The proto file declaring the service, null when it is not generated from one or when its file
+     * can't be reached from the types of its methods.
+     */
+    public Descriptors.FileDescriptor getFile() {
+        return file;
+    }
+
+    public List<RegisteredMethod> getMethods() {
+        return methods;
+    }
+
+    void setMethods(List<RegisteredMethod> methods) {
+        this.methods = methods;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,144 @@
+package scyuan.spring.boot.autoconfigure.stub;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Streams the responses of a server-streaming call from an {@link Iterator} or a {@link Stream},
+ * pulling the next element only while the transport {@link ServerCallStreamObserver#isReady() is ready}
+ * and resuming from the on-ready handler, so a slow client never makes the whole result set pile up
+ * in the outbound buffers. The source is closed, and the streaming stops, when the call is cancelled.
+ *
+ * <pre>
+ * public void listFeatures(Rectangle request, StreamObserver&lt;Feature&gt; responseObserver) {
+ *     FlowControlledStreamer.from(features.stream().filter(...)).start(responseObserver);
+ * }
+ * </pre>
+ *
+ * {@link #start(StreamObserver)} must be called from the service method, before it returns. The
+ * iterator is only ever used by one thread at a time, but not always the same one.
+ */
+public class FlowControlledStreamer<T> {
+
+    private static final Log LOG = LogFactory.getLog(FlowControlledStreamer.class);
+
+    private final Iterator<? extends T> source;
+
+    private final AutoCloseable resource;
+
+    private int batchSize = Integer.MAX_VALUE;
+
+    private Executor executor;
+
+    private ServerCallStreamObserver<T> observer;
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean cancelled;
+
+    private boolean done;
+
+    private FlowControlledStreamer(Iterator<? extends T> source, AutoCloseable resource) {
+        this.source = source;
+        this.resource = resource;
+    }
+
+    public static <T> FlowControlledStreamer<T> from(Iterator<? extends T> source) {
+        return new FlowControlledStreamer<>(source, null);
+    }
+
+    /**
+     * Streams the elements of the stream, which is closed once it is exhausted or the call cancelled.
+     */
+    public static <T> FlowControlledStreamer<T> from(Stream<? extends T> source) {
+        return new FlowControlledStreamer<>(source.iterator(), source);
+    }
+
+    /**
+     * Limits the number of messages written in one go: once {@code batchSize} messages have been
+     * written, the streaming yields its thread and goes on from a task submitted to {@code executor}.
+     * This bounds how long a call holds a thread and how many messages it hands to the transport
+     * before other calls get a turn, on top of the readiness of the transport. No limit by default.
+     */
+    public FlowControlledStreamer<T> batchSize(int batchSize, Executor executor) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Starts streaming to the response observer of a server call.
+     */
+    public void start(StreamObserver<T> responseObserver) {
+        if (!(responseObserver instanceof ServerCallStreamObserver)) {
+            throw new IllegalArgumentException("Flow control needs the response observer of a server call");
+        }
+        observer = (ServerCallStreamObserver<T>) responseObserver;
+        observer.setOnCancelHandler(() -> {
+            cancelled = true;
+            drain();
+        });
+        observer.setOnReadyHandler(this::drain);
+        // the call may already be ready, in which case no on-ready callback is coming
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            emit();
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private void emit() {
+        if (done) {
+            return;
+        }
+        try {
+            int sent = 0;
+            while (!cancelled && observer.isReady()) {
+                if (!source.hasNext()) {
+                    finish();
+                    observer.onCompleted();
+                    return;
+                }
+                observer.onNext(source.next());
+                if (++sent == batchSize) {
+                    executor.execute(this::drain);
+                    return;
+                }
+            }
+            if (cancelled) {
+                finish();
+            }
+        } catch (RuntimeException e) {
+            finish();
+            if (!cancelled) {
+                observer.onError(e);
+            }
+        }
+    }
+
+    private void finish() {
+        done = true;
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOG.warn("Failed to close the source of a response stream", e);
+            }
+        }
+    }
+}
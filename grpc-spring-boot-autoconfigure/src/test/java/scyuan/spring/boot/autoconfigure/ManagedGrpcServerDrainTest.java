@@ -0,0 +1,78 @@
+package scyuan.spring.boot.autoconfigure;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scyuan.spring.boot.autoconfigure.health.GrpcHealthService;
+import scyuan.spring.boot.autoconfigure.health.HealthCheckProtocol;
+import scyuan.spring.boot.autoconfigure.health.ServingStatus;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The health of a {@link ManagedGrpcServer} served in-process while it stops with a drain delay.
+ */
+public class ManagedGrpcServerDrainTest {
+
+    private static final long DRAIN_DELAY_MILLIS = 2000;
+
+    private ManagedGrpcServer server;
+
+    private ManagedChannel channel;
+
+    @Before
+    public void setUp() {
+        final GrpcServerDefinition definition = new GrpcServerDefinition();
+        definition.getInProcess().setEnabled(true);
+        definition.getInProcess().setOnly(true);
+        definition.getInProcess().setName("drain-" + System.nanoTime());
+        definition.getHealth().setEnabled(true);
+        definition.getShutdown().setDrainDelayMillis(DRAIN_DELAY_MILLIS);
+        server = new ManagedGrpcServer("drain", definition, Collections.<GrpcServerBuilderConfigurer>emptyList(),
+                Collections.emptyList());
+        server.start();
+        channel = InProcessChannelBuilder.forName(server.getInProcessName()).build();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.stop();
+    }
+
+    @Test
+    public void answersNotServingDuringTheDrainDelay() throws InterruptedException {
+        assertEquals(ServingStatus.SERVING, check());
+
+        final long stopNanos = System.nanoTime();
+        final Thread stopper = new Thread(server::stop);
+        stopper.start();
+        final GrpcHealthService healthService = server.getHealthService();
+        while (healthService.getStatus(GrpcHealthService.SERVER) == ServingStatus.SERVING) {
+            Thread.sleep(1);
+        }
+        // the transport still takes calls, so that the probes see the server is draining
+        assertEquals(ServingStatus.NOT_SERVING, check());
+        assertTrue("The server stopped before the end of its drain delay",
+                System.nanoTime() - stopNanos < TimeUnit.MILLISECONDS.toNanos(DRAIN_DELAY_MILLIS));
+
+        stopper.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(server.isRunning());
+        assertTrue("The drain delay was not waited for",
+                System.nanoTime() - stopNanos >= TimeUnit.MILLISECONDS.toNanos(DRAIN_DELAY_MILLIS));
+    }
+
+    private ServingStatus check() {
+        return ClientCalls.blockingUnaryCall(channel, HealthCheckProtocol.CHECK,
+                CallOptions.DEFAULT.withDeadlineAfter(1, TimeUnit.SECONDS), GrpcHealthService.SERVER);
+    }
+}
@@ -0,0 +1,298 @@
+package scyuan.spring.boot.autoconfigure.client;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition.LoadBalancingPolicy;
+import scyuan.spring.boot.autoconfigure.health.GrpcHealthService;
+import scyuan.spring.boot.autoconfigure.health.ServingStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EndpointLoadBalancerFactory} through the channels of a {@link GrpcChannelFactory}, over
+ * three backends on ephemeral ports of this JVM that count the calls they serve.
+ */
+public class EndpointLoadBalancerTest {
+
+    private static final MethodDescriptor.Marshaller<String> MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[256];
+                for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+                    bytes.write(buffer, 0, read);
+                }
+                return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final MethodDescriptor<String, String> CALL = MethodDescriptor.create(
+            MethodDescriptor.MethodType.UNARY, "test.Backend/Call", MARSHALLER, MARSHALLER);
+
+    private static final int BACKENDS = 3;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Backend> backends = new ArrayList<>();
+
+    private GrpcChannelFactory channelFactory;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < BACKENDS; i++) {
+            backends.add(new Backend().start());
+        }
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (channelFactory != null) {
+            channelFactory.destroy();
+        }
+        for (Backend backend : backends) {
+            backend.stop();
+        }
+    }
+
+    @Test
+    public void roundRobinSpreadsTheCallsEvenly() {
+        final ManagedChannel channel = channel(definition(LoadBalancingPolicy.ROUND_ROBIN, addresses(backends)));
+        call(channel, 300);
+        for (Backend backend : backends) {
+            assertBetween(90, 110, backend.served.get());
+        }
+    }
+
+    @Test
+    public void leastRequestAvoidsTheSlowBackend() throws InterruptedException {
+        final Backend slow = backends.get(BACKENDS - 1);
+        slow.delayMillis = 50;
+        final ManagedChannel channel = channel(definition(LoadBalancingPolicy.LEAST_REQUEST, addresses(backends)));
+        callConcurrently(channel, 8, 100);
+        final int total = served(backends);
+        // round robin would send it a third of the calls, the two random picks are both the slow
+        // backend for a ninth of them
+        assertTrue(slow.served.get() + " of " + total + " calls were sent to the slow backend",
+                slow.served.get() * 5 < total);
+    }
+
+    @Test
+    public void stoppedBackendIsEjectedThenReadmitted() throws IOException, InterruptedException {
+        final GrpcChannelDefinition definition = definition(LoadBalancingPolicy.ROUND_ROBIN, addresses(backends));
+        definition.getOutlierDetection().setBaseEjectionTimeSeconds(1);
+        final ManagedChannel channel = channel(definition);
+        call(channel, 30);
+
+        final Backend stopped = backends.get(1);
+        stopped.stop();
+        final int before = served(backends);
+        // the calls sent before the channel learns of the shutdown fail
+        final int failed = call(channel, 100);
+        assertTrue(failed + " calls failed", failed <= 5);
+        assertEquals(100 - failed, served(backends) - before);
+
+        stopped.start();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(1) + 200);
+        final int servedBefore = stopped.served.get();
+        assertEquals(0, call(channel, 90));
+        assertBetween(20, 40, stopped.served.get() - servedBefore);
+    }
+
+    @Test
+    public void notServingBackendIsSkippedByTheHealthCheck() throws InterruptedException {
+        final GrpcChannelDefinition definition = definition(LoadBalancingPolicy.ROUND_ROBIN, addresses(backends));
+        definition.getHealthCheck().setEnabled(true);
+        definition.getHealthCheck().setIntervalSeconds(1);
+        final ManagedChannel channel = channel(definition);
+        call(channel, 30);
+
+        final Backend unhealthy = backends.get(0);
+        unhealthy.health.setStatus(GrpcHealthService.SERVER, ServingStatus.NOT_SERVING);
+        Thread.sleep(1500);
+        final int servedBefore = unhealthy.served.get();
+        assertEquals(0, call(channel, 100));
+        assertEquals(servedBefore, unhealthy.served.get());
+
+        unhealthy.health.setStatus(GrpcHealthService.SERVER, ServingStatus.SERVING);
+        Thread.sleep(1500);
+        call(channel, 90);
+        assertBetween(20, 40, unhealthy.served.get() - servedBefore);
+    }
+
+    @Test
+    public void followsTheEditsOfTheAddressesFile() throws IOException, InterruptedException {
+        final Path addressesFile = folder.newFile("backends.txt").toPath();
+        write(addressesFile, addresses(backends.subList(0, 2)));
+        final GrpcChannelDefinition definition = definition(LoadBalancingPolicy.ROUND_ROBIN, Collections.<String>emptyList());
+        definition.setAddressesFile(addressesFile.toString());
+        final ManagedChannel channel = channel(definition);
+        call(channel, 100);
+        final Backend added = backends.get(2);
+        assertEquals(0, added.served.get());
+
+        final List<String> lines = new ArrayList<>(Collections.singletonList("# the third backend is added"));
+        lines.addAll(addresses(backends));
+        write(addressesFile, lines);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (added.served.get() == 0 && System.nanoTime() - deadline < 0) {
+            call(channel, 3);
+            Thread.sleep(10);
+        }
+        final int servedBefore = added.served.get();
+        assertTrue("The added address was never called", servedBefore > 0);
+        call(channel, 90);
+        assertBetween(20, 40, added.served.get() - servedBefore);
+    }
+
+    private ManagedChannel channel(GrpcChannelDefinition definition) {
+        final GrpcClientProperties properties = new GrpcClientProperties();
+        properties.getChannels().put("backends", definition);
+        channelFactory = new GrpcChannelFactory(properties);
+        return channelFactory.getChannel("backends");
+    }
+
+    private static GrpcChannelDefinition definition(LoadBalancingPolicy policy, List<String> addresses) {
+        final GrpcChannelDefinition definition = new GrpcChannelDefinition();
+        definition.setLoadBalancing(policy);
+        definition.setAddresses(addresses);
+        return definition;
+    }
+
+    private static List<String> addresses(List<Backend> backends) {
+        final List<String> addresses = new ArrayList<>();
+        for (Backend backend : backends) {
+            addresses.add("127.0.0.1:" + backend.port);
+        }
+        return addresses;
+    }
+
+    private static void write(Path file, List<String> lines) throws IOException {
+        final Path written = Files.write(file.resolveSibling(file.getFileName() + ".tmp"), lines, StandardCharsets.UTF_8);
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Makes the calls one after the other and returns how many failed.
+     */
+    private static int call(ManagedChannel channel, int calls) {
+        int failed = 0;
+        for (int i = 0; i < calls; i++) {
+            try {
+                ClientCalls.blockingUnaryCall(channel, CALL, CallOptions.DEFAULT.withDeadlineAfter(5, TimeUnit.SECONDS), "call");
+            } catch (StatusRuntimeException e) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private static void callConcurrently(ManagedChannel channel, int threads, int callsPerThread) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                call(channel, callsPerThread);
+                done.countDown();
+            }).start();
+        }
+        assertTrue("The calls did not complete", done.await(60, TimeUnit.SECONDS));
+    }
+
+    private static int served(List<Backend> backends) {
+        int served = 0;
+        for (Backend backend : backends) {
+            served += backend.served.get();
+        }
+        return served;
+    }
+
+    private static void assertBetween(int min, int max, int actual) {
+        assertTrue(actual + " is not within [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+
+    /**
+     * A server counting the calls it serves, with a health service, which restarts on its port.
+     */
+    private static final class Backend {
+
+        final AtomicInteger served = new AtomicInteger();
+
+        final GrpcHealthService health = new GrpcHealthService();
+
+        volatile long delayMillis;
+
+        int port;
+
+        private Server server;
+
+        Backend start() throws IOException {
+            final ServerServiceDefinition service = ServerServiceDefinition.builder(new ServiceDescriptor("test.Backend", CALL))
+                    .addMethod(CALL, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                        served.incrementAndGet();
+                        if (delayMillis > 0) {
+                            try {
+                                Thread.sleep(delayMillis);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        responseObserver.onNext(request);
+                        responseObserver.onCompleted();
+                    }))
+                    .build();
+            server = NettyServerBuilder.forPort(port).addService(service).addService(health).build().start();
+            port = server.getPort();
+            health.startServing(Arrays.asList("test.Backend"));
+            return this;
+        }
+
+        void stop() throws InterruptedException {
+            if (server != null) {
+                health.drain();
+                server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+                server = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package scyuan.spring.boot.autoconfigure.health;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link GrpcHealthService} served in-process, probed and watched through real calls.
+ */
+public class GrpcHealthServiceTest {
+
+    private static final String SERVICE = "test.Service";
+
+    private final GrpcHealthService healthService = new GrpcHealthService();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    @Before
+    public void setUp() throws IOException {
+        final String name = "health-" + System.nanoTime();
+        server = InProcessServerBuilder.forName(name).addService(healthService).build().start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        healthService.startServing(Collections.singletonList(SERVICE));
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void checkAnswersTheStatus() {
+        assertEquals(ServingStatus.SERVING, check(GrpcHealthService.SERVER));
+        assertEquals(ServingStatus.SERVING, check(SERVICE));
+        healthService.setStatus(SERVICE, ServingStatus.NOT_SERVING);
+        assertEquals(ServingStatus.NOT_SERVING, check(SERVICE));
+        try {
+            check("unknown.Service");
+            fail("An unknown service has no status");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+        }
+    }
+
+    @Test
+    public void checkAnswersNotServingOnceDraining() {
+        healthService.drain();
+        assertEquals(ServingStatus.NOT_SERVING, check(GrpcHealthService.SERVER));
+        assertEquals(ServingStatus.NOT_SERVING, check(SERVICE));
+        // the services don't get back to SERVING while the server drains
+        healthService.setStatus(SERVICE, ServingStatus.SERVING);
+        assertEquals(ServingStatus.NOT_SERVING, check(SERVICE));
+    }
+
+    @Test
+    public void watchStreamsTheChangesAndCompletesOnDrain() throws InterruptedException {
+        final Watch watch = watch(SERVICE);
+        assertEquals(ServingStatus.SERVING, watch.next());
+        healthService.setStatus(SERVICE, ServingStatus.NOT_SERVING);
+        assertEquals(ServingStatus.NOT_SERVING, watch.next());
+        healthService.setStatus(SERVICE, ServingStatus.SERVING);
+        assertEquals(ServingStatus.SERVING, watch.next());
+        assertEquals(1, healthService.getWatchCount());
+
+        healthService.drain();
+        assertEquals(ServingStatus.NOT_SERVING, watch.next());
+        assertTrue("The watch was not completed", watch.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.OK, watch.status.getCode());
+        assertEquals(0, healthService.getWatchCount());
+        assertEquals(0, healthService.getWatchedServiceCount());
+    }
+
+    @Test
+    public void watchOfAnUnknownServiceWaitsForItsStatus() throws InterruptedException {
+        final Watch watch = watch("unknown.Service");
+        assertEquals(ServingStatus.SERVICE_UNKNOWN, watch.next());
+        healthService.setStatus("unknown.Service", ServingStatus.SERVING);
+        assertEquals(ServingStatus.SERVING, watch.next());
+    }
+
+    @Test
+    public void watchedServicesAreDroppedOnceTheStreamsAreCancelled() throws InterruptedException {
+        final List<Watch> watches = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            watches.add(watch(SERVICE));
+            watches.add(watch("unknown.Service" + i));
+        }
+        for (Watch watch : watches) {
+            watch.next();
+        }
+        assertEquals(20, healthService.getWatchCount());
+        assertEquals(11, healthService.getWatchedServiceCount());
+
+        for (Watch watch : watches) {
+            watch.call.cancel("Done watching", null);
+        }
+        // the server learns of the cancellations asynchronously
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (healthService.getWatchedServiceCount() > 0 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, healthService.getWatchCount());
+        assertEquals(0, healthService.getWatchedServiceCount());
+    }
+
+    private ServingStatus check(String service) {
+        return ClientCalls.blockingUnaryCall(channel, HealthCheckProtocol.CHECK,
+                CallOptions.DEFAULT.withDeadlineAfter(5, TimeUnit.SECONDS), service);
+    }
+
+    private Watch watch(String service) {
+        final Watch watch = new Watch(channel.newCall(HealthCheckProtocol.WATCH, CallOptions.DEFAULT));
+        watch.call.start(watch, new Metadata());
+        watch.call.sendMessage(service);
+        watch.call.halfClose();
+        watch.call.request(Integer.MAX_VALUE);
+        return watch;
+    }
+
+    /**
+     * A Watch stream recording the statuses it receives.
+     */
+    private static final class Watch extends ClientCall.Listener<ServingStatus> {
+
+        final ClientCall<String, ServingStatus> call;
+
+        final BlockingQueue<ServingStatus> statuses = new LinkedBlockingQueue<>();
+
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        volatile Status status;
+
+        Watch(ClientCall<String, ServingStatus> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(ServingStatus message) {
+            statuses.add(message);
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            this.status = status;
+            closed.countDown();
+        }
+
+        ServingStatus next() throws InterruptedException {
+            final ServingStatus next = statuses.poll(5, TimeUnit.SECONDS);
+            assertNotNull("No status received", next);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AimdConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter("test", 10, 2, 20, 0.5, 100);
+
+    @Test
+    public void admitsUpToTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void growsByOneWhenBusyAndFast() {
+        acquire(5);
+        limiter.release(FAST, false);
+        assertEquals(11, limiter.getLimit());
+    }
+
+    @Test
+    public void keepsTheLimitWhenMostlyIdle() {
+        acquire(4);
+        limiter.release(FAST, false);
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffOnADrop() {
+        acquire(1);
+        limiter.release(FAST, true);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffOnASlowCall() {
+        acquire(1);
+        limiter.release(SLOW, false);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void staysWithinItsBounds() {
+        for (int i = 0; i < 10; i++) {
+            acquire(1);
+            limiter.release(FAST, true);
+        }
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            acquire(limiter.getLimit());
+            limiter.release(FAST, false);
+            abandon(limiter.getInFlight());
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void abandonedCallsAreNoSamples() {
+        acquire(10);
+        abandon(10);
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private void acquire(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+    }
+
+    private void abandon(int calls) {
+        for (int i = 0; i < calls; i++) {
+            limiter.abandon();
+        }
+    }
+}
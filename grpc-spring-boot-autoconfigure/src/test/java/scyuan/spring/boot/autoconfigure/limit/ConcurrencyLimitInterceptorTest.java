@@ -0,0 +1,169 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
+import org.junit.Test;
+import scyuan.spring.boot.autoconfigure.GrpcServerDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link ConcurrencyLimitInterceptor} admitting and releasing calls through a recording call, without a
+ * server.
+ */
+public class ConcurrencyLimitInterceptorTest {
+
+    private static final MethodDescriptor.Marshaller<String> MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static final MethodDescriptor<String, String> UNARY = MethodDescriptor.create(
+            MethodDescriptor.MethodType.UNARY, "test.Service/Unary", MARSHALLER, MARSHALLER);
+
+    private static final MethodDescriptor<String, String> STREAMING = MethodDescriptor.create(
+            MethodDescriptor.MethodType.SERVER_STREAMING, "test.Service/Streaming", MARSHALLER, MARSHALLER);
+
+    @Test
+    public void unaryCallsAreSamples() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor("test", adaptiveLimits(2));
+        // one call of a limit of 2 is in flight, enough for a fast call to grow the limit
+        startCall(interceptor, UNARY).close(Status.OK, new Metadata());
+        assertEquals(3, interceptor.getServerLimiter().getLimit());
+        assertEquals(0, interceptor.getServerLimiter().getInFlight());
+    }
+
+    @Test
+    public void streamsAreNoSamples() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor("test", adaptiveLimits(2));
+        startCall(interceptor, STREAMING).close(Status.OK, new Metadata());
+        assertEquals(2, interceptor.getServerLimiter().getLimit());
+        assertEquals(0, interceptor.getServerLimiter().getInFlight());
+    }
+
+    @Test
+    public void timeoutsAreDrops() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor("test", adaptiveLimits(8));
+        startCall(interceptor, STREAMING).close(Status.DEADLINE_EXCEEDED, new Metadata());
+        assertEquals(4, interceptor.getServerLimiter().getLimit());
+        startCall(interceptor, UNARY).close(Status.DEADLINE_EXCEEDED, new Metadata());
+        assertEquals(2, interceptor.getServerLimiter().getLimit());
+    }
+
+    @Test
+    public void closesOfThePoliciesAreNoDrops() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor("test", adaptiveLimits(8));
+        startCall(interceptor, UNARY).close(Status.RESOURCE_EXHAUSTED, new Metadata());
+        startCall(interceptor, UNARY).close(Status.CANCELLED, new Metadata());
+        assertEquals(8, interceptor.getServerLimiter().getLimit());
+    }
+
+    @Test
+    public void rejectsBeyondTheMethodLimit() {
+        GrpcServerDefinition.Limits limits = new GrpcServerDefinition.Limits();
+        limits.setEnabled(true);
+        limits.setMaxConcurrentCallsPerMethod(1);
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor("test", limits);
+
+        ServerCall<String, String> first = startCall(interceptor, UNARY);
+        RecordingCall rejected = new RecordingCall(UNARY);
+        interceptor.forMethod(ServerMethodDefinition.create(UNARY, (call, headers) -> {
+            throw new AssertionError("The call should have been rejected");
+        })).interceptCall(rejected, new Metadata(), null);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejected.status.getCode());
+
+        assertEquals(1, interceptor.getMethodLimiters().iterator().next().getRejectedCount());
+
+        // the closed call frees its permit for the next one
+        first.close(Status.OK, new Metadata());
+        startCall(interceptor, UNARY);
+    }
+
+    private static GrpcServerDefinition.Limits adaptiveLimits(int initialLimit) {
+        GrpcServerDefinition.Limits limits = new GrpcServerDefinition.Limits();
+        limits.setEnabled(true);
+        limits.getAdaptive().setEnabled(true);
+        limits.getAdaptive().setInitialLimit(initialLimit);
+        limits.getAdaptive().setMinLimit(1);
+        limits.getAdaptive().setMaxLimit(100);
+        limits.getAdaptive().setBackoffRatio(0.5);
+        limits.getAdaptive().setLatencyThresholdMillis(10000);
+        return limits;
+    }
+
+    /**
+     * Starts a call of the method through the interceptor and returns the call the service sees.
+     */
+    private static ServerCall<String, String> startCall(ConcurrencyLimitInterceptor interceptor,
+                                                        MethodDescriptor<String, String> method) {
+        final ServerCall<String, String>[] started = newCallArray();
+        ServerCallHandler<String, String> handler = (call, headers) -> {
+            started[0] = call;
+            return new ServerCall.Listener<String>() {
+            };
+        };
+        RecordingCall call = new RecordingCall(method);
+        interceptor.forMethod(ServerMethodDefinition.create(method, handler)).interceptCall(call, new Metadata(), handler);
+        assertNull("The call was rejected", call.status);
+        return started[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<String, String>[] newCallArray() {
+        return new ServerCall[1];
+    }
+
+    private static class RecordingCall extends ServerCall<String, String> {
+
+        private final MethodDescriptor<String, String> method;
+
+        Status status;
+
+        RecordingCall(MethodDescriptor<String, String> method) {
+            this.method = method;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<String, String> getMethodDescriptor() {
+            return method;
+        }
+    }
+}
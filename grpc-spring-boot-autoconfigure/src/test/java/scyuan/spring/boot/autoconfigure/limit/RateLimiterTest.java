@@ -0,0 +1,100 @@
+package scyuan.spring.boot.autoconfigure.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RateLimiter} on a clock of its own, evicting on the calling thread so that the size of its
+ * store is exact after every call.
+ */
+public class RateLimiterTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long start = System.nanoTime();
+
+    private final AtomicLong now = new AtomicLong(start);
+
+    @Test
+    public void acceptsTheBurstThenPushesBackForOneInterval() {
+        RateLimiter limiter = limiter(10, 5, 100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("caller", start));
+        }
+        assertEquals(INTERVAL, limiter.tryAcquire("caller", start));
+        assertEquals(INTERVAL / 2, limiter.tryAcquire("caller", tick(start + INTERVAL / 2)));
+        assertEquals(2, limiter.getRejectedCount());
+
+        assertEquals(0, limiter.tryAcquire("caller", tick(start + INTERVAL)));
+        assertEquals(INTERVAL, limiter.tryAcquire("caller", tick(start + INTERVAL)));
+    }
+
+    @Test
+    public void refillsAtTheRate() {
+        RateLimiter limiter = limiter(10, 5, 100);
+        // one call per interval never runs out, whatever the burst
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("caller", tick(start + i * INTERVAL)));
+        }
+        // and a bucket left alone is full again
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("caller", tick(start + 200 * INTERVAL)));
+        }
+        assertTrue(limiter.tryAcquire("caller", tick(start + 200 * INTERVAL)) > 0);
+    }
+
+    @Test
+    public void keysHaveTheirOwnBuckets() {
+        RateLimiter limiter = limiter(10, 1, 100);
+        assertEquals(0, limiter.tryAcquire("a", start));
+        assertEquals(INTERVAL, limiter.tryAcquire("a", start));
+        assertEquals(0, limiter.tryAcquire("b", start));
+        assertEquals(2, limiter.getKeyCount());
+    }
+
+    @Test
+    public void expiresTheFullBuckets() {
+        RateLimiter limiter = limiter(10, 5, 100);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("caller-" + i, start);
+        }
+        assertEquals(10, limiter.getKeyCount());
+
+        // past the burst every bucket is full again and expires
+        limiter.tryAcquire("late", tick(start + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(1, limiter.getKeyCount());
+    }
+
+    @Test
+    public void evictsOnlyTheKeysOverTheBound() {
+        RateLimiter limiter = limiter(10, 5, 100);
+        for (int i = 0; i < 1000; i++) {
+            // none of the buckets is full, the store has to evict some of them to stay bounded
+            limiter.tryAcquire("caller-" + i, start);
+            assertTrue(limiter.getKeyCount() <= 100);
+        }
+        assertEquals(100, limiter.getKeyCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesAnEmptyBurst() {
+        limiter(10, 0, 100);
+    }
+
+    private RateLimiter limiter(double permitsPerSecond, int burst, int maxKeys) {
+        return new RateLimiter(permitsPerSecond, burst, maxKeys, now::get, Runnable::run);
+    }
+
+    /**
+     * Moves the clock of the store to the time, returning it.
+     */
+    private long tick(long nanos) {
+        now.set(nanos);
+        return nanos;
+    }
+}
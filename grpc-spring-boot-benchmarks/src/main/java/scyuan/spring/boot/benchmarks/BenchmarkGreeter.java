@@ -0,0 +1,70 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.stub.StreamObserver;
+import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Greeter of the {@link GreeterBackend}, which counts the calls it serves. A call whose name is
+ * "slow" sleeps half a second, past the deadlines of the benchmarks, on top of the configured delay.
+ */
+@GrpcService
+public class BenchmarkGreeter extends GreeterGrpc.GreeterImplBase {
+
+    public static final String SLOW = "slow";
+
+    private static final long SLOW_MILLIS = 500;
+
+    private static final int DIGEST_ROUNDS_PER_LINE = 300;
+
+    private final long delayMillis;
+
+    private final int digestLines;
+
+    private final AtomicLong served = new AtomicLong();
+
+    public BenchmarkGreeter(long delayMillis, int digestLines) {
+        this.delayMillis = delayMillis;
+        this.digestLines = digestLines;
+    }
+
+    @Override
+    public void sayHello(HelloRequest request, StreamObserver<HelloReply> responseObserver) {
+        served.incrementAndGet();
+        sleep(request.getName().equals(SLOW) ? delayMillis + SLOW_MILLIS : delayMillis);
+        final String message = digestLines > 0 ? digest(request.getName()) : "Hello " + request.getName();
+        responseObserver.onNext(HelloReply.newBuilder().setMessage(message).build());
+        responseObserver.onCompleted();
+    }
+
+    public long getServed() {
+        return served.get();
+    }
+
+    private String digest(String name) {
+        long hash = name.hashCode();
+        final StringBuilder message = new StringBuilder(digestLines * 40);
+        for (int line = 0; line < digestLines; line++) {
+            for (int round = 0; round < DIGEST_ROUNDS_PER_LINE; round++) {
+                hash = hash * 6364136223846793005L + 1442695040888963407L;
+            }
+            message.append(name).append(' ').append(Long.toHexString(hash)).append('\n');
+        }
+        return message.toString();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.routeguide.RouteNote;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bidi streaming calls: routeChat of RouteGuideService with N notes over a few locations, one
+ * operation being a whole stream. The server keeps 4 notes per location, so once warm every note is
+ * answered with the 4 previous ones at its location.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class BidiStreamingBenchmark {
+
+    private static final int LOCATIONS = 4;
+
+    @Param({"16"})
+    public int notes;
+
+    private RouteNote[] chat;
+
+    @Setup
+    public void setup() {
+        chat = new RouteNote[notes];
+        for (int i = 0; i < notes; i++) {
+            chat[i] = RouteNote.newBuilder()
+                    .setLocation(Point.newBuilder().setLatitude(i % LOCATIONS).setLongitude(0))
+                    .setMessage("note " + i)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public int routeChat(GrpcServerState server) throws Exception {
+        final StreamRecorder<RouteNote> received = new StreamRecorder<>();
+        final StreamObserver<RouteNote> requests = server.routeGuideAsync().routeChat(received);
+        for (RouteNote note : chat) {
+            requests.onNext(note);
+        }
+        requests.onCompleted();
+        return received.awaitCount();
+    }
+}
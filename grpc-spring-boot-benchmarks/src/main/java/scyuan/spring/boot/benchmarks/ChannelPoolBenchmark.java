@@ -0,0 +1,94 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelFactory;
+import scyuan.spring.boot.autoconfigure.client.GrpcClientProperties;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking SayHello calls from 32 threads through the channels of the client:
+ * <ul>
+ *     <li>per-call: a channel built for every call, the way hand-written clients often do;</li>
+ *     <li>shared: the shared stub of one channel of the {@link GrpcChannelFactory}, the one
+ *     {@code @GrpcClient} injects;</li>
+ *     <li>pool: the shared stub of a pool of channels of the factory.</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChannelPoolBenchmark {
+
+    private static final HelloRequest REQUEST = HelloRequest.newBuilder().setName("benchmark").build();
+
+    @Param({"per-call", "shared", "pool"})
+    public String channel;
+
+    @Param({"4"})
+    public int poolSize;
+
+    private ConfigurableApplicationContext context;
+
+    private int port;
+
+    private GrpcChannelFactory channelFactory;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = GreeterBackend.run();
+        port = GreeterBackend.server(context).getPort();
+        final GrpcChannelDefinition definition = new GrpcChannelDefinition();
+        definition.setTarget("localhost:" + port);
+        definition.setPoolSize(channel.equals("pool") ? poolSize : 1);
+        final GrpcClientProperties properties = new GrpcClientProperties();
+        properties.getChannels().put("greeter", definition);
+        channelFactory = new GrpcChannelFactory(properties);
+        greeter = channelFactory.getStub("greeter", GreeterGrpc.GreeterBlockingStub.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channelFactory.destroy();
+        context.close();
+    }
+
+    @Benchmark
+    public HelloReply sayHello() {
+        if (!channel.equals("per-call")) {
+            return greeter.sayHello(REQUEST);
+        }
+        final ManagedChannel perCall = NettyChannelBuilder.forAddress("localhost", port).usePlaintext(true).build();
+        try {
+            return GreeterGrpc.newBlockingStub(perCall).sayHello(REQUEST);
+        } finally {
+            perCall.shutdownNow();
+        }
+    }
+}
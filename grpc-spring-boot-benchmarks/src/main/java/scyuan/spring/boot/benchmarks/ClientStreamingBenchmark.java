@@ -0,0 +1,57 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.routeguide.RouteSummary;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client streaming calls: recordRoute of RouteGuideService with a route of N points, one operation
+ * being a whole stream up to the summary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ClientStreamingBenchmark {
+
+    @Param({"1", "64"})
+    public int points;
+
+    private Point[] route;
+
+    @Setup
+    public void setup() {
+        route = new Point[points];
+        for (int i = 0; i < points; i++) {
+            route[i] = Point.newBuilder().setLatitude(400000000 + i * 10000).setLongitude(-750000000 + i * 10000).build();
+        }
+    }
+
+    @Benchmark
+    public RouteSummary recordRoute(GrpcServerState server) throws Exception {
+        final StreamRecorder<RouteSummary> summary = new StreamRecorder<>();
+        final StreamObserver<Point> requests = server.routeGuideAsync().recordRoute(summary);
+        for (Point point : route) {
+            requests.onNext(point);
+        }
+        requests.onCompleted();
+        return summary.awaitLast();
+    }
+}
@@ -0,0 +1,64 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import scyuan.spring.boot.autoconfigure.GrpcServerProperties;
+import scyuan.spring.boot.autoconfigure.GrpcServerRunner;
+import scyuan.spring.boot.autoconfigure.ManagedGrpcServer;
+import scyuan.spring.boot.autoconfigure.annotation.EnableGrpcServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An application serving only a {@link BenchmarkGreeter}, for the suites that need a Greeter of a
+ * known cost rather than the services of the sample. It is booted in the benchmark JVM on an
+ * ephemeral port, with the given properties on top of:
+ * <ul>
+ *     <li>{@code greeter.delay-millis}: every call sleeps this long before replying, standing in
+ *     for a blocking JDBC or HTTP call;</li>
+ *     <li>{@code greeter.digest-lines}: the reply is that many lines derived from the name through
+ *     rounds of hashing, a costly pure function of the name, instead of "Hello name".</li>
+ * </ul>
+ */
+@Configuration
+@EnableGrpcServer
+public class GreeterBackend {
+
+    @Bean
+    public BenchmarkGreeter benchmarkGreeter(Environment environment) {
+        return new BenchmarkGreeter(environment.getProperty("greeter.delay-millis", Long.class, 0L),
+                environment.getProperty("greeter.digest-lines", Integer.class, 0));
+    }
+
+    /**
+     * Boots the backend with its default server on an ephemeral port.
+     */
+    public static ConfigurableApplicationContext run(String... args) {
+        final List<String> allArgs = new ArrayList<>(Arrays.asList("--grpc.port=0",
+                "--logging.level.root=WARN", "--spring.main.banner-mode=off"));
+        allArgs.addAll(Arrays.asList(args));
+        return SpringApplication.run(GreeterBackend.class, allArgs.toArray(new String[allArgs.size()]));
+    }
+
+    public static ManagedGrpcServer server(ConfigurableApplicationContext context) {
+        return context.getBean(GrpcServerRunner.class).getServer(GrpcServerProperties.DEFAULT_SERVER);
+    }
+
+    public static BenchmarkGreeter greeter(ConfigurableApplicationContext context) {
+        return context.getBean(BenchmarkGreeter.class);
+    }
+
+    /**
+     * A plaintext channel to the port of the default server of the backend.
+     */
+    public static ManagedChannel channel(ConfigurableApplicationContext context) {
+        return NettyChannelBuilder.forAddress("localhost", server(context).getPort()).usePlaintext(true).build();
+    }
+}
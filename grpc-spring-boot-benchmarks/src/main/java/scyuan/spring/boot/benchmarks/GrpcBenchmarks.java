@@ -0,0 +1,34 @@
+package scyuan.spring.boot.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the starter's server path with the JMH command line, writing the results
+ * as JSON to jmh-result.json unless the command line picks another format or file, so that the runs
+ * of two versions can be compared:
+ * <pre>
+ * java -jar target/benchmarks.jar                                 # every suite, transport and executor
+ * java -jar target/benchmarks.jar Unary -p transport=epoll,inprocess -p executor=DIRECT -rff unary.json
+ * java -jar target/benchmarks.jar -lp                             # the suites and their parameters
+ * </pre>
+ */
+public class GrpcBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(options.build()).run();
+    }
+}
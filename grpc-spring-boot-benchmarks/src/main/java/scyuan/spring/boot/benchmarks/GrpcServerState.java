@@ -0,0 +1,123 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.epoll.Epoll;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ReflectionUtils;
+import scyuan.spring.boot.autoconfigure.GrpcServerProperties;
+import scyuan.spring.boot.autoconfigure.GrpcServerRunner;
+import scyuan.spring.boot.autoconfigure.ManagedGrpcServer;
+import scyuan.spring.boot.sample.SampleApp;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.routeguide.RouteGuideGrpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sample application booted in the benchmark JVM, with its auto-configured server on the
+ * transport and executor of the parameters, and a channel to it:
+ * <ul>
+ *     <li>transport: "nio" or "epoll" sockets on an ephemeral port, or "inprocess" only;</li>
+ *     <li>executor: the {@code grpc.executor} of the server, the RouteGuide calls still run on the
+ *     "route-guide" service executor of the sample. VIRTUAL fails its trials on a runtime before
+ *     JDK 21, such as the Java 8 one of the build, rather than run on the default executor.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+public class GrpcServerState {
+
+    @Param({"nio", "epoll", "inprocess"})
+    public String transport;
+
+    @Param({"DEFAULT", "DIRECT", "FIXED", "BOUNDED", "VIRTUAL"})
+    public String executor;
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedChannel channel;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    private RouteGuideGrpc.RouteGuideBlockingStub routeGuide;
+
+    private RouteGuideGrpc.RouteGuideStub routeGuideAsync;
+
+    @Setup(Level.Trial)
+    public void start() {
+        checkExecutor(executor);
+        final List<String> args = new ArrayList<>(Arrays.asList("--grpc.port=0", "--grpc.executor=" + executor,
+                // routeChat replies with the previous notes at the location, at most this many
+                "--route-guide.notes.capacity=4",
+                "--logging.level.root=WARN", "--spring.main.banner-mode=off"));
+        switch (transport) {
+            case "nio":
+                args.add("--grpc.channel-type=nio");
+                break;
+            case "epoll":
+                // the server would fall back to NIO, which would be reported as epoll
+                if (!Epoll.isAvailable()) {
+                    throw new IllegalStateException("Epoll is not available", Epoll.unavailabilityCause());
+                }
+                args.add("--grpc.channel-type=epoll");
+                break;
+            case "inprocess":
+                args.add("--grpc.in-process.enabled=true");
+                args.add("--grpc.in-process.only=true");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transport '" + transport + "'");
+        }
+        context = SpringApplication.run(SampleApp.class, args.toArray(new String[args.size()]));
+
+        final ManagedGrpcServer server = context.getBean(GrpcServerRunner.class)
+                .getServer(GrpcServerProperties.DEFAULT_SERVER);
+        channel = transport.equals("inprocess")
+                ? InProcessChannelBuilder.forName(server.getInProcessName()).build()
+                : NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext(true).build();
+        greeter = GreeterGrpc.newBlockingStub(channel);
+        routeGuide = RouteGuideGrpc.newBlockingStub(channel);
+        routeGuideAsync = RouteGuideGrpc.newStub(channel);
+    }
+
+    /**
+     * Fails the trials of the VIRTUAL executor on a runtime before JDK 21, where the server would fall
+     * back to the default executor, which would be reported as virtual.
+     */
+    static void checkExecutor(String executor) {
+        if (executor.equals("VIRTUAL")
+                && ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor") == null) {
+            throw new IllegalStateException("Virtual threads need a JDK 21+ runtime");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    public GreeterGrpc.GreeterBlockingStub greeter() {
+        return greeter;
+    }
+
+    public RouteGuideGrpc.RouteGuideBlockingStub routeGuide() {
+        return routeGuide;
+    }
+
+    public RouteGuideGrpc.RouteGuideStub routeGuideAsync() {
+        return routeGuideAsync;
+    }
+}
@@ -0,0 +1,97 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.health.HealthCheckProtocol;
+import scyuan.spring.boot.autoconfigure.health.ServingStatus;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health/Check probes of a server saturated by slow Greeter calls: 31 threads keep calling SayHello,
+ * more than the concurrency limit admits, while one thread probes the health of the Greeter. The
+ * latencies of both are sampled, those of the calls the limit rejects included. The health of a
+ * draining server is covered by the tests of the health service.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HealthProbeBenchmark {
+
+    private static final HelloRequest REQUEST = HelloRequest.newBuilder().setName("probe").build();
+
+    @Param({"20"})
+    public long delayMillis;
+
+    @Param({"16"})
+    public int maxConcurrentCalls;
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedChannel channel;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = GreeterBackend.run("--greeter.delay-millis=" + delayMillis,
+                "--grpc.executor=FIXED", "--grpc.executor-threads=8",
+                "--grpc.limits.enabled=true", "--grpc.limits.max-concurrent-calls=" + maxConcurrentCalls);
+        channel = GreeterBackend.channel(context);
+        greeter = GreeterGrpc.newBlockingStub(channel);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    @Group("loaded")
+    @GroupThreads(31)
+    public HelloReply sayHello() {
+        try {
+            return greeter.sayHello(REQUEST);
+        } catch (StatusRuntimeException e) {
+            // rejected by the concurrency limit
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("loaded")
+    @GroupThreads(1)
+    public ServingStatus check() {
+        final ServingStatus status = ClientCalls.blockingUnaryCall(channel, HealthCheckProtocol.CHECK,
+                CallOptions.DEFAULT.withDeadlineAfter(1, TimeUnit.SECONDS), GreeterGrpc.SERVICE_NAME);
+        if (status != ServingStatus.SERVING) {
+            throw new IllegalStateException("Greeter is " + status);
+        }
+        return status;
+    }
+}
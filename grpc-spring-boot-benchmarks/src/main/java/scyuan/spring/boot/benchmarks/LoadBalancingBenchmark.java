@@ -0,0 +1,116 @@
+package scyuan.spring.boot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelDefinition.LoadBalancingPolicy;
+import scyuan.spring.boot.autoconfigure.client.GrpcChannelFactory;
+import scyuan.spring.boot.autoconfigure.client.GrpcClientProperties;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking SayHello calls from 16 threads through a channel balancing over three
+ * {@link GreeterBackend}s on ephemeral ports, the last of which answers after a delay. The calls
+ * each backend served during the iteration are printed at its end. The ejection of stopped
+ * backends, the health checks and the addresses file are covered by the tests of the balancer.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBalancingBenchmark {
+
+    private static final int BACKENDS = 3;
+
+    private static final HelloRequest REQUEST = HelloRequest.newBuilder().setName("balanced").build();
+
+    @Param({"ROUND_ROBIN", "LEAST_REQUEST"})
+    public LoadBalancingPolicy policy;
+
+    @Param({"5"})
+    public long slowDelayMillis;
+
+    private final List<ConfigurableApplicationContext> backends = new ArrayList<>();
+
+    private long[] servedBefore;
+
+    private GrpcChannelFactory channelFactory;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        final List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < BACKENDS; i++) {
+            final ConfigurableApplicationContext backend = GreeterBackend.run(
+                    "--greeter.delay-millis=" + (i == BACKENDS - 1 ? slowDelayMillis : 0));
+            backends.add(backend);
+            addresses.add("localhost:" + GreeterBackend.server(backend).getPort());
+        }
+        final GrpcChannelDefinition definition = new GrpcChannelDefinition();
+        definition.setLoadBalancing(policy);
+        definition.setAddresses(addresses);
+        final GrpcClientProperties properties = new GrpcClientProperties();
+        properties.getChannels().put("backends", definition);
+        channelFactory = new GrpcChannelFactory(properties);
+        greeter = channelFactory.getStub("backends", GreeterGrpc.GreeterBlockingStub.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channelFactory.destroy();
+        for (ConfigurableApplicationContext backend : backends) {
+            backend.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void countServed() {
+        servedBefore = served();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printServed() {
+        final long[] served = served();
+        final StringBuilder distribution = new StringBuilder();
+        for (int i = 0; i < served.length; i++) {
+            distribution.append(i == 0 ? "" : " / ").append(served[i] - servedBefore[i]);
+        }
+        System.out.printf("%ncalls served by the backends, the last one slow: %s%n", distribution);
+    }
+
+    @Benchmark
+    public HelloReply sayHello() {
+        return greeter.sayHello(REQUEST);
+    }
+
+    private long[] served() {
+        final long[] served = new long[backends.size()];
+        for (int i = 0; i < served.length; i++) {
+            served[i] = GreeterBackend.greeter(backends.get(i)).getServed();
+        }
+        return served;
+    }
+}
@@ -0,0 +1,182 @@
+package scyuan.spring.boot.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.stub.ServerCalls;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import scyuan.spring.boot.autoconfigure.marshal.PreSerialized;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.RouteGuideGrpc;
+import scyuan.spring.boot.sample.routeguide.RouteNote;
+import scyuan.spring.boot.sample.service.RouteGuideUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The marshallers of the generated code next to the {@link PreSerialized} ones, without a server:
+ * one operation writes every feature of the bundled database into a pooled direct Netty buffer as
+ * the framer does, or reads as many route notes from streams of known length as the deframer hands
+ * them out. The features are written encoded from the messages, or as byte strings serialized
+ * beforehand on the heap or in direct buffers, like the records of a memory-mapped store.
+ * <p>
+ * The padding lengthens the names of the features and the messages of the notes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MarshallerBenchmark {
+
+    @Param({"0", "4096"})
+    public int padding;
+
+    private MethodDescriptor<?, Feature> defaultFeatures;
+
+    private MethodDescriptor<?, Object> preSerializedFeatures;
+
+    private MethodDescriptor<RouteNote, ?> defaultNotes;
+
+    private MethodDescriptor<RouteNote, ?> bufferedNotes;
+
+    private Feature[] features;
+
+    private ByteString[] heapFeatures;
+
+    private ByteString[] directFeatures;
+
+    private byte[][] notes;
+
+    private ByteBuf buffer;
+
+    private ByteBufOutputStream sink;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        final char[] pad = new char[padding];
+        Arrays.fill(pad, 'x');
+        final List<Feature> list = RouteGuideUtil.parseFeatures(RouteGuideUtil.getDefaultFeaturesFile());
+        features = new Feature[list.size()];
+        heapFeatures = new ByteString[list.size()];
+        directFeatures = new ByteString[list.size()];
+        notes = new byte[list.size()][];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = list.get(i).toBuilder().setName(list.get(i).getName() + new String(pad)).build();
+            heapFeatures[i] = features[i].toByteString();
+            final ByteBuffer direct = ByteBuffer.allocateDirect(heapFeatures[i].size());
+            heapFeatures[i].copyTo(direct);
+            direct.flip();
+            directFeatures[i] = UnsafeByteOperations.unsafeWrap(direct);
+            notes[i] = RouteNote.newBuilder().setLocation(features[i].getLocation())
+                    .setMessage(features[i].getName()).build().toByteArray();
+        }
+
+        defaultFeatures = RouteGuideGrpc.METHOD_LIST_FEATURES;
+        preSerializedFeatures = (MethodDescriptor<?, Object>) (MethodDescriptor<?, ?>) PreSerialized.bind(
+                ServerMethodDefinition.create(RouteGuideGrpc.METHOD_LIST_FEATURES,
+                        ServerCalls.asyncServerStreamingCall((request, responseObserver) -> responseObserver.onCompleted())))
+                .getMethodDescriptor();
+        defaultNotes = RouteGuideGrpc.METHOD_ROUTE_CHAT;
+        bufferedNotes = PreSerialized.bind(ServerMethodDefinition.create(RouteGuideGrpc.METHOD_ROUTE_CHAT,
+                ServerCalls.asyncBidiStreamingCall(responseObserver -> null)))
+                .getMethodDescriptor();
+
+        buffer = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+        sink = new ByteBufOutputStream(buffer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public int writeEncoded() throws IOException {
+        buffer.clear();
+        for (Feature feature : features) {
+            drain(defaultFeatures.streamResponse(feature));
+        }
+        return buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writePreSerializedHeap() throws IOException {
+        buffer.clear();
+        for (ByteString feature : heapFeatures) {
+            drain(preSerializedFeatures.streamResponse(feature));
+        }
+        return buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writePreSerializedDirect() throws IOException {
+        buffer.clear();
+        for (ByteString feature : directFeatures) {
+            drain(preSerializedFeatures.streamResponse(feature));
+        }
+        return buffer.writerIndex();
+    }
+
+    @Benchmark
+    public void readDefault(Blackhole blackhole) {
+        for (byte[] note : notes) {
+            blackhole.consume(defaultNotes.parseRequest(new KnownLengthInputStream(note)));
+        }
+    }
+
+    @Benchmark
+    public void readBuffered(Blackhole blackhole) {
+        for (byte[] note : notes) {
+            blackhole.consume(bufferedNotes.parseRequest(new KnownLengthInputStream(note)));
+        }
+    }
+
+    private void drain(InputStream message) throws IOException {
+        // the framer drains the messages that can, and copies the others
+        if (message instanceof Drainable) {
+            ((Drainable) message).drainTo(sink);
+        } else {
+            final byte[] bytes = new byte[message.available()];
+            final int length = message.read(bytes);
+            sink.write(bytes, 0, length);
+        }
+    }
+
+    /**
+     * A message as the deframer hands it out, of known length.
+     */
+    private static final class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+
+        KnownLengthInputStream(byte[] bytes) {
+            super(bytes);
+        }
+    }
+}
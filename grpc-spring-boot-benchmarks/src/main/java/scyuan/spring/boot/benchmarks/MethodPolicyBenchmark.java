@@ -0,0 +1,158 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.ManagedGrpcServer;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The method policies of helloworld.Greeter: a max inbound and outbound message size on SayHello and
+ * a server deadline on the whole service, with gzip or identity responses:
+ * <ul>
+ *     <li>sayHello: a call with a request of compressible text the reply echoes;</li>
+ *     <li>oversizedRequest, oversizedReply and pastDeadline: calls the policies fail, which fail
+ *     the benchmark unless they get the expected status.</li>
+ * </ul>
+ * Every iteration fails unless the server is left with no call in flight.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodPolicyBenchmark {
+
+    private static final String SAY_HELLO = "helloworld.Greeter/SayHello";
+
+    private static final int MAX_INBOUND = 128 * 1024;
+
+    private static final int MAX_OUTBOUND = 64 * 1024;
+
+    private static final long DEADLINE_MILLIS = 100;
+
+    private static final HelloRequest OVERSIZED_REQUEST = HelloRequest.newBuilder().setName(text(MAX_INBOUND + 1)).build();
+
+    private static final HelloRequest OVERSIZED_REPLY = HelloRequest.newBuilder().setName(text(MAX_OUTBOUND + 1)).build();
+
+    private static final HelloRequest PAST_DEADLINE = HelloRequest.newBuilder().setName(BenchmarkGreeter.SLOW).build();
+
+    @Param({"gzip", "identity"})
+    public String encoding;
+
+    @Param({"16384"})
+    public int replySize;
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedGrpcServer server;
+
+    private ManagedChannel channel;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    private HelloRequest request;
+
+    @Setup(Level.Trial)
+    public void start() {
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "--grpc.methods[" + SAY_HELLO + "].max-inbound-message-size=" + MAX_INBOUND,
+                "--grpc.methods[" + SAY_HELLO + "].max-outbound-message-size=" + MAX_OUTBOUND,
+                "--grpc.methods[helloworld.Greeter/*].deadline-millis=" + DEADLINE_MILLIS));
+        if (encoding.equals("gzip")) {
+            args.add("--grpc.methods[" + SAY_HELLO + "].compression=gzip");
+        }
+        context = GreeterBackend.run(args.toArray(new String[args.size()]));
+        server = GreeterBackend.server(context);
+        channel = GreeterBackend.channel(context);
+        greeter = GreeterGrpc.newBlockingStub(channel);
+        request = HelloRequest.newBuilder().setName(text(replySize)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkInFlight() throws InterruptedException {
+        // the server closes the calls before it forgets them
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (server.getInFlightCalls() > 0 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        if (server.getInFlightCalls() > 0) {
+            throw new IllegalStateException(server.getInFlightCalls() + " calls are left in flight");
+        }
+    }
+
+    @Benchmark
+    public HelloReply sayHello() {
+        return greeter.sayHello(request);
+    }
+
+    @Benchmark
+    public Status oversizedRequest() {
+        return expect(Status.Code.RESOURCE_EXHAUSTED, OVERSIZED_REQUEST);
+    }
+
+    @Benchmark
+    public Status oversizedReply() {
+        return expect(Status.Code.RESOURCE_EXHAUSTED, OVERSIZED_REPLY);
+    }
+
+    @Benchmark
+    public Status pastDeadline() {
+        return expect(Status.Code.DEADLINE_EXCEEDED, PAST_DEADLINE);
+    }
+
+    private Status expect(Status.Code code, HelloRequest request) {
+        try {
+            greeter.sayHello(request);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == code) {
+                return e.getStatus();
+            }
+            throw new IllegalStateException("Expected " + code, e);
+        }
+        throw new IllegalStateException("Expected " + code + ", the call succeeded");
+    }
+
+    /**
+     * Words drawn from a small vocabulary, compressible like most text payloads.
+     */
+    private static String text(int length) {
+        final String[] words = {"route", "feature", "point", "note", "summary", "latitude", "longitude", "hello"};
+        final Random random = new Random(42);
+        final StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
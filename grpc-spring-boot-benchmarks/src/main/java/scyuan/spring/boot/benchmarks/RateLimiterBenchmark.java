@@ -0,0 +1,62 @@
+package scyuan.spring.boot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scyuan.spring.boot.autoconfigure.limit.RateLimiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token buckets of the rate limit interceptor, without a server: every operation takes a token
+ * for a random one of the keys. With more keys than the store holds, new keys keep evicting others,
+ * and the number of keys left is printed at the end of every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final int MAX_KEYS = 100000;
+
+    @Param({"1000", "10000000"})
+    public int keys;
+
+    private RateLimiter limiter;
+
+    private Object[] keyObjects;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(100, 100, MAX_KEYS);
+        keyObjects = new Object[keys];
+        for (int i = 0; i < keys; i++) {
+            keyObjects[i] = "caller-" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d keys in the store, %d calls rejected%n", limiter.getKeyCount(), limiter.getRejectedCount());
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return limiter.tryAcquire(keyObjects[ThreadLocalRandom.current().nextInt(keys)], System.nanoTime());
+    }
+}
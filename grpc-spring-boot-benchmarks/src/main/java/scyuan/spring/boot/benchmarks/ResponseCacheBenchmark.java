@@ -0,0 +1,132 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCache;
+import scyuan.spring.boot.autoconfigure.cache.ResponseCacheRegistry;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Greeter whose reply is a pure function of the name, costly to compute and of a few kilobytes,
+ * with its responses cached or not. The names are drawn from a Zipf-like distribution over more
+ * distinct names than the cache holds, so the hit ratio printed at the end of every iteration shows
+ * what the eviction keeps.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseCacheBenchmark {
+
+    private static final String SAY_HELLO = "helloworld.Greeter/SayHello";
+
+    @Param({"cached", "plain"})
+    public String cache;
+
+    @Param({"20000"})
+    public int names;
+
+    @Param({"4194304"})
+    public long cacheMaxBytes;
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedChannel channel;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    private HelloRequest[] requests;
+
+    private ResponseCache responseCache;
+
+    private long hits;
+
+    private long misses;
+
+    @Setup(Level.Trial)
+    public void start() {
+        final List<String> args = new ArrayList<>(Arrays.asList("--greeter.digest-lines=64"));
+        if (cache.equals("cached")) {
+            args.add("--grpc.methods[" + SAY_HELLO + "].cache-ttl-seconds=60");
+            args.add("--grpc.methods[" + SAY_HELLO + "].cache-max-bytes=" + cacheMaxBytes);
+        }
+        context = GreeterBackend.run(args.toArray(new String[args.size()]));
+        channel = GreeterBackend.channel(context);
+        greeter = GreeterGrpc.newBlockingStub(channel);
+        requests = new HelloRequest[names];
+        for (int i = 0; i < names; i++) {
+            requests[i] = HelloRequest.newBuilder().setName("name-" + i).build();
+        }
+        final Collection<ResponseCache> caches = context.getBean(ResponseCacheRegistry.class).getCaches();
+        responseCache = caches.isEmpty() ? null : caches.iterator().next();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void countHits() {
+        if (responseCache != null) {
+            hits = responseCache.getHitCount();
+            misses = responseCache.getMissCount();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRatio() {
+        if (responseCache != null) {
+            final long iterationHits = responseCache.getHitCount() - hits;
+            final long iterationMisses = responseCache.getMissCount() - misses;
+            System.out.printf("%nhit ratio %.3f, %d responses, %d KB, %d evictions%n",
+                    (double) iterationHits / Math.max(1, iterationHits + iterationMisses), responseCache.getSize(),
+                    responseCache.getBytes() >> 10, responseCache.getEvictionCount());
+        }
+    }
+
+    @Benchmark
+    public HelloReply sayHello(Names names) {
+        return greeter.sayHello(requests[names.next(requests.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Names {
+
+        private final Random random = new Random();
+
+        /**
+         * Index drawn with a probability roughly proportional to 1 / (index + 1).
+         */
+        int next(int size) {
+            return (int) Math.min(size - 1, Math.exp(random.nextDouble() * Math.log(size + 1)) - 1);
+        }
+    }
+}
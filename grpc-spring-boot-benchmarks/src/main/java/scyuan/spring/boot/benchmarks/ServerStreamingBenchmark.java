@@ -0,0 +1,43 @@
+package scyuan.spring.boot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.routeguide.Rectangle;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server streaming calls: listFeatures of RouteGuideService over the whole area of the bundled
+ * feature database, one operation being a whole stream.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ServerStreamingBenchmark {
+
+    private static final Rectangle AREA = Rectangle.newBuilder()
+            .setLo(Point.newBuilder().setLatitude(400000000).setLongitude(-750000000))
+            .setHi(Point.newBuilder().setLatitude(420000000).setLongitude(-730000000))
+            .build();
+
+    @Benchmark
+    public void listFeatures(GrpcServerState server, Blackhole blackhole) {
+        final Iterator<Feature> features = server.routeGuide().listFeatures(AREA);
+        while (features.hasNext()) {
+            blackhole.consume(features.next());
+        }
+    }
+}
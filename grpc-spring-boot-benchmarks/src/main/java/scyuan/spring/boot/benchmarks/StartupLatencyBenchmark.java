@@ -0,0 +1,59 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.autoconfigure.GrpcServerProperties;
+import scyuan.spring.boot.autoconfigure.GrpcServerRunner;
+import scyuan.spring.boot.sample.SampleApp;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup-to-first-RPC latency of the sample application: every fork is a fresh JVM that boots the
+ * application on an ephemeral port once and times it until the first SayHello call over a new
+ * channel completes, class loading and all.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class StartupLatencyBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedChannel channel;
+
+    @Benchmark
+    public HelloReply startToFirstCall() {
+        context = SpringApplication.run(SampleApp.class, "--grpc.port=0",
+                "--logging.level.root=WARN", "--spring.main.banner-mode=off");
+        final int port = context.getBean(GrpcServerRunner.class).getServer(GrpcServerProperties.DEFAULT_SERVER).getPort();
+        channel = NettyChannelBuilder.forAddress("localhost", port).usePlaintext(true).build();
+        return GreeterGrpc.newBlockingStub(channel).withDeadlineAfter(10, TimeUnit.SECONDS)
+                .sayHello(HelloRequest.newBuilder().setName("startup").build());
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+}
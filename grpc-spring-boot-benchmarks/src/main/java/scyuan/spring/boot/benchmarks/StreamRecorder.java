@@ -0,0 +1,66 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Response observer of the client and bidi streaming calls, which counts the responses and lets
+ * the benchmark wait for the end of the call.
+ */
+class StreamRecorder<T> implements StreamObserver<T> {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private volatile T last;
+
+    private volatile int count;
+
+    private volatile Throwable error;
+
+    @Override
+    public void onNext(T value) {
+        last = value;
+        count++;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error = t;
+        completed.countDown();
+    }
+
+    @Override
+    public void onCompleted() {
+        completed.countDown();
+    }
+
+    /**
+     * Waits for the end of the call and returns the number of responses.
+     */
+    int awaitCount() throws Exception {
+        await();
+        return count;
+    }
+
+    /**
+     * Waits for the end of the call and returns its last response.
+     */
+    T awaitLast() throws Exception {
+        await();
+        return last;
+    }
+
+    private void await() throws Exception {
+        if (!completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("The call did not complete within " + TIMEOUT_SECONDS + " seconds");
+        }
+        if (error != null) {
+            throw new IllegalStateException("The call failed", error);
+        }
+    }
+}
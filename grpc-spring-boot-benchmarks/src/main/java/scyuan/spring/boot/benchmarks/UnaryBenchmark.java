@@ -0,0 +1,33 @@
+package scyuan.spring.boot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unary calls: SayHello of GreeterService, which runs on the server executor.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class UnaryBenchmark {
+
+    private static final HelloRequest REQUEST = HelloRequest.newBuilder().setName("benchmark").build();
+
+    @Benchmark
+    public HelloReply sayHello(GrpcServerState server) {
+        return server.greeter().sayHello(REQUEST);
+    }
+}
@@ -0,0 +1,76 @@
+package scyuan.spring.boot.benchmarks;
+
+import io.grpc.ManagedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking service on a FIXED platform thread pool and on the VIRTUAL executor: every call sleeps
+ * to stand in for a JDBC or HTTP call, and the 200 benchmark threads keep more calls in flight than
+ * the pool has threads, which the platform pool queues while virtual threads do not. VIRTUAL needs a
+ * JDK 21+ runtime.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(200)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    private static final HelloRequest REQUEST = HelloRequest.newBuilder().setName("benchmark").build();
+
+    @Param({"FIXED", "VIRTUAL"})
+    public String executor;
+
+    @Param({"20"})
+    public long blockMillis;
+
+    @Param({"64"})
+    public int platformThreads;
+
+    private ConfigurableApplicationContext context;
+
+    private ManagedChannel channel;
+
+    private GreeterGrpc.GreeterBlockingStub greeter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        GrpcServerState.checkExecutor(executor);
+        context = GreeterBackend.run("--grpc.executor=" + executor, "--grpc.executor-threads=" + platformThreads,
+                "--greeter.delay-millis=" + blockMillis);
+        channel = GreeterBackend.channel(context);
+        greeter = GreeterGrpc.newBlockingStub(channel);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    public HelloReply sayHello() {
+        return greeter.sayHello(REQUEST);
+    }
+}
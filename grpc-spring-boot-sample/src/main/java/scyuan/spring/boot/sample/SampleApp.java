@@ -1,7 +1,10 @@
 package scyuan.spring.boot.sample;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import scyuan.spring.boot.autoconfigure.annotation.EnableGrpcServer;
 
 /**
@@ -16,4 +19,9 @@ public class SampleApp {
         SpringApplication.run(SampleApp.class, args);
     }
 
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
 }
@@ -0,0 +1,251 @@
+package scyuan.spring.boot.sample.service;
+
+import com.google.protobuf.ByteString;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only spatial index over the features.
+ * <ul>
+ *     <li>Exact location lookups go through an open-addressing hash table keyed by the latitude and
+ *     longitude packed into one {@code long}, so no key object is built per lookup.</li>
+ *     <li>Rectangle queries go through a uniform grid: the features are sorted by cell, and a second
+ *     table maps every non-empty cell to its run of features, so a query only visits the cells that
+ *     overlap the rectangle, or all the non-empty cells when it overlaps even more.</li>
+ * </ul>
+ * Results keep the order of the feature list, like a scan would. Only the coordinates are copied
+ * out of the {@link FeatureStore}, features are read from it when they are returned.
+ */
+public class FeatureIndex {
+
+    private static final int MIN_CELL_SIZE = 1000;
+
+    private final FeatureStore features;
+
+    private final int[] latitudes;
+    private final int[] longitudes;
+
+    private final LongIntTable locations;
+
+    private final int cellSize;
+
+    /** Feature positions sorted by cell. */
+    private final int[] cellOrder;
+
+    /** Number of non-empty cells, and the start and end of their run in {@link #cellOrder}. */
+    private final int cellCount;
+    private final int[] cellStarts;
+    private final int[] cellEnds;
+
+    /** Cell key to cell number. */
+    private final LongIntTable cells;
+
+    public FeatureIndex(List<Feature> features) {
+        this(new HeapFeatureStore(features));
+    }
+
+    public FeatureIndex(FeatureStore features) {
+        final int size = features.size();
+        this.features = features;
+        this.latitudes = new int[size];
+        this.longitudes = new int[size];
+        this.locations = new LongIntTable(size);
+
+        long minLat = Long.MAX_VALUE, maxLat = Long.MIN_VALUE, minLon = Long.MAX_VALUE, maxLon = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            final Point location = features.location(i);
+            final int lat = location.getLatitude();
+            final int lon = location.getLongitude();
+            latitudes[i] = lat;
+            longitudes[i] = lon;
+            // the first feature at a location wins, as with a scan
+            locations.putIfAbsent(pack(lat, lon), i);
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+        }
+
+        // about one feature per cell on evenly spread data
+        final double area = size == 0 ? 0 : (double) (maxLat - minLat + 1) * (maxLon - minLon + 1);
+        this.cellSize = (int) Math.max(MIN_CELL_SIZE, Math.min(Integer.MAX_VALUE, Math.sqrt(area / Math.max(1, size))));
+
+        // counting sort of the positions by cell, which keeps list order within a cell
+        final int[] cellOf = new int[size];
+        int[] counts = new int[16];
+        this.cells = new LongIntTable(size);
+        int cellCount = 0;
+        for (int i = 0; i < size; i++) {
+            final int existing = cells.putIfAbsent(cellKey(cell(latitudes[i]), cell(longitudes[i])), cellCount);
+            final int cell = existing >= 0 ? existing : cellCount++;
+            if (cell == counts.length) {
+                counts = Arrays.copyOf(counts, cell * 2);
+            }
+            counts[cell]++;
+            cellOf[i] = cell;
+        }
+        this.cellCount = cellCount;
+        this.cellStarts = new int[cellCount];
+        this.cellEnds = new int[cellCount];
+        for (int cell = 0, start = 0; cell < cellCount; cell++) {
+            cellStarts[cell] = start;
+            cellEnds[cell] = start;
+            start += counts[cell];
+        }
+        this.cellOrder = new int[size];
+        for (int i = 0; i < size; i++) {
+            cellOrder[cellEnds[cellOf[i]]++] = i;
+        }
+    }
+
+    public int size() {
+        return features.size();
+    }
+
+    public Feature get(int position) {
+        return features.get(position);
+    }
+
+    public ByteString serialized(int position) {
+        return features.serialized(position);
+    }
+
+    public boolean exists(int position) {
+        return features.exists(position);
+    }
+
+    /**
+     * Returns the first feature at the given location, or null when there is none.
+     */
+    public Feature find(int latitude, int longitude) {
+        final int position = positionOf(latitude, longitude);
+        return position < 0 ? null : features.get(position);
+    }
+
+    /**
+     * Returns the position of the first feature at the given location, or -1 when there is none.
+     */
+    public int positionOf(int latitude, int longitude) {
+        return locations.get(pack(latitude, longitude));
+    }
+
+    /**
+     * Returns the positions, in list order, of the features within the given bounds (inclusive).
+     */
+    public int[] within(int left, int right, int bottom, int top) {
+        final long fromLat = cell(bottom), toLat = cell(top), fromLon = cell(left), toLon = cell(right);
+        final long overlapped = (toLat - fromLat + 1) * (toLon - fromLon + 1);
+
+        int[] matches = new int[16];
+        int count = 0;
+        if (overlapped <= cellCount) {
+            for (long lat = fromLat; lat <= toLat; lat++) {
+                for (long lon = fromLon; lon <= toLon; lon++) {
+                    final int cell = cells.get(cellKey(lat, lon));
+                    if (cell >= 0) {
+                        for (int i = cellStarts[cell]; i < cellEnds[cell]; i++) {
+                            final int position = cellOrder[i];
+                            if (contains(position, left, right, bottom, top)) {
+                                if (count == matches.length) {
+                                    matches = Arrays.copyOf(matches, count * 2);
+                                }
+                                matches[count++] = position;
+                            }
+                        }
+                    }
+                }
+            }
+        } else {
+            // the rectangle spans more cells than there are non-empty ones, scanning is cheaper
+            for (int position = 0; position < latitudes.length; position++) {
+                if (contains(position, left, right, bottom, top)) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = position;
+                }
+            }
+        }
+        final int[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private boolean contains(int position, int left, int right, int bottom, int top) {
+        final int lat = latitudes[position];
+        final int lon = longitudes[position];
+        return lon >= left && lon <= right && lat >= bottom && lat <= top;
+    }
+
+    private long cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long cellKey(long latCell, long lonCell) {
+        return (latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    private static long pack(int latitude, int longitude) {
+        return ((long) latitude << 32) | (longitude & 0xffffffffL);
+    }
+
+    /**
+     * Open-addressing hash table from {@code long} keys to non-negative {@code int} values, with
+     * linear probing.
+     */
+    private static class LongIntTable {
+
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        LongIntTable(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            Arrays.fill(values, -1);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Returns the value already associated with the key, or -1 after associating the given one.
+         */
+        int putIfAbsent(long key, int value) {
+            int slot = slot(key);
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            return -1;
+        }
+
+        int get(long key) {
+            int slot = slot(key);
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int slot(long key) {
+            // murmur3 finalizer, packed coordinates are far from uniform in the low bits
+            long h = key;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return (int) h & mask;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package scyuan.spring.boot.sample.service;
+
+import com.google.protobuf.ByteString;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+
+/**
+ * Read-only, positional access to a feature database.
+ */
+public interface FeatureStore {
+
+    int size();
+
+    Feature get(int position);
+
+    /**
+     * Returns the location of the feature at the given position, which stores may decode more
+     * cheaply than the whole feature.
+     */
+    Point location(int position);
+
+    /**
+     * Indicates whether the feature at the given position exists (i.e. has a valid name), which
+     * stores may tell without decoding it.
+     */
+    boolean exists(int position);
+
+    /**
+     * Returns the feature at the given position serialized, which stores may hand out without
+     * encoding it on every call.
+     */
+    ByteString serialized(int position);
+}
@@ -0,0 +1,56 @@
+package scyuan.spring.boot.sample.service;
+
+import com.google.protobuf.ByteString;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+
+import java.util.List;
+
+/**
+ * Keeps every feature decoded on the heap, and serialized too once it has been asked for so.
+ */
+public class HeapFeatureStore implements FeatureStore {
+
+    private final Feature[] features;
+
+    private final ByteString[] serialized;
+
+    public HeapFeatureStore(List<Feature> features) {
+        this.features = features.toArray(new Feature[features.size()]);
+        this.serialized = new ByteString[this.features.length];
+    }
+
+    @Override
+    public int size() {
+        return features.length;
+    }
+
+    @Override
+    public Feature get(int position) {
+        return features[position];
+    }
+
+    @Override
+    public Point location(int position) {
+        return features[position].getLocation();
+    }
+
+    @Override
+    public boolean exists(int position) {
+        return RouteGuideUtil.exists(features[position]);
+    }
+
+    /**
+     * Serializes the feature the first time. Concurrent first calls may serialize it more than once,
+     * byte strings being immutable any of them will do.
+     */
+    @Override
+    public ByteString serialized(int position) {
+        ByteString bytes = serialized[position];
+        if (bytes == null) {
+            bytes = features[position].toByteString();
+            serialized[position] = bytes;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package scyuan.spring.boot.sample.service;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped file of length-delimited {@link Feature} records, as written by
+ * {@link Feature#writeDelimitedTo}. Opening only walks the length prefixes, so the heap holds one
+ * offset per feature and the records are decoded when they are read. Files are mapped at once, so
+ * they are limited to 2GB.
+ */
+public class MappedFeatureStore implements FeatureStore {
+
+    private static final int LOCATION_TAG = tag(Feature.LOCATION_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int LATITUDE_TAG = tag(Point.LATITUDE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+    private static final int LONGITUDE_TAG = tag(Point.LONGITUDE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    /** Offset of the length prefix of every record, and the end of the last one. */
+    private final int[] offsets;
+
+    MappedFeatureStore(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        final ByteBuffer input = buffer.duplicate();
+        int[] offsets = new int[1024];
+        int size = 0;
+        while (input.hasRemaining()) {
+            if (size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[size] = input.position();
+            final int length = readLength(input);
+            if (length < 0 || length > input.remaining()) {
+                throw new IOException("Truncated feature record at offset " + offsets[size]);
+            }
+            input.position(input.position() + length);
+            size++;
+        }
+        offsets[size] = input.position();
+        this.size = size;
+        this.offsets = Arrays.copyOf(offsets, size + 1);
+    }
+
+    public static MappedFeatureStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            // the mapping outlives the channel
+            return new MappedFeatureStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Feature get(int position) {
+        try {
+            return Feature.parseFrom(record(position));
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed feature record " + position, e);
+        }
+    }
+
+    /**
+     * Decodes the location only, skipping the name.
+     */
+    @Override
+    public Point location(int position) {
+        try {
+            final CodedInputStream input = record(position);
+            int latitude = 0;
+            int longitude = 0;
+            for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+                if (tag != LOCATION_TAG) {
+                    input.skipField(tag);
+                    continue;
+                }
+                final int limit = input.pushLimit(input.readRawVarint32());
+                for (int pointTag = input.readTag(); pointTag != 0; pointTag = input.readTag()) {
+                    if (pointTag == LATITUDE_TAG) {
+                        latitude = input.readInt32();
+                    } else if (pointTag == LONGITUDE_TAG) {
+                        longitude = input.readInt32();
+                    } else {
+                        input.skipField(pointTag);
+                    }
+                }
+                input.popLimit(limit);
+            }
+            return Point.newBuilder().setLatitude(latitude).setLongitude(longitude).build();
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed feature record " + position, e);
+        }
+    }
+
+    /**
+     * Looks at the first byte of the record only.
+     */
+    @Override
+    public boolean exists(int position) {
+        return RouteGuideUtil.exists(serialized(position));
+    }
+
+    /**
+     * Returns the record as it is in the mapped file, without copying it out.
+     */
+    @Override
+    public ByteString serialized(int position) {
+        return UnsafeByteOperations.unsafeWrap(slice(position));
+    }
+
+    private CodedInputStream record(int position) {
+        return CodedInputStream.newInstance(slice(position));
+    }
+
+    private ByteBuffer slice(int position) {
+        final ByteBuffer record = buffer.duplicate();
+        record.position(offsets[position]);
+        readLength(record);
+        record.limit(offsets[position + 1]);
+        return record.slice();
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return fieldNumber << 3 | wireType;
+    }
+
+    /**
+     * Reads a varint32 length prefix, or returns -1 when it is malformed or truncated.
+     */
+    private static int readLength(ByteBuffer input) {
+        int length = 0;
+        for (int shift = 0; shift < 32 && input.hasRemaining(); shift += 7) {
+            final byte b = input.get();
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return length;
+            }
+        }
+        return -1;
+    }
+}
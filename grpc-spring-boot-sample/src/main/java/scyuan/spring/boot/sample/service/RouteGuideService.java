@@ -1,17 +1,20 @@
 package scyuan.spring.boot.sample.service;
 
+import com.google.protobuf.ByteString;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ResourceUtils;
 import scyuan.spring.boot.autoconfigure.annotation.GrpcService;
+import scyuan.spring.boot.autoconfigure.marshal.PreSerialized;
+import scyuan.spring.boot.autoconfigure.stub.FlowControlledStreamer;
 import scyuan.spring.boot.sample.routeguide.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.net.URL;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.Math.*;
@@ -19,61 +22,78 @@ import static java.lang.Math.*;
 /**
  * Created by yuanshichao on 2017/2/21.
  */
-@GrpcService
+@GrpcService(executor = "route-guide")
 public class RouteGuideService extends RouteGuideGrpc.RouteGuideImplBase {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteGuideService.class);
 
-    private final Collection<Feature> features;
-    private final ConcurrentHashMap<Point, List<RouteNote>> routeNotes = new ConcurrentHashMap<Point, List<RouteNote>>();
-
-    public RouteGuideService() throws IOException {
-        this.features = RouteGuideUtil.parseFeatures(RouteGuideUtil.getDefaultFeaturesFile());
+    private final FeatureIndex features;
+    private final RouteNoteStore routeNotes;
+
+    @Autowired
+    public RouteGuideService(@Value("${route-guide.features:}") String featuresFile,
+                             RouteNoteStore routeNotes) throws IOException {
+        this.routeNotes = routeNotes;
+        long start = System.nanoTime();
+        URL file = featuresFile.isEmpty() ? RouteGuideUtil.getDefaultFeaturesFile() : ResourceUtils.getURL(featuresFile);
+        FeatureStore store = RouteGuideUtil.loadFeatures(file);
+        this.features = new FeatureIndex(store);
+        LOGGER.info("Loaded {} features from {} into a {} in {} ms", features.size(), file,
+                store.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
     /**
      * Gets the {@link Feature} at the requested {@link Point}. If no feature at that location
-     * exists, an unnamed feature is returned at the provided location.
+     * exists, an unnamed feature is returned at the provided location. Features of the database are
+     * sent as they are stored when the method is pre-serialized.
      *
      * @param request the requested location for the feature.
      * @param responseObserver the observer that will receive the feature at the requested point.
      */
     @Override
     public void getFeature(Point request, StreamObserver<Feature> responseObserver) {
-        responseObserver.onNext(checkFeature(request));
+        final int position = features.positionOf(request.getLatitude(), request.getLongitude());
+        if (position >= 0 && PreSerialized.isEnabled()) {
+            PreSerialized.<ByteString>responses(responseObserver).onNext(features.serialized(position));
+        } else {
+            responseObserver.onNext(position >= 0 ? features.get(position) : unnamedFeature(request));
+        }
         responseObserver.onCompleted();
     }
 
     /**
-     * Gets all features contained within the given bounding {@link Rectangle}.
+     * Gets all features contained within the given bounding {@link Rectangle}. The features are
+     * sent only as fast as the client reads them, as they are stored when the method is
+     * pre-serialized.
      *
      * @param request
      * @param responseObserver
      */
     @Override
     public void listFeatures(Rectangle request, StreamObserver<Feature> responseObserver) {
-        int left = min(request.getLo().getLongitude(), request.getHi().getLongitude());
-        int right = max(request.getLo().getLongitude(), request.getHi().getLongitude());
-        int top = max(request.getLo().getLatitude(), request.getHi().getLatitude());
-        int bottom = min(request.getLo().getLatitude(), request.getHi().getLatitude());
-
-        for (Feature feature : features) {
-            if (!RouteGuideUtil.exists(feature)) {
-                continue;
-            }
-
-            int lat = feature.getLocation().getLatitude();
-            int lon = feature.getLocation().getLongitude();
-            if (lon >= left && lon <= right && lat >= bottom && lat <= top) {
-                responseObserver.onNext(feature);
-            }
+        final int left = min(request.getLo().getLongitude(), request.getHi().getLongitude());
+        final int right = max(request.getLo().getLongitude(), request.getHi().getLongitude());
+        final int top = max(request.getLo().getLatitude(), request.getHi().getLatitude());
+        final int bottom = min(request.getLo().getLatitude(), request.getHi().getLatitude());
+
+        final int[] within = features.within(left, right, bottom, top);
+        if (PreSerialized.isEnabled()) {
+            FlowControlledStreamer.from(Arrays.stream(within)
+                    .mapToObj(features::serialized)
+                    .filter(RouteGuideUtil::exists))
+                    .start(PreSerialized.<ByteString>responses(responseObserver));
+            return;
         }
-        responseObserver.onCompleted();
+        FlowControlledStreamer.from(Arrays.stream(within)
+                .mapToObj(features::get)
+                .filter(RouteGuideUtil::exists))
+                .start(responseObserver);
     }
 
     /**
      * Gets a stream of points, and responds with statistics about the "trip": number of points,
      * number of known features visited, total distance traveled, and total time spent.
+     * The distance is measured as {@link RouteDistance} does, in chunks of points.
      *
      * @param responseObserver an observer to receive the response summary.
      * @return an observer to receive the requested route points.
@@ -83,23 +103,19 @@ public class RouteGuideService extends RouteGuideGrpc.RouteGuideImplBase {
         return new StreamObserver<Point>() {
             int pointCount;
             int featureCount;
-            int distance;
-            Point previous;
+            final RouteDistance distance = new RouteDistance();
             final long startTime = System.nanoTime();
 
             @Override
             public void onNext(Point point) {
                 pointCount++;
-                if (RouteGuideUtil.exists(checkFeature(point))) {
+                final int position = features.positionOf(point.getLatitude(), point.getLongitude());
+                if (position >= 0 && features.exists(position)) {
                     featureCount++;
                 }
-                // For each point after the first, add the incremental distance from the previous point to
-                // the total distance value.
-                if (previous != null) {
-                    distance += calcDistance(previous, point);
-                }
-
-                previous = point;
+                // The distance from the previous point is added once enough points are collected to
+                // measure them together.
+                distance.add(point);
             }
 
             @Override
@@ -111,7 +127,7 @@ public class RouteGuideService extends RouteGuideGrpc.RouteGuideImplBase {
             public void onCompleted() {
                 long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
                 responseObserver.onNext(RouteSummary.newBuilder().setPointCount(pointCount)
-                        .setFeatureCount(featureCount).setDistance(distance)
+                        .setFeatureCount(featureCount).setDistance(distance.distance())
                         .setElapsedTime((int)seconds).build());
                 responseObserver.onCompleted();
 
@@ -124,15 +140,11 @@ public class RouteGuideService extends RouteGuideGrpc.RouteGuideImplBase {
         return new StreamObserver<RouteNote>() {
             @Override
             public void onNext(RouteNote routeNote) {
-                List<RouteNote> notes = getOrCreateNotes(routeNote.getLocation());
-
                 // Respond with all previous notes at this location.
-                for (RouteNote prevNote : notes.toArray(new RouteNote[0])) {
-                    responseObserver.onNext(prevNote);
-                }
+                routeNotes.forEach(routeNote.getLocation(), responseObserver::onNext);
 
-                // Now add the new note to the list
-                notes.add(routeNote);
+                // Now add the new note to the store
+                routeNotes.add(routeNote);
             }
 
             @Override
@@ -147,54 +159,7 @@ public class RouteGuideService extends RouteGuideGrpc.RouteGuideImplBase {
         };
     }
 
-    private List<RouteNote> getOrCreateNotes(Point locatoin) {
-        List<RouteNote> notes = Collections.synchronizedList(new ArrayList<RouteNote>());
-        List<RouteNote> prevNotes = routeNotes.putIfAbsent(locatoin, notes);
-        return prevNotes != null ? prevNotes : notes;
-    }
-
-    /**
-     * Gets the feature at the given point.
-     *
-     * @param location the location to check.
-     * @return The feature object at the point.
-     */
-    private Feature checkFeature(Point location) {
-        for (Feature feature : features) {
-            if (feature.getLocation().getLatitude() == location.getLatitude()
-                    && feature.getLocation().getLongitude() == location.getLongitude()) {
-                return feature;
-            }
-        }
-
-        // No feature was found, return an unnamed feature.
+    private static Feature unnamedFeature(Point location) {
         return Feature.newBuilder().setName("").setLocation(location).build();
     }
-
-    /**
-     * Calculate the distance between two points using the "haversine" formula.
-     * This code was taken from http://www.movable-type.co.uk/scripts/latlong.html.
-     *
-     * @param start The starting point
-     * @param end The end point
-     * @return The distance between the points in meters
-     */
-    private static int calcDistance(Point start, Point end) {
-        double lat1 = RouteGuideUtil.getLatitude(start);
-        double lat2 = RouteGuideUtil.getLatitude(end);
-        double lon1 = RouteGuideUtil.getLongitude(start);
-        double lon2 = RouteGuideUtil.getLongitude(end);
-        int r = 6371000; // meters
-        double phi1 = toRadians(lat1);
-        double phi2 = toRadians(lat2);
-        double deltaPhi = toRadians(lat2 - lat1);
-        double deltaLambda = toRadians(lon2 - lon1);
-
-        double a = sin(deltaPhi / 2) * sin(deltaPhi / 2)
-                + cos(phi1) * cos(phi2) * sin(deltaLambda / 2) * sin(deltaLambda / 2);
-        double c = 2 * atan2(sqrt(a), sqrt(1 - a));
-
-        return (int) (r * c);
-    }
-
 }
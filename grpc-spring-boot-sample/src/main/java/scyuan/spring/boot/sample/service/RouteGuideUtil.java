@@ -1,16 +1,26 @@
 package scyuan.spring.boot.sample.service;
 
-import com.google.protobuf.util.JsonFormat;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.WireFormat;
 import scyuan.spring.boot.sample.routeguide.Feature;
-import scyuan.spring.boot.sample.routeguide.FeatureDatabase;
 import scyuan.spring.boot.sample.routeguide.Point;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by yuanshichao on 2017/2/21.
@@ -19,6 +29,8 @@ public class RouteGuideUtil {
 
     private static final double COORD_FACTOR = 1e7;
 
+    private static final byte NAME_TAG = (byte) (Feature.NAME_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
     /**
      * Gets the latitude for the given point.
      * @param location
@@ -52,20 +64,121 @@ public class RouteGuideUtil {
      * @throws IOException
      */
     public static List<Feature> parseFeatures(URL file) throws IOException {
-        InputStream input = file.openStream();
+        List<Feature> features = new ArrayList<Feature>();
+        readFeatures(file, features::add);
+        return features;
+    }
+
+    /**
+     * Streams the features of the JSON input file to the consumer one at a time, without holding
+     * the whole database in memory.
+     * @param file
+     * @param consumer
+     * @throws IOException
+     */
+    public static void readFeatures(URL file, Consumer<Feature> consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(file.openStream(), StandardCharsets.UTF_8))) {
+            Feature.Builder feature = Feature.newBuilder();
+            Point.Builder location = Point.newBuilder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"feature".equals(reader.nextName()) || isNull(reader)) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    consumer.accept(readFeature(reader, feature.clear(), location.clear()));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
 
+    /**
+     * Converts the JSON input file to the length-delimited binary format of {@link MappedFeatureStore}.
+     * @param file
+     * @param output
+     * @return the number of features written
+     * @throws IOException
+     */
+    public static int writeFeatures(URL file, Path output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            int[] count = new int[1];
+            readFeatures(file, feature -> {
+                try {
+                    feature.writeDelimitedTo(out);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return count[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Loads the features of a JSON file onto the heap, or maps a binary one, selected by the
+     * {@code .json} extension.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static FeatureStore loadFeatures(URL file) throws IOException {
+        if (file.getPath().endsWith(".json")) {
+            return new HeapFeatureStore(parseFeatures(file));
+        }
+        if (!"file".equals(file.getProtocol())) {
+            throw new IOException("Only files can be mapped: " + file);
+        }
         try {
-            Reader reader = new InputStreamReader(input);
-            try {
-                FeatureDatabase.Builder database = FeatureDatabase.newBuilder();
-                JsonFormat.parser().merge(reader, database);
-                return database.getFeatureList();
-            } finally {
-                reader.close();
+            return MappedFeatureStore.open(Paths.get(file.toURI()));
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid feature database location: " + file, e);
+        }
+    }
+
+    private static Feature readFeature(JsonReader reader, Feature.Builder feature, Point.Builder location)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull(reader)) {
+                reader.skipValue();
+            } else if ("name".equals(name)) {
+                feature.setName(reader.nextString());
+            } else if ("location".equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (isNull(reader)) {
+                        reader.skipValue();
+                    } else if ("latitude".equals(field)) {
+                        location.setLatitude(reader.nextInt());
+                    } else if ("longitude".equals(field)) {
+                        location.setLongitude(reader.nextInt());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                feature.setLocation(location);
+            } else {
+                reader.skipValue();
             }
-        } finally {
-            input.close();
         }
+        reader.endObject();
+        return feature.build();
+    }
+
+    /**
+     * JSON nulls stand for default values, as with JsonFormat.
+     */
+    private static boolean isNull(JsonReader reader) throws IOException {
+        return reader.peek() == JsonToken.NULL;
     }
 
     /**
@@ -77,4 +190,12 @@ public class RouteGuideUtil {
         return feature != null && !feature.getName().isEmpty();
     }
 
+    /**
+     * Indicates whether the given serialized feature exists, without decoding it: the name being
+     * its first field, a serializer writes it first, and leaves it out when it is empty.
+     */
+    public static boolean exists(ByteString feature) {
+        return !feature.isEmpty() && feature.byteAt(0) == NAME_TAG;
+    }
+
 }
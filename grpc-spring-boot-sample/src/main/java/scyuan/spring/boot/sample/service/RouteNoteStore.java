@@ -0,0 +1,266 @@
+package scyuan.spring.boot.sample.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcMeterBinder;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.routeguide.RouteNote;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded store of the route notes of routeChat.
+ * <ul>
+ *     <li>Every location keeps its latest notes in a ring buffer, of the capacity rounded up to a
+ *     power of two. Appending counts itself in the writers of the ring and claims a sequence, each
+ *     with an atomic operation, and overwrites the oldest slot, so writers to a hot location never
+ *     wait on each other.</li>
+ *     <li>Reading walks the ring up to the sequence seen when it started, skipping the slots that
+ *     were overwritten since or have expired, so it needs neither a lock nor a copy.</li>
+ *     <li>Notes expire after the TTL, and a sweeper drops the locations without a live note. It
+ *     first marks the ring dead, only while no note is being appended to it, so a note appended
+ *     meanwhile keeps the ring, and a writer finding it dead stores its note in a new one.</li>
+ *     <li>At most max-locations rings exist, a ring is only created once it got one of the
+ *     max-locations places, and notes at new locations are not stored beyond it, so the store
+ *     never holds more than max-locations * capacity notes.</li>
+ * </ul>
+ */
+@Component
+public class RouteNoteStore implements GrpcMeterBinder, DisposableBean {
+
+    private final int capacity;
+
+    private final long ttlNanos;
+
+    private final int maxLocations;
+
+    private final ConcurrentHashMap<Point, Ring> rings = new ConcurrentHashMap<>();
+
+    /** Number of rings, or places taken by rings being created. */
+    private final AtomicInteger locations = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public RouteNoteStore(@Value("${route-guide.notes.capacity:64}") int capacity,
+                          @Value("${route-guide.notes.ttl-seconds:3600}") long ttlSeconds,
+                          @Value("${route-guide.notes.max-locations:100000}") int maxLocations) {
+        if (capacity <= 0 || ttlSeconds <= 0 || maxLocations <= 0) {
+            throw new IllegalArgumentException("Route note capacity, TTL and max locations must be positive");
+        }
+        // a power of two, so that a sequence maps to its slot with a mask
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxLocations = maxLocations;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("route-note-sweeper-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long period = Math.max(1, ttlSeconds / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stores the note, returns false when it was dropped because the store is full of locations.
+     */
+    public boolean add(RouteNote note) {
+        final Point location = note.getLocation();
+        while (true) {
+            Ring ring = rings.get(location);
+            if (ring == null) {
+                ring = rings.computeIfAbsent(location, key -> reserveLocation() ? new Ring(capacity) : null);
+                if (ring == null) {
+                    rejected.increment();
+                    return false;
+                }
+            }
+            // the sweeper may have marked the ring dead, store the note in a new one
+            if (ring.add(note, System.nanoTime())) {
+                return true;
+            }
+        }
+    }
+
+    private boolean reserveLocation() {
+        while (true) {
+            final int current = locations.get();
+            if (current >= maxLocations) {
+                return false;
+            }
+            if (locations.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Passes the live notes at the location, oldest first, to the consumer.
+     */
+    public void forEach(Point location, Consumer<RouteNote> consumer) {
+        final Ring ring = rings.get(location);
+        if (ring != null) {
+            ring.forEach(System.nanoTime() - ttlNanos, consumer);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getLocationCount() {
+        return rings.size();
+    }
+
+    /**
+     * Number of notes held, expired ones included until they are overwritten or swept.
+     */
+    public long getNoteCount() {
+        long count = 0;
+        for (Ring ring : rings.values()) {
+            count += ring.size();
+        }
+        return count;
+    }
+
+    /**
+     * Upper bound of {@link #getNoteCount()}.
+     */
+    public long getMaxNoteCount() {
+        return (long) maxLocations * capacity;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    void sweep() {
+        final long expiry = System.nanoTime() - ttlNanos;
+        for (Map.Entry<Point, Ring> entry : rings.entrySet()) {
+            final Ring ring = entry.getValue();
+            if (ring.lastWriteNanos - expiry < 0 && ring.kill(expiry) && rings.remove(entry.getKey(), ring)) {
+                locations.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("routeguide.notes", this, RouteNoteStore::getNoteCount)
+                .description("Route notes held").register(registry);
+        Gauge.builder("routeguide.notes.max", this, RouteNoteStore::getMaxNoteCount)
+                .description("Bound of the route notes held").register(registry);
+        Gauge.builder("routeguide.notes.locations", this, RouteNoteStore::getLocationCount)
+                .description("Locations with route notes").register(registry);
+        FunctionCounter.builder("routeguide.notes.rejected", this, RouteNoteStore::getRejectedCount)
+                .description("Route notes dropped because max-locations was reached").register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+    }
+
+    private static final class Ring {
+
+        private static final int DEAD = -1;
+
+        private final AtomicReferenceArray<Entry> slots;
+
+        private final int mask;
+
+        /** Sequence of the next note. */
+        private final AtomicLong tail = new AtomicLong();
+
+        /** Number of notes being appended, or {@link #DEAD} once the sweeper dropped the ring. */
+        private final AtomicInteger writers = new AtomicInteger();
+
+        volatile long lastWriteNanos = System.nanoTime();
+
+        Ring(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Appends the note, returns false when the ring is dead and the note was not stored.
+         */
+        boolean add(RouteNote note, long nowNanos) {
+            while (true) {
+                final int current = writers.get();
+                if (current == DEAD) {
+                    return false;
+                }
+                if (writers.compareAndSet(current, current + 1)) {
+                    break;
+                }
+            }
+            try {
+                final long sequence = tail.getAndIncrement();
+                slots.set((int) sequence & mask, new Entry(note, sequence, nowNanos));
+                lastWriteNanos = nowNanos;
+                return true;
+            } finally {
+                writers.decrementAndGet();
+            }
+        }
+
+        /**
+         * Marks the ring dead when no note is being appended and none was since the expiry.
+         */
+        boolean kill(long expiryNanos) {
+            if (!writers.compareAndSet(0, DEAD)) {
+                return false;
+            }
+            // the notes appended before it was marked are all visible now
+            if (lastWriteNanos - expiryNanos >= 0) {
+                writers.set(0);
+                return false;
+            }
+            return true;
+        }
+
+        void forEach(long expiryNanos, Consumer<RouteNote> consumer) {
+            final long end = tail.get();
+            for (long sequence = Math.max(0, end - slots.length()); sequence < end; sequence++) {
+                final Entry entry = slots.get((int) sequence & mask);
+                // a null or mismatching sequence is a slot still being written or already overwritten
+                if (entry != null && entry.sequence == sequence && entry.timestampNanos - expiryNanos >= 0) {
+                    consumer.accept(entry.note);
+                }
+            }
+        }
+
+        long size() {
+            return Math.min(tail.get(), slots.length());
+        }
+    }
+
+    private static final class Entry {
+
+        final RouteNote note;
+        final long sequence;
+        final long timestampNanos;
+
+        Entry(RouteNote note, long sequence, long timestampNanos) {
+            this.note = note;
+            this.sequence = sequence;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+}
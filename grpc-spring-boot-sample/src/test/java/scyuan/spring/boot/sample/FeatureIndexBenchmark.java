@@ -0,0 +1,138 @@
+package scyuan.spring.boot.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.service.FeatureIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups and rectangle queries over N random features spread like the route guide ones,
+ * through the linear scan RouteGuideService used to do and through {@link FeatureIndex}. Half of
+ * the looked up points are features, the rectangles are about 1/10000 of the area.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FeatureIndexBenchmark {
+
+    private static final int MIN_LAT = 400000000;
+    private static final int MAX_LAT = 420000000;
+    private static final int MIN_LON = -750000000;
+    private static final int MAX_LON = -730000000;
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int features;
+
+    private List<Feature> list;
+
+    private FeatureIndex index;
+
+    private final Point[] points = new Point[QUERIES];
+
+    private final int[][] rectangles = new int[QUERIES][];
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        list = new ArrayList<>(features);
+        for (int i = 0; i < features; i++) {
+            Point location = Point.newBuilder()
+                    .setLatitude(between(random, MIN_LAT, MAX_LAT))
+                    .setLongitude(between(random, MIN_LON, MAX_LON))
+                    .build();
+            list.add(Feature.newBuilder().setName("feature-" + i).setLocation(location).build());
+        }
+        index = new FeatureIndex(list);
+
+        int width = (MAX_LON - MIN_LON) / 100;
+        int height = (MAX_LAT - MIN_LAT) / 100;
+        for (int i = 0; i < QUERIES; i++) {
+            points[i] = i % 2 == 0
+                    ? list.get(random.nextInt(features)).getLocation()
+                    : Point.newBuilder()
+                            .setLatitude(between(random, MIN_LAT, MAX_LAT))
+                            .setLongitude(between(random, MIN_LON, MAX_LON))
+                            .build();
+            int left = between(random, MIN_LON, MAX_LON - width);
+            int bottom = between(random, MIN_LAT, MAX_LAT - height);
+            rectangles[i] = new int[]{left, left + width, bottom, bottom + height};
+        }
+    }
+
+    @Benchmark
+    public Feature findScan() {
+        Point location = points[next()];
+        for (Feature feature : list) {
+            if (feature.getLocation().getLatitude() == location.getLatitude()
+                    && feature.getLocation().getLongitude() == location.getLongitude()) {
+                return feature;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Feature findIndex() {
+        Point location = points[next()];
+        return index.find(location.getLatitude(), location.getLongitude());
+    }
+
+    @Benchmark
+    public void withinScan(Blackhole blackhole) {
+        int[] rectangle = rectangles[next()];
+        for (Feature feature : list) {
+            int lat = feature.getLocation().getLatitude();
+            int lon = feature.getLocation().getLongitude();
+            if (lon >= rectangle[0] && lon <= rectangle[1] && lat >= rectangle[2] && lat <= rectangle[3]) {
+                blackhole.consume(feature);
+            }
+        }
+    }
+
+    @Benchmark
+    public void withinIndex(Blackhole blackhole) {
+        int[] rectangle = rectangles[next()];
+        for (int position : index.within(rectangle[0], rectangle[1], rectangle[2], rectangle[3])) {
+            blackhole.consume(index.get(position));
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (QUERIES - 1);
+    }
+
+    private static int between(Random random, int min, int max) {
+        return min + random.nextInt(max - min);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FeatureIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package scyuan.spring.boot.sample;
+
+import com.google.protobuf.util.JsonFormat;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.FeatureDatabase;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.service.FeatureIndex;
+import scyuan.spring.boot.sample.service.FeatureStore;
+import scyuan.spring.boot.sample.service.HeapFeatureStore;
+import scyuan.spring.boot.sample.service.MappedFeatureStore;
+import scyuan.spring.boot.sample.service.RouteGuideUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time and heap footprint of RouteGuideService's feature database with the previous
+ * JsonFormat loader, the streaming JSON loader and the memory-mapped binary store, on a generated
+ * database of N features. Every loader runs in a fresh JVM, so the times include class loading and
+ * a cold JIT like an application start does.
+ * <p>
+ * Usage: FeatureLoaderComparison [features, default 1000000] [-Xmx of the loader JVMs, default 2g]
+ */
+public class FeatureLoaderComparison {
+
+    private static final String[] LOADERS = {"jsonformat", "streaming", "mapped"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--load")) {
+            load(args[1], new File(args[2]));
+            return;
+        }
+
+        int features = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String maxHeap = args.length > 1 ? args[1] : "2g";
+
+        Path directory = Files.createTempDirectory("features");
+        File json = directory.resolve("route_guide_db.json").toFile();
+        File binary = directory.resolve("route_guide_db.bin").toFile();
+        try {
+            generate(json, features);
+            RouteGuideUtil.writeFeatures(json.toURI().toURL(), binary.toPath());
+            System.out.printf("%d features, json %d MB, binary %d MB%n", features,
+                    json.length() >> 20, binary.length() >> 20);
+            System.out.printf("%-12s %12s %14s %14s%n", "loader", "load ms", "retained MB", "peak MB");
+
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            for (String loader : LOADERS) {
+                Process process = new ProcessBuilder(java, "-Xmx" + maxHeap,
+                        "-cp", System.getProperty("java.class.path"),
+                        FeatureLoaderComparison.class.getName(), "--load", loader,
+                        (loader.equals("mapped") ? binary : json).getPath())
+                        .inheritIO()
+                        .start();
+                process.waitFor();
+            }
+        } finally {
+            json.delete();
+            binary.delete();
+            directory.toFile().delete();
+        }
+    }
+
+    private static void load(String loader, File file) throws Exception {
+        long start = System.nanoTime();
+        FeatureStore store;
+        switch (loader) {
+            case "jsonformat":
+                store = new HeapFeatureStore(parseWithJsonFormat(file));
+                break;
+            case "streaming":
+                store = RouteGuideUtil.loadFeatures(file.toURI().toURL());
+                break;
+            default:
+                store = MappedFeatureStore.open(file.toPath());
+                break;
+        }
+        FeatureIndex index = new FeatureIndex(store);
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.gc();
+        System.gc();
+        long retained = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.printf("%-12s %12d %14d %14d%n", loader, loadMillis, retained >> 20, peak >> 20);
+        // keep the index reachable until the heap has been measured
+        if (index.size() != store.size()) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * The loader RouteGuideUtil.parseFeatures used before it streamed the JSON.
+     */
+    private static List<Feature> parseWithJsonFormat(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            FeatureDatabase.Builder database = FeatureDatabase.newBuilder();
+            JsonFormat.parser().merge(reader, database);
+            return database.getFeatureList();
+        }
+    }
+
+    private static void generate(File json, int features) throws IOException {
+        Random random = new Random(42);
+        try (Writer writer = Files.newBufferedWriter(json.toPath(), StandardCharsets.UTF_8)) {
+            JsonFormat.Printer printer = JsonFormat.printer();
+            writer.write("{\n  \"feature\": [");
+            for (int i = 0; i < features; i++) {
+                Feature feature = Feature.newBuilder()
+                        .setName("Feature " + i + ", Route " + random.nextInt(1000) + ", NJ, USA")
+                        .setLocation(Point.newBuilder()
+                                .setLatitude(400000000 + random.nextInt(20000000))
+                                .setLongitude(-750000000 + random.nextInt(20000000)))
+                        .build();
+                writer.write(i == 0 ? "\n" : ",\n");
+                printer.appendTo(feature, writer);
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+}
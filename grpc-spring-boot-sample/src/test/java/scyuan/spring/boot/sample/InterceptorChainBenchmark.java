@@ -0,0 +1,138 @@
+package scyuan.spring.boot.sample;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetrics;
+import scyuan.spring.boot.autoconfigure.metrics.GrpcServerMetricsInterceptor;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+import scyuan.spring.boot.sample.service.GreeterService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of a chain of N pass-through interceptors, optionally behind the metrics
+ * interceptor, around the unary GreeterService. The chain is composed once, like GrpcServerRunner
+ * does, and each invocation drives a whole call through the handler without any transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorChainBenchmark {
+
+    @Param({"0", "1", "4", "16"})
+    public int interceptors;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private ServerCallHandler<HelloRequest, HelloReply> handler;
+
+    private final HelloRequest request = HelloRequest.newBuilder().setName("benchmark").build();
+
+    private final Metadata headers = new Metadata();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<ServerInterceptor> chain = new ArrayList<>();
+        if (metrics) {
+            chain.add(new GrpcServerMetricsInterceptor(new GrpcServerMetrics(2)
+                    .getMethodMetrics("default", GreeterGrpc.METHOD_SAY_HELLO.getFullMethodName())));
+        }
+        for (int i = 0; i < interceptors; i++) {
+            chain.add(new PassThroughInterceptor());
+        }
+        ServerServiceDefinition serviceDefinition = ServerInterceptors.interceptForward(new GreeterService(), chain);
+        ServerMethodDefinition<?, ?> method = serviceDefinition.getMethod(GreeterGrpc.METHOD_SAY_HELLO.getFullMethodName());
+        handler = (ServerCallHandler<HelloRequest, HelloReply>) method.getServerCallHandler();
+    }
+
+    @Benchmark
+    public void unaryCall(Blackhole blackhole) {
+        BlackholeServerCall call = new BlackholeServerCall(blackhole);
+        ServerCall.Listener<HelloRequest> listener = handler.startCall(call, headers);
+        listener.onMessage(request);
+        listener.onHalfClose();
+        listener.onComplete();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(InterceptorChainBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static class PassThroughInterceptor implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                     Metadata headers,
+                                                                     ServerCallHandler<ReqT, RespT> next) {
+            return next.startCall(call, headers);
+        }
+    }
+
+    private static class BlackholeServerCall extends ServerCall<HelloRequest, HelloReply> {
+
+        private final Blackhole blackhole;
+
+        BlackholeServerCall(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(HelloReply message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            blackhole.consume(status);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<HelloRequest, HelloReply> getMethodDescriptor() {
+            return GreeterGrpc.METHOD_SAY_HELLO;
+        }
+    }
+}
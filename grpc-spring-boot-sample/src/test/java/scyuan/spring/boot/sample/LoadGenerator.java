@@ -0,0 +1,547 @@
+package scyuan.spring.boot.sample;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.KnownLength;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.NettyChannelBuilder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for capacity runs against a running server: drives any method the server exposes
+ * through its reflection service with a fixed number of calls in flight spread over several
+ * channels, as fast as they complete or paced to a target rate, and reports the throughput and the
+ * latency percentiles every interval and for the whole run.
+ * <p>
+ * The method and the request are resolved through server reflection, so the server needs
+ * --grpc.reflection.enabled=true. The requests are given as JSON and serialized once, the responses
+ * are read and dropped without being parsed, so the client spends little on the messages.
+ * Client-streaming and bidi calls send --messages copies of the request, as the flow control allows,
+ * then half-close; every call counts when it closes, streams count their responses too.
+ * <p>
+ * Latencies of the successful calls are recorded into HdrHistograms twice:
+ * <ul>
+ *     <li>uncorrected, from the start of each call;</li>
+ *     <li>corrected for coordinated omission: with --qps, from the time the call was due by the
+ *     schedule, so the calls a stall delays count the wait; in closed loop, each call is recorded
+ *     with the median of the previous interval (of the second half of the warm-up at first) as
+ *     expected interval, so a stall back-fills the calls it held up.</li>
+ * </ul>
+ * Usage: LoadGenerator [--option=value...] [-- SampleApp arguments...]
+ * <pre>
+ *   --host=localhost --port=6565      the server
+ *   --method=helloworld.Greeter/SayHello
+ *   --request={}                      request as JSON, or @file with one JSON request per line
+ *   --channels=4                      channels, each with its own connection
+ *   --concurrency=64                  calls in flight, spread over the channels
+ *   --qps=0                           target calls per second, 0 for closed loop
+ *   --messages=16                     requests of each client-streaming or bidi call
+ *   --deadline-millis=0               deadline of each call, 0 for none
+ *   --warmup=5 --duration=30          seconds of warm-up, then of measurement
+ *   --interval=5                      seconds between the interval reports
+ *   --histogram-log=file              writes the corrected interval histograms in the HdrHistogram log format
+ *   --start                           launches SampleApp on the port first, with the arguments after --
+ * </pre>
+ * For instance, against a SampleApp launched offline:
+ * <pre>
+ *   LoadGenerator --start --method=routeguide.RouteGuide/GetFeature \
+ *       --request='{"latitude":409146138,"longitude":-746188906}' --concurrency=128 --qps=5000
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final long DRAIN_SECONDS = 10;
+
+    /** Held for its level to stay set. */
+    private static final java.util.logging.Logger GRPC_LOGGER = java.util.logging.Logger.getLogger("io.grpc");
+
+    private final MethodDescriptor<byte[], byte[]> method;
+
+    private final byte[][] requests;
+
+    private final int messagesPerCall;
+
+    private final ManagedChannel[] channels;
+
+    private final long deadlineMillis;
+
+    /** Nanoseconds between the due times of the calls, 0 in closed loop. */
+    private final long intervalNanos;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "load-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Recorder corrected = new Recorder(3);
+
+    private final Recorder uncorrected = new Recorder(3);
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder responses = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final ConcurrentMap<Status.Code, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private final AtomicLong dueCalls = new AtomicLong();
+
+    private final AtomicInteger nextRequest = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    private volatile long scheduleStartNanos;
+
+    /** Expected interval of the closed-loop calls, 0 while warming up. */
+    private volatile long expectedIntervalNanos;
+
+    private LoadGenerator(MethodDescriptor<byte[], byte[]> method, byte[][] requests, int messagesPerCall,
+                          ManagedChannel[] channels, long deadlineMillis, double qps) {
+        this.method = method;
+        this.requests = requests;
+        this.messagesPerCall = messagesPerCall;
+        this.channels = channels;
+        this.deadlineMillis = deadlineMillis;
+        this.intervalNanos = qps > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / qps)) : 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // the frame logging of the client would cost more than the calls
+        ch.qos.logback.classic.Logger root =
+                (ch.qos.logback.classic.Logger)LoggerFactory.getLogger(
+                        ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.WARN);
+        GRPC_LOGGER.setLevel(java.util.logging.Level.WARNING);
+
+        Options options = new Options(args);
+        String host = options.get("host", "localhost");
+        int port = options.getInt("port", 6565);
+        String methodName = options.get("method", "helloworld.Greeter/SayHello");
+        String request = options.get("request", "{}");
+        int channelCount = options.getInt("channels", 4);
+        int concurrency = options.getInt("concurrency", 64);
+        double qps = Double.parseDouble(options.get("qps", "0"));
+        int messages = options.getInt("messages", 16);
+        long deadlineMillis = options.getInt("deadline-millis", 0);
+        int warmup = options.getInt("warmup", 5);
+        int duration = options.getInt("duration", 30);
+        int interval = options.getInt("interval", 5);
+        String histogramLog = options.get("histogram-log", null);
+        options.checkAllUsed();
+
+        Process app = options.start ? launch(port, options.applicationArgs) : null;
+        ManagedChannel[] channels = new ManagedChannel[channelCount];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = NettyChannelBuilder.forAddress(host, port).usePlaintext(true).build();
+        }
+        try {
+            Descriptors.MethodDescriptor descriptor = app != null ? awaitMethod(channels[0], methodName)
+                    : ReflectionClient.findMethod(channels[0], methodName);
+            MethodDescriptor.MethodType type = typeOf(descriptor);
+            LoadGenerator generator = new LoadGenerator(
+                    MethodDescriptor.create(type, methodName, BytesMarshaller.INSTANCE, BytesMarshaller.INSTANCE),
+                    parseRequests(descriptor.getInputType(), request),
+                    type == MethodDescriptor.MethodType.UNARY || type == MethodDescriptor.MethodType.SERVER_STREAMING
+                            ? 1 : messages,
+                    channels, deadlineMillis, qps);
+            System.out.printf("%s (%s) on %s:%d, %d channels, %d calls in flight, %s%n", methodName, type, host, port,
+                    channelCount, concurrency, qps > 0 ? "paced to " + qps + " calls/s" : "closed loop");
+            generator.run(concurrency, warmup, duration, interval,
+                    histogramLog != null ? new PrintStream(histogramLog, "UTF-8") : null);
+        } finally {
+            for (ManagedChannel channel : channels) {
+                channel.shutdownNow().awaitTermination(1, TimeUnit.SECONDS);
+            }
+            if (app != null) {
+                app.destroy();
+                app.waitFor();
+            }
+        }
+    }
+
+    private void run(int concurrency, int warmup, int duration, int interval, PrintStream histogramLog)
+            throws InterruptedException {
+        scheduleStartNanos = System.nanoTime();
+        for (int slot = 0; slot < concurrency; slot++) {
+            next(slot);
+        }
+
+        // the first half of the warm-up runs cold, its latencies would make a poor expected interval
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup) / 2);
+        long coldCalls = uncorrected.getIntervalHistogram().getTotalCount();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup) - TimeUnit.SECONDS.toMillis(warmup) / 2);
+        Histogram warm = uncorrected.getIntervalHistogram();
+        corrected.getIntervalHistogram();
+        calls.reset();
+        responses.reset();
+        failed.reset();
+        failures.clear();
+        if (intervalNanos == 0) {
+            expectedIntervalNanos = warm.getValueAtPercentile(50);
+        } else {
+            // the schedule restarts, the calls the cold start fell behind on are not due any more
+            dueCalls.set(0);
+            scheduleStartNanos = System.nanoTime();
+        }
+        System.out.printf("warm-up: %d calls, p50 %.3f ms once warm%n", coldCalls + warm.getTotalCount(),
+                millis(warm.getValueAtPercentile(50)));
+
+        HistogramLogWriter logWriter = null;
+        if (histogramLog != null) {
+            logWriter = new HistogramLogWriter(histogramLog);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(System.currentTimeMillis());
+            logWriter.outputLegend();
+        }
+        Histogram totalCorrected = new Histogram(3);
+        Histogram totalUncorrected = new Histogram(3);
+        long totalCalls = 0;
+        long totalResponses = 0;
+        long totalFailed = 0;
+        System.out.printf("%8s %12s %12s %10s %10s %10s %10s %8s%n", "seconds", "calls/s", "responses/s", "p50 ms",
+                "p99 ms", "p999 ms", "max ms", "failed");
+        long measureStart = System.nanoTime();
+        long intervalStart = measureStart;
+        long end = measureStart + TimeUnit.SECONDS.toNanos(duration);
+        while (intervalStart < end) {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(Math.min(TimeUnit.SECONDS.toNanos(interval), end - intervalStart)));
+            Histogram intervalCorrected = corrected.getIntervalHistogram();
+            Histogram intervalUncorrected = uncorrected.getIntervalHistogram();
+            long intervalCalls = calls.sumThenReset();
+            long intervalResponses = responses.sumThenReset();
+            long intervalFailed = failed.sumThenReset();
+            long now = System.nanoTime();
+            double seconds = (now - intervalStart) / 1e9;
+            totalCorrected.add(intervalCorrected);
+            totalUncorrected.add(intervalUncorrected);
+            if (intervalNanos == 0 && intervalUncorrected.getTotalCount() > 0) {
+                expectedIntervalNanos = intervalUncorrected.getValueAtPercentile(50);
+            }
+            totalCalls += intervalCalls;
+            totalResponses += intervalResponses;
+            totalFailed += intervalFailed;
+            if (logWriter != null) {
+                logWriter.outputIntervalHistogram(intervalCorrected);
+            }
+            System.out.printf("%8.1f %12.1f %12.1f %10.3f %10.3f %10.3f %10.3f %8d%n", (now - measureStart) / 1e9,
+                    intervalCalls / seconds, intervalResponses / seconds,
+                    millis(intervalCorrected.getValueAtPercentile(50)), millis(intervalCorrected.getValueAtPercentile(99)),
+                    millis(intervalCorrected.getValueAtPercentile(99.9)), millis(intervalCorrected.getMaxValue()),
+                    intervalFailed);
+            intervalStart = now;
+        }
+        double seconds = (intervalStart - measureStart) / 1e9;
+
+        running = false;
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        if (histogramLog != null) {
+            histogramLog.close();
+        }
+
+        System.out.printf("%ntotal: %d calls in %.1f s, %.1f calls/s, %.1f responses/s, %d failed%n", totalCalls,
+                seconds, totalCalls / seconds, totalResponses / seconds, totalFailed);
+        System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "latency", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        print("corrected", totalCorrected);
+        print("uncorrected", totalUncorrected);
+        for (Map.Entry<Status.Code, LongAdder> failure : failures.entrySet()) {
+            System.out.printf("%-12s %d%n", failure.getKey(), failure.getValue().sum());
+        }
+        if (inFlight.get() > 0) {
+            System.out.printf("%d calls still in flight after %d s%n", inFlight.get(), DRAIN_SECONDS);
+        }
+    }
+
+    /**
+     * Starts the next call of the slot, right away in closed loop, at its due time when paced.
+     */
+    private void next(int slot) {
+        if (!running) {
+            return;
+        }
+        if (intervalNanos == 0) {
+            start(slot, System.nanoTime());
+            return;
+        }
+        final long due = scheduleStartNanos + dueCalls.getAndIncrement() * intervalNanos;
+        final long delay = due - System.nanoTime();
+        if (delay > 0) {
+            scheduler.schedule(() -> start(slot, due), delay, TimeUnit.NANOSECONDS);
+        } else {
+            start(slot, due);
+        }
+    }
+
+    private void start(int slot, long dueNanos) {
+        if (!running) {
+            return;
+        }
+        CallOptions options = deadlineMillis > 0
+                ? CallOptions.DEFAULT.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS) : CallOptions.DEFAULT;
+        inFlight.incrementAndGet();
+        new LoadCall(slot, dueNanos, channels[slot % channels.length].newCall(method, options)).start();
+    }
+
+    private void record(long dueNanos, long startNanos, long endNanos) {
+        long latency = endNanos - startNanos;
+        uncorrected.recordValue(latency);
+        if (intervalNanos > 0) {
+            // a call due before the schedule restarted counts from the restart
+            corrected.recordValue(endNanos - Math.max(dueNanos, scheduleStartNanos));
+        } else {
+            corrected.recordValueWithExpectedInterval(latency, expectedIntervalNanos);
+        }
+    }
+
+    private final class LoadCall extends ClientCall.Listener<byte[]> {
+
+        private final int slot;
+
+        private final long dueNanos;
+
+        private final ClientCall<byte[], byte[]> call;
+
+        private long startNanos;
+
+        private int sent;
+
+        private boolean halfClosed;
+
+        LoadCall(int slot, long dueNanos, ClientCall<byte[], byte[]> call) {
+            this.slot = slot;
+            this.dueNanos = dueNanos;
+            this.call = call;
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            call.start(this, new Metadata());
+            call.request(Integer.MAX_VALUE);
+            send();
+        }
+
+        /**
+         * Sends the first request right away and the next ones while the call is ready.
+         */
+        private synchronized void send() {
+            while (sent < messagesPerCall && (sent == 0 || call.isReady())) {
+                call.sendMessage(requests[Math.abs(nextRequest.getAndIncrement() % requests.length)]);
+                sent++;
+            }
+            if (sent == messagesPerCall && !halfClosed) {
+                halfClosed = true;
+                call.halfClose();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            send();
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            responses.increment();
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            long endNanos = System.nanoTime();
+            if (status.isOk()) {
+                record(dueNanos, startNanos, endNanos);
+            } else {
+                failed.increment();
+                failures.computeIfAbsent(status.getCode(), code -> new LongAdder()).increment();
+            }
+            calls.increment();
+            inFlight.decrementAndGet();
+            next(slot);
+        }
+    }
+
+    private static void print(String label, Histogram histogram) {
+        System.out.printf("%-12s %10.3f %10.3f %10.3f %10.3f %10.3f%n", label,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static MethodDescriptor.MethodType typeOf(Descriptors.MethodDescriptor method) {
+        boolean clientStreaming = method.toProto().getClientStreaming();
+        boolean serverStreaming = method.toProto().getServerStreaming();
+        if (clientStreaming) {
+            return serverStreaming ? MethodDescriptor.MethodType.BIDI_STREAMING : MethodDescriptor.MethodType.CLIENT_STREAMING;
+        }
+        return serverStreaming ? MethodDescriptor.MethodType.SERVER_STREAMING : MethodDescriptor.MethodType.UNARY;
+    }
+
+    /**
+     * Serializes the JSON request, or the requests of the file, one per line, when it starts with @.
+     */
+    private static byte[][] parseRequests(Descriptors.Descriptor type, String request) throws IOException {
+        List<String> lines = request.startsWith("@")
+                ? Files.readAllLines(Paths.get(request.substring(1)), StandardCharsets.UTF_8) : Arrays.asList(request);
+        List<byte[]> requests = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.trim().isEmpty()) {
+                DynamicMessage.Builder builder = DynamicMessage.newBuilder(type);
+                JsonFormat.parser().merge(line, builder);
+                requests.add(builder.build().toByteArray());
+            }
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No request in " + request);
+        }
+        return requests.toArray(new byte[requests.size()][]);
+    }
+
+    /**
+     * Launches SampleApp in a fresh JVM on the port with reflection enabled, its output going to a
+     * temporary file.
+     */
+    private static Process launch(int port, List<String> applicationArgs) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                SampleApp.class.getName(), "--grpc.port=" + port, "--grpc.reflection.enabled=true"));
+        command.addAll(applicationArgs);
+        File log = File.createTempFile("sample-app", ".log");
+        System.out.println("launching SampleApp, output in " + log);
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    /**
+     * Looks the method up once the launched application serves.
+     */
+    private static Descriptors.MethodDescriptor awaitMethod(ManagedChannel channel, String methodName) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (true) {
+            try {
+                return ReflectionClient.findMethod(channel, methodName);
+            } catch (IllegalStateException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * The --name=value options, then the application arguments after --.
+     */
+    private static final class Options {
+
+        private final Map<String, String> values = new LinkedHashMap<>();
+
+        private final List<String> applicationArgs = new ArrayList<>();
+
+        private final boolean start;
+
+        Options(String[] args) {
+            int i = 0;
+            for (; i < args.length && !args[i].equals("--"); i++) {
+                if (!args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Not an option: " + args[i]);
+                }
+                int equals = args[i].indexOf('=');
+                if (equals < 0) {
+                    values.put(args[i].substring(2), "true");
+                } else {
+                    values.put(args[i].substring(2, equals), args[i].substring(equals + 1));
+                }
+            }
+            applicationArgs.addAll(Arrays.asList(args).subList(Math.min(i + 1, args.length), args.length));
+            start = Boolean.parseBoolean(get("start", "false"));
+        }
+
+        String get(String name, String defaultValue) {
+            String value = values.remove(name);
+            return value != null ? value : defaultValue;
+        }
+
+        int getInt(String name, int defaultValue) {
+            return Integer.parseInt(get(name, Integer.toString(defaultValue)));
+        }
+
+        void checkAllUsed() {
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown options: " + values.keySet());
+            }
+        }
+    }
+
+    /**
+     * Marshaller of the serialized requests, dropping the responses it reads.
+     */
+    private static final class BytesMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+        static final BytesMarshaller INSTANCE = new BytesMarshaller();
+
+        @Override
+        public InputStream stream(byte[] value) {
+            return new BytesInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                ByteStreams.copy(stream, ByteStreams.nullOutputStream());
+                return null;
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read the message").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    /**
+     * Lets the transport frame the request with its known length.
+     */
+    private static final class BytesInputStream extends ByteArrayInputStream implements KnownLength {
+
+        BytesInputStream(byte[] bytes) {
+            super(bytes);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package scyuan.spring.boot.sample;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import scyuan.spring.boot.autoconfigure.reflection.ReflectionProtocol;
+import scyuan.spring.boot.autoconfigure.reflection.ReflectionRequest;
+import scyuan.spring.boot.autoconfigure.reflection.ReflectionResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the services of a server through its reflection service, like grpcurl does: lists the
+ * services, fetches the proto file of each and rebuilds its descriptors to print the methods.
+ * <p>
+ * Needs the server started with --grpc.reflection.enabled=true.
+ * Usage: ReflectionClient [host, default localhost] [port, default 6565]
+ */
+public class ReflectionClient {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6565;
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port).usePlaintext(true).build();
+        LinkedBlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+        StreamObserver<ReflectionRequest> requests = open(channel, responses);
+        try {
+            List<String> services = call(requests, responses, ReflectionRequest.listServices()).getServices();
+            Map<String, Descriptors.FileDescriptor> files = new HashMap<>();
+            for (String service : services) {
+                ReflectionResponse response = call(requests, responses, ReflectionRequest.fileContainingSymbol(service));
+                if (response.getKind() == ReflectionResponse.Kind.ERROR) {
+                    System.out.println(service + " (" + response.getErrorMessage() + ")");
+                    continue;
+                }
+                Descriptors.FileDescriptor file = build(response.getFileDescriptors(), files);
+                Descriptors.ServiceDescriptor descriptor = file.findServiceByName(service.substring(service.lastIndexOf('.') + 1));
+                System.out.println(service + " (" + file.getName() + ")");
+                for (Descriptors.MethodDescriptor method : descriptor.getMethods()) {
+                    System.out.printf("  %s(%s%s) returns (%s%s)%n", method.getName(),
+                            method.toProto().getClientStreaming() ? "stream " : "", method.getInputType().getFullName(),
+                            method.toProto().getServerStreaming() ? "stream " : "", method.getOutputType().getFullName());
+                }
+            }
+            ReflectionResponse missing = call(requests, responses, ReflectionRequest.fileContainingSymbol("no.such.Symbol"));
+            System.out.println("no.such.Symbol: error " + missing.getErrorCode() + " " + missing.getErrorMessage());
+            requests.onCompleted();
+        } finally {
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Looks the method up through the reflection service of the server behind the channel.
+     *
+     * @param fullMethodName the method name as in the calls, helloworld.Greeter/SayHello for instance
+     */
+    static Descriptors.MethodDescriptor findMethod(Channel channel, String fullMethodName) throws Exception {
+        int slash = fullMethodName.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Not a full method name: " + fullMethodName);
+        }
+        String service = fullMethodName.substring(0, slash);
+        LinkedBlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+        StreamObserver<ReflectionRequest> requests = open(channel, responses);
+        try {
+            ReflectionResponse response = call(requests, responses, ReflectionRequest.fileContainingSymbol(service));
+            if (response.getKind() == ReflectionResponse.Kind.ERROR) {
+                throw new IllegalArgumentException(service + ": " + response.getErrorMessage());
+            }
+            Descriptors.ServiceDescriptor descriptor = build(response.getFileDescriptors(), new HashMap<>())
+                    .findServiceByName(service.substring(service.lastIndexOf('.') + 1));
+            Descriptors.MethodDescriptor method = descriptor.findMethodByName(fullMethodName.substring(slash + 1));
+            if (method == null) {
+                throw new IllegalArgumentException("No such method: " + fullMethodName);
+            }
+            return method;
+        } finally {
+            requests.onCompleted();
+        }
+    }
+
+    private static StreamObserver<ReflectionRequest> open(Channel channel, final LinkedBlockingQueue<Object> responses) {
+        return ClientCalls.asyncBidiStreamingCall(
+                channel.newCall(ReflectionProtocol.SERVER_REFLECTION_INFO, CallOptions.DEFAULT),
+                new StreamObserver<ReflectionResponse>() {
+                    @Override
+                    public void onNext(ReflectionResponse response) {
+                        responses.add(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        responses.add(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+    }
+
+    private static ReflectionResponse call(StreamObserver<ReflectionRequest> requests, LinkedBlockingQueue<Object> responses,
+                                           ReflectionRequest request) throws Exception {
+        requests.onNext(request);
+        Object response = responses.poll(5, TimeUnit.SECONDS);
+        if (response instanceof Throwable) {
+            throw new IllegalStateException("Reflection failed", (Throwable) response);
+        }
+        return (ReflectionResponse) response;
+    }
+
+    /**
+     * Builds the first file of the response, whose dependencies follow it.
+     */
+    private static Descriptors.FileDescriptor build(List<ByteString> encoded, Map<String, Descriptors.FileDescriptor> files)
+            throws Exception {
+        Map<String, DescriptorProtos.FileDescriptorProto> protos = new HashMap<>();
+        for (ByteString bytes : encoded) {
+            DescriptorProtos.FileDescriptorProto proto = DescriptorProtos.FileDescriptorProto.parseFrom(bytes);
+            protos.put(proto.getName(), proto);
+        }
+        return build(DescriptorProtos.FileDescriptorProto.parseFrom(encoded.get(0)).getName(), protos, files);
+    }
+
+    private static Descriptors.FileDescriptor build(String name, Map<String, DescriptorProtos.FileDescriptorProto> protos,
+                                                    Map<String, Descriptors.FileDescriptor> files) throws Exception {
+        Descriptors.FileDescriptor file = files.get(name);
+        if (file == null) {
+            DescriptorProtos.FileDescriptorProto proto = protos.get(name);
+            Descriptors.FileDescriptor[] dependencies = new Descriptors.FileDescriptor[proto.getDependencyCount()];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = build(proto.getDependency(i), protos, files);
+            }
+            file = Descriptors.FileDescriptor.buildFrom(proto, dependencies);
+            files.put(name, file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,106 @@
+package scyuan.spring.boot.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import scyuan.spring.boot.sample.routeguide.Feature;
+import scyuan.spring.boot.sample.routeguide.Point;
+import scyuan.spring.boot.sample.service.RouteDistance;
+import scyuan.spring.boot.sample.service.RouteGuideUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distance of a recorded route, measured point by point with the haversine formula as
+ * recordRoute used to, and by {@link RouteDistance}. A "walk" route moves by up to a few hundred
+ * meters from point to point like a GPS track, a "features" route jumps between random features of
+ * the bundled database like RouteGuideClient does.
+ * <p>
+ * The setup fails when the distances differ by more than the tolerance {@link RouteDistance}
+ * documents, one meter per approximated segment, and prints how many meters they differ by.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteDistanceBenchmark {
+
+    @Param({"walk", "features"})
+    public String route;
+
+    @Param({"1000", "100000"})
+    public int points;
+
+    private Point[] path;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        path = new Point[points];
+        if ("walk".equals(route)) {
+            int lat = 407838351, lon = -746143763;
+            for (int i = 0; i < points; i++) {
+                lat += random.nextInt(5001) - 2500;
+                lon += random.nextInt(5001) - 2500;
+                path[i] = Point.newBuilder().setLatitude(lat).setLongitude(lon).build();
+            }
+        } else {
+            List<Feature> features = RouteGuideUtil.parseFeatures(RouteGuideUtil.getDefaultFeaturesFile());
+            for (int i = 0; i < points; i++) {
+                path[i] = features.get(random.nextInt(features.size())).getLocation();
+            }
+        }
+
+        int approximated = 0;
+        for (int i = 1; i < points; i++) {
+            if (Math.abs((long) path[i].getLatitude() - path[i - 1].getLatitude()) <= RouteDistance.MAX_APPROXIMATED_DELTA
+                    && Math.abs((long) path[i].getLongitude() - path[i - 1].getLongitude()) <= RouteDistance.MAX_APPROXIMATED_DELTA) {
+                approximated++;
+            }
+        }
+        int difference = Math.abs(batched() - pointByPoint());
+        System.out.printf("%n%d of %d segments approximated, %d meters of difference%n", approximated, points - 1, difference);
+        if (difference > approximated) {
+            throw new IllegalStateException("The distances differ by " + difference + " meters");
+        }
+    }
+
+    @Benchmark
+    public int pointByPoint() {
+        int distance = 0;
+        for (int i = 1; i < path.length; i++) {
+            distance += RouteDistance.haversine(path[i - 1], path[i]);
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int batched() {
+        RouteDistance distance = new RouteDistance();
+        for (Point point : path) {
+            distance.add(point);
+        }
+        return distance.distance();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RouteDistanceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package scyuan.spring.boot.sample;
+
+import io.grpc.ManagedChannel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import scyuan.spring.boot.sample.helloworld.GreeterGrpc;
+import scyuan.spring.boot.sample.helloworld.HelloReply;
+import scyuan.spring.boot.sample.helloworld.HelloRequest;
+import scyuan.spring.boot.test.GrpcInProcessTest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Starts the sample application with its services served in-process only, and reports the time
+ * from before the context is created to the reply of the first SayHello.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(SampleApp.class)
+@GrpcInProcessTest
+public class SampleAppStartupTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleAppStartupTest.class);
+
+    /** Far above the few seconds the sample takes, only to catch a startup waiting on something. */
+    private static final long MAX_STARTUP_SECONDS = 60;
+
+    private static long startNanos;
+
+    @Autowired
+    private ManagedChannel inProcessChannel;
+
+    @BeforeClass
+    public static void recordStart() {
+        // the runner creates the context with the first test instance, after this
+        startNanos = System.nanoTime();
+    }
+
+    @Test
+    public void firstCallIsServedOnceTheContextIsStarted() {
+        HelloReply reply = GreeterGrpc.newBlockingStub(inProcessChannel)
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .sayHello(HelloRequest.newBuilder().setName("startup").build());
+        long elapsed = System.nanoTime() - startNanos;
+
+        assertEquals("Hello startup", reply.getMessage());
+        LOGGER.info("Startup to first RPC: {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        assertTrue("Startup to first RPC took " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms",
+                elapsed < TimeUnit.SECONDS.toNanos(MAX_STARTUP_SECONDS));
+    }
+}
@@ -0,0 +1,132 @@
+package scyuan.spring.boot.sample.service;
+
+import org.junit.Test;
+import scyuan.spring.boot.sample.routeguide.Point;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RouteDistance} against the haversine sum, within the one meter per approximated segment it
+ * documents.
+ */
+public class RouteDistanceTest {
+
+    private static final int MAX_LATITUDE = 900000000;
+
+    private static final int MAX_LONGITUDE = 1800000000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void emptyAndSinglePointRoutesHaveNoDistance() {
+        RouteDistance distance = new RouteDistance();
+        assertEquals(0, distance.distance());
+        distance.add(point(407838351, -746143763));
+        assertEquals(0, distance.distance());
+    }
+
+    @Test
+    public void shortSegmentsAtRandomPlaces() {
+        for (int route = 0; route < 100; route++) {
+            assertWithinTolerance(walk(randomLatitude(MAX_LATITUDE), randomLongitude(), 3000, 5000));
+        }
+    }
+
+    @Test
+    public void segmentsOfTheApproximationBound() {
+        for (int route = 0; route < 100; route++) {
+            assertWithinTolerance(walk(randomLatitude(MAX_LATITUDE), randomLongitude(), 3000,
+                    RouteDistance.MAX_APPROXIMATED_DELTA));
+        }
+    }
+
+    @Test
+    public void segmentsNearThePoles() {
+        // within a degree of either pole, where a degree of longitude shrinks to nothing
+        for (int route = 0; route < 100; route++) {
+            int latitude = (MAX_LATITUDE - random.nextInt(10000000)) * (random.nextBoolean() ? 1 : -1);
+            assertWithinTolerance(walk(latitude, randomLongitude(), 3000, RouteDistance.MAX_APPROXIMATED_DELTA));
+        }
+    }
+
+    @Test
+    public void longSegmentsMatchTheHaversineSum() {
+        Point[] path = new Point[3000];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = point(randomLatitude(MAX_LATITUDE), randomLongitude());
+        }
+        assertEquals(haversineSum(path), measure(path));
+    }
+
+    @Test
+    public void segmentsAcrossTheAntimeridian() {
+        Point[] path = new Point[3000];
+        for (int i = 0; i < path.length; i++) {
+            int longitude = MAX_LONGITUDE - random.nextInt(1000);
+            path[i] = point(randomLatitude(800000000), i % 2 == 0 ? longitude : -longitude);
+        }
+        assertWithinTolerance(path);
+    }
+
+    /**
+     * A route moving by up to maxStep in latitude and longitude from point to point, clamped to the
+     * valid coordinates.
+     */
+    private Point[] walk(int latitude, int longitude, int points, int maxStep) {
+        Point[] path = new Point[points];
+        for (int i = 0; i < points; i++) {
+            latitude = clamp(latitude + random.nextInt(2 * maxStep + 1) - maxStep, MAX_LATITUDE);
+            longitude = clamp(longitude + random.nextInt(2 * maxStep + 1) - maxStep, MAX_LONGITUDE);
+            path[i] = point(latitude, longitude);
+        }
+        return path;
+    }
+
+    private void assertWithinTolerance(Point[] path) {
+        int approximated = 0;
+        for (int i = 1; i < path.length; i++) {
+            if (Math.abs((long) path[i].getLatitude() - path[i - 1].getLatitude()) <= RouteDistance.MAX_APPROXIMATED_DELTA
+                    && Math.abs((long) path[i].getLongitude() - path[i - 1].getLongitude()) <= RouteDistance.MAX_APPROXIMATED_DELTA) {
+                approximated++;
+            }
+        }
+        int difference = Math.abs(measure(path) - haversineSum(path));
+        assertTrue(difference + " meters of difference over " + approximated + " approximated segments",
+                difference <= approximated);
+    }
+
+    private static int measure(Point[] path) {
+        RouteDistance distance = new RouteDistance();
+        for (Point point : path) {
+            distance.add(point);
+        }
+        return distance.distance();
+    }
+
+    private static int haversineSum(Point[] path) {
+        int sum = 0;
+        for (int i = 1; i < path.length; i++) {
+            sum += RouteDistance.haversine(path[i - 1], path[i]);
+        }
+        return sum;
+    }
+
+    private int randomLatitude(int bound) {
+        return random.nextInt(2 * bound + 1) - bound;
+    }
+
+    private int randomLongitude() {
+        return (int) (random.nextDouble() * 2 * MAX_LONGITUDE) - MAX_LONGITUDE;
+    }
+
+    private static int clamp(int value, int bound) {
+        return Math.max(-bound, Math.min(bound, value));
+    }
+
+    private static Point point(int latitude, int longitude) {
+        return Point.newBuilder().setLatitude(latitude).setLongitude(longitude).build();
+    }
+}
@@ -0,0 +1,36 @@
+package scyuan.spring.boot.test;
+
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.annotation.*;
+
+/**
+ * Serves the services of the default server in-process only in the test application context, so no
+ * port is bound and the tests call them through the {@code inProcessChannel} bean:
+ * <pre class="code">
+ * &#064;RunWith(SpringJUnit4ClassRunner.class)
+ * &#064;SpringApplicationConfiguration(SampleApp.class)
+ * &#064;GrpcInProcessTest
+ * public class GreeterServiceTests {
+ *
+ *     &#064;Autowired
+ *     private ManagedChannel inProcessChannel;
+ *     ...
+ * }
+ * </pre>
+ * Named servers still bind their ports unless {@code grpc.servers.<name>.in-process.only} is set.
+ * <p>
+ * This is not a test slice: it only sets the in-process properties, so the test runs against the
+ * full application context of the configuration, every auto-configuration and bean included, over
+ * the in-process transport instead of a socket.
+ * <p>
+ * Comes with the grpc-spring-boot-test artifact, to depend on in the test scope, so that the
+ * applications do not carry spring-test at runtime.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+@TestPropertySource(properties = {"grpc.in-process.enabled=true", "grpc.in-process.only=true"})
+public @interface GrpcInProcessTest {
+}